@@ -0,0 +1,89 @@
+package com.deadmandungeons.connect.commons.benchmarks;
+
+import com.deadmandungeons.connect.commons.ConnectUtils;
+import com.deadmandungeons.connect.commons.messenger.exceptions.IdentifierSyntaxException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the id parsing, encoding and validation utilities of {@link ConnectUtils}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectUtilsBenchmark {
+
+    private UUID uuid;
+    private String uuidString;
+    private String shortenedUuidString;
+    private String base64UuidString;
+    private String identifier;
+    private long[] bits;
+    private StringBuilder builder;
+
+    @Setup
+    public void setup() {
+        uuid = UUID.fromString("c35a67c9-b797-469f-a893-cf81b4104898");
+        uuidString = uuid.toString();
+        shortenedUuidString = uuidString.replace("-", "");
+        base64UuidString = ConnectUtils.encodeUuidBase64(uuid);
+        identifier = "connect-middleware_server-01";
+        bits = new long[2];
+        builder = new StringBuilder(64);
+    }
+
+    @Benchmark
+    public UUID parseIdUuid() {
+        return ConnectUtils.parseId(uuidString);
+    }
+
+    @Benchmark
+    public UUID parseIdShortened() {
+        return ConnectUtils.parseId(shortenedUuidString);
+    }
+
+    @Benchmark
+    public UUID parseIdBase64() {
+        return ConnectUtils.parseId(base64UuidString);
+    }
+
+    @Benchmark
+    public long parseIdToBits() {
+        ConnectUtils.parseId(uuidString, 0, uuidString.length(), bits);
+        return bits[0] ^ bits[1];
+    }
+
+    @Benchmark
+    public int appendUuid() throws IOException {
+        builder.setLength(0);
+        ConnectUtils.appendUuid(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), builder);
+        return builder.length();
+    }
+
+    @Benchmark
+    public String encodeUuidBase64() {
+        return ConnectUtils.encodeUuidBase64(uuid);
+    }
+
+    @Benchmark
+    public String validateIdentifier() throws IdentifierSyntaxException {
+        ConnectUtils.validateIdentifier(identifier);
+        return identifier;
+    }
+
+}
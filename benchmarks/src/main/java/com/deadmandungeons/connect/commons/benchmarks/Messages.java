@@ -0,0 +1,79 @@
+package com.deadmandungeons.connect.commons.benchmarks;
+
+import com.deadmandungeons.connect.commons.messenger.Messenger;
+import com.deadmandungeons.connect.commons.messenger.SerializerBackend;
+import com.deadmandungeons.connect.commons.messenger.messages.HeartbeatMessage;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.deadmandungeons.connect.commons.messenger.messages.StatusMessage;
+import com.deadmandungeons.connect.commons.messenger.serializers.CraftbukkitGsonMessageSerializer;
+import com.deadmandungeons.connect.commons.messenger.serializers.GsonMessageSerializer;
+import com.deadmandungeons.connect.commons.messenger.serializers.JsonMessageSerializer;
+import com.deadmandungeons.connect.commons.messenger.serializers.MessageSerializer;
+import com.google.common.base.Supplier;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Shared fixtures for the benchmarks
+ */
+final class Messages {
+
+    private Messages() {
+    }
+
+    /**
+     * @param count the number of messages to create
+     * @return an array of StatusMessages with random ids and alternating statuses created from a fixed seed
+     */
+    static Message[] newStatusMessages(int count) {
+        Random random = new Random(count);
+        Message[] messages = new Message[count];
+        for (int i = 0; i < count; i++) {
+            UUID id = new UUID(random.nextLong(), random.nextLong());
+            messages[i] = new StatusMessage(id, StatusMessage.Status.values()[i % 2]);
+        }
+        return messages;
+    }
+
+    /**
+     * @param backend the name of the serializer backend, either "json", "gson" or "craftbukkit"
+     * @return a new Messenger that serializes with the given backend
+     */
+    static Messenger newMessenger(String backend) {
+        return Messenger.builder().serializerBackend(SerializerBackend.valueOf(backend.toUpperCase(Locale.ROOT))).build();
+    }
+
+    /**
+     * @param backend the name of the serializer backend, either "json", "gson" or "craftbukkit"
+     * @return a new MessageSerializer for the given backend with the default Message types registered
+     */
+    static MessageSerializer newSerializer(String backend) {
+        MessageSerializer serializer;
+        if (backend.equals("json")) {
+            serializer = new JsonMessageSerializer();
+        } else if (backend.equals("gson")) {
+            serializer = new GsonMessageSerializer();
+        } else if (backend.equals("craftbukkit")) {
+            serializer = new CraftbukkitGsonMessageSerializer();
+        } else {
+            throw new IllegalArgumentException("Unknown serializer backend '" + backend + "'");
+        }
+
+        serializer.registerMessageType(Message.getType(StatusMessage.class), StatusMessage.class, new Supplier<StatusMessage>() {
+            @Override
+            public StatusMessage get() {
+                return new StatusMessage(null, null);
+            }
+        });
+        serializer.registerMessageType(Message.getType(HeartbeatMessage.class), HeartbeatMessage.class, new Supplier<HeartbeatMessage>() {
+            @Override
+            public HeartbeatMessage get() {
+                return new HeartbeatMessage(null);
+            }
+        });
+        return serializer;
+    }
+
+}
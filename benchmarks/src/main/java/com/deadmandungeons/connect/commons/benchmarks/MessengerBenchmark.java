@@ -0,0 +1,91 @@
+package com.deadmandungeons.connect.commons.benchmarks;
+
+import com.deadmandungeons.connect.commons.messenger.Messenger;
+import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
+import com.deadmandungeons.connect.commons.messenger.messages.HeartbeatMessage;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.deadmandungeons.connect.commons.messenger.messages.StatusMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Messenger#serialize(Message...)} and {@link Messenger#deserialize(String)} for a single Message
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessengerBenchmark {
+
+    private Messenger messenger;
+    private StatusMessage statusMessage;
+    private HeartbeatMessage heartbeatMessage;
+    private String statusJson;
+    private String heartbeatJson;
+    private byte[] statusBytes;
+    private ByteBuffer outBuffer;
+
+    @Setup
+    public void setup() {
+        messenger = Messenger.builder().build();
+        statusMessage = new StatusMessage(UUID.fromString("780e33be-1d57-4f15-9b8e-370e82c2378b"), StatusMessage.Status.ONLINE);
+        heartbeatMessage = new HeartbeatMessage("ping");
+        // a single JSON object rather than an array of one
+        statusJson = "{\"type\":\"status\",\"status\":\"online\",\"id\":\"780e33be-1d57-4f15-9b8e-370e82c2378b\"}";
+        heartbeatJson = "{\"type\":\"heartbeat\",\"data\":\"ping\"}";
+        statusBytes = statusJson.getBytes(StandardCharsets.UTF_8);
+        outBuffer = ByteBuffer.allocate(1024);
+    }
+
+    @Benchmark
+    public String serializeStatus() {
+        return messenger.serialize(statusMessage);
+    }
+
+    @Benchmark
+    public Message[] deserializeStatus() throws MessageParseException {
+        return messenger.deserialize(statusJson);
+    }
+
+    @Benchmark
+    public byte[] serializeStatusToBytes() {
+        return messenger.serializeToBytes(statusMessage);
+    }
+
+    @Benchmark
+    public int serializeStatusToBuffer() {
+        outBuffer.clear();
+        return messenger.serializeTo(outBuffer, statusMessage);
+    }
+
+    @Benchmark
+    public Message[] deserializeStatusBytes() throws MessageParseException {
+        return messenger.deserialize(statusBytes);
+    }
+
+    @Benchmark
+    public String serializeHeartbeat() {
+        return messenger.serialize(heartbeatMessage);
+    }
+
+    @Benchmark
+    public Message[] deserializeHeartbeat() throws MessageParseException {
+        return messenger.deserialize(heartbeatJson);
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.deadmandungeons.connect.commons.benchmarks;
+
+import com.deadmandungeons.connect.commons.messenger.Messenger;
+import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.deadmandungeons.connect.commons.messenger.serializers.MessageSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures serialization and deserialization of StatusMessage arrays through a {@link Messenger} of each
+ * serializer backend, and directly through the {@link MessageSerializer} of each backend without Messenger validation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusArrayBenchmark {
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    private int count;
+
+    @Param({"json", "gson", "craftbukkit"})
+    private String backend;
+
+    private Messenger messenger;
+    private MessageSerializer serializer;
+    private Message[] messages;
+    private String json;
+
+    @Setup
+    public void setup() {
+        messenger = Messages.newMessenger(backend);
+        serializer = Messages.newSerializer(backend);
+        messages = Messages.newStatusMessages(count);
+        json = serializer.toJson(messages);
+    }
+
+    @Benchmark
+    public String messengerSerialize() {
+        return messenger.serialize(messages);
+    }
+
+    @Benchmark
+    public Message[] messengerDeserialize() throws MessageParseException {
+        return messenger.deserialize(json);
+    }
+
+    @Benchmark
+    public String serializerToJson() {
+        return serializer.toJson(messages);
+    }
+
+    @Benchmark
+    public Message[] serializerFromJson() throws MessageParseException {
+        return serializer.fromJson(json, Message[].class);
+    }
+
+}
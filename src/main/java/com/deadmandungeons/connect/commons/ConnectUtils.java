@@ -2,18 +2,31 @@ package com.deadmandungeons.connect.commons;
 
 import com.deadmandungeons.connect.commons.messenger.exceptions.IdentifierSyntaxException;
 import com.deadmandungeons.connect.commons.messenger.exceptions.IdentifierSyntaxException.SyntaxError;
-import com.google.common.io.BaseEncoding;
 
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.UUID;
-import java.util.regex.Pattern;
 
 public class ConnectUtils {
 
-    protected static final BaseEncoding BASE_64_URL_ENCODING = BaseEncoding.base64Url().omitPadding();
-    protected static final Pattern UUID_NO_HYPHEN_PATTERN = Pattern.compile("(\\w{8})(\\w{4})(\\w{4})(\\w{4})(\\w{12})");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final char[] BASE_64_URL_DIGITS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final byte[] HEX_VALUES = new byte[128];
+    private static final byte[] BASE_64_URL_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < HEX_DIGITS.length; i++) {
+            HEX_VALUES[HEX_DIGITS[i]] = (byte) i;
+            HEX_VALUES[Character.toUpperCase(HEX_DIGITS[i])] = (byte) i;
+        }
+        Arrays.fill(BASE_64_URL_VALUES, (byte) -1);
+        for (int i = 0; i < BASE_64_URL_DIGITS.length; i++) {
+            BASE_64_URL_VALUES[BASE_64_URL_DIGITS[i]] = (byte) i;
+        }
+    }
 
     protected ConnectUtils() {
     }
@@ -25,10 +38,9 @@ public class ConnectUtils {
      * @see #decodeUuidBase64(String)
      */
     public static String encodeUuidBase64(UUID uuid) {
-        ByteBuffer bb = ByteBuffer.wrap(new byte[16]);
-        bb.putLong(uuid.getMostSignificantBits());
-        bb.putLong(uuid.getLeastSignificantBits());
-        return BASE_64_URL_ENCODING.encode(bb.array());
+        StringBuilder builder = new StringBuilder(22);
+        appendUuidBase64(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), builder);
+        return builder.toString();
     }
 
     /**
@@ -38,13 +50,10 @@ public class ConnectUtils {
      * @see #encodeUuidBase64(UUID)
      */
     public static UUID decodeUuidBase64(String encodedId) {
-        if (encodedId != null) {
-            try {
-                byte[] bytes = BASE_64_URL_ENCODING.decode(encodedId);
-                ByteBuffer bb = ByteBuffer.wrap(bytes);
-                return new UUID(bb.getLong(), bb.getLong());
-            } catch (Exception e) {
-                return null;
+        if (encodedId != null && encodedId.length() == 22) {
+            long[] bits = new long[2];
+            if (decodeUuidBase64(encodedId, 0, bits)) {
+                return new UUID(bits[0], bits[1]);
             }
         }
         return null;
@@ -61,26 +70,148 @@ public class ConnectUtils {
         return null;
     }
 
-    private static UUID parseShortenedUuid(String shortenedId) {
-        return parseUuid(UUID_NO_HYPHEN_PATTERN.matcher(shortenedId).replaceAll("$1-$2-$3-$4-$5"));
-    }
-
+    /**
+     * This accepts a UUID in its normal form (ex: c35a67c9-b797-469f-a893-cf81b4104898), its shortened form without
+     * hyphens (ex: c35a67c9b797469fa893cf81b4104898), or its base64 encoded form (ex: reBaGYgHQ8OoTqfamvttvA)
+     * @param idStr the id to parse
+     * @return the parsed UUID or null if idStr was null or invalid
+     */
     public static UUID parseId(String idStr) {
         if (idStr != null) {
-            // Account for encoded id's (ex: reBaGYgHQ8OoTqfamvttvA)
-            if (idStr.length() == 22) {
-                return decodeUuidBase64(idStr);
+            long[] bits = new long[2];
+            if (parseId(idStr, 0, idStr.length(), bits)) {
+                return new UUID(bits[0], bits[1]);
             }
-            if (idStr.length() == 32) {
-                // Account for shortened uuid's (ex: c35a67c9b797469fa893cf81b4104898)
-                return parseShortenedUuid(idStr);
+        }
+        return null;
+    }
+
+    /**
+     * Parse a UUID in any of the forms accepted by {@link #parseId(String)} directly from the given range of
+     * characters, without creating any intermediate objects.
+     * @param chars the characters to parse the id from
+     * @param start the index of the first character of the id
+     * @param end the index after the last character of the id
+     * @param out the array to store the most significant bits of the UUID at index 0,
+     * and the least significant bits at index 1
+     * @return true if the id was valid and out was set, or false if the id was invalid
+     */
+    public static boolean parseId(CharSequence chars, int start, int end, long[] out) {
+        switch (end - start) {
+            case 22:
+                return decodeUuidBase64(chars, start, out);
+            case 32:
+                return parseUuidHex(chars, start, false, out);
+            case 36:
+                return parseUuidHex(chars, start, true, out);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Append the normal form of the given UUID (ex: c35a67c9-b797-469f-a893-cf81b4104898) to the given Appendable
+     * @param mostSigBits the most significant bits of the UUID
+     * @param leastSigBits the least significant bits of the UUID
+     * @param out the Appendable to append to
+     * @throws IOException if out could not be appended to
+     */
+    public static void appendUuid(long mostSigBits, long leastSigBits, Appendable out) throws IOException {
+        appendHex(mostSigBits >>> 32, 8, out);
+        out.append('-');
+        appendHex(mostSigBits >>> 16, 4, out);
+        out.append('-');
+        appendHex(mostSigBits, 4, out);
+        out.append('-');
+        appendHex(leastSigBits >>> 48, 4, out);
+        out.append('-');
+        appendHex(leastSigBits, 12, out);
+    }
+
+    /**
+     * Append the base64 encoded form of the given UUID (ex: reBaGYgHQ8OoTqfamvttvA) to the given Appendable
+     * @param mostSigBits the most significant bits of the UUID
+     * @param leastSigBits the least significant bits of the UUID
+     * @param out the Appendable to append to
+     * @throws IOException if out could not be appended to
+     * @see #encodeUuidBase64(UUID)
+     */
+    public static void appendUuidBase64(long mostSigBits, long leastSigBits, Appendable out) throws IOException {
+        // 22 digits of 6 bits are 132 bits, so the 128 bits of the UUID are padded with 4 zero bits
+        long hi = mostSigBits;
+        long lo = leastSigBits;
+        for (int shift = 122; shift >= 2; shift -= 6) {
+            int digit = (int) (shift >= 64 ? hi >>> (shift - 64) : (shift > 58 ? (hi << (64 - shift)) | (lo >>> shift) : lo >>> shift));
+            out.append(BASE_64_URL_DIGITS[digit & 0x3F]);
+        }
+        out.append(BASE_64_URL_DIGITS[(int) (lo & 0x3) << 4]);
+    }
+
+    private static void appendUuidBase64(long mostSigBits, long leastSigBits, StringBuilder out) {
+        try {
+            appendUuidBase64(mostSigBits, leastSigBits, (Appendable) out);
+        } catch (IOException e) {
+            // StringBuilder does not throw IOException
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void appendHex(long value, int digits, Appendable out) throws IOException {
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            out.append(HEX_DIGITS[(int) (value >>> shift) & 0xF]);
+        }
+    }
+
+    private static boolean decodeUuidBase64(CharSequence chars, int start, long[] out) {
+        long hi = 0;
+        long lo = 0;
+        for (int i = 0; i < 22; i++) {
+            char c = chars.charAt(start + i);
+            int value = (c < 128 ? BASE_64_URL_VALUES[c] : -1);
+            if (value < 0) {
+                return false;
             }
-            if (idStr.length() == 36) {
-                // Account for normal uuid's (ex: c35a67c9-b797-469f-a893-cf81b4104898)
-                return parseUuid(idStr);
+            // shift the 128 bit value left, and the last digit only contributes its 2 high bits
+            int bits = (i < 21 ? 6 : 2);
+            if (bits == 2 && (value & 0xF) != 0) {
+                // non-zero padding bits, so the encoding is not canonical
+                return false;
             }
+            hi = (hi << bits) | (lo >>> (64 - bits));
+            lo = (lo << bits) | (i < 21 ? value : value >>> 4);
         }
-        return null;
+        out[0] = hi;
+        out[1] = lo;
+        return true;
+    }
+
+    private static boolean parseUuidHex(CharSequence chars, int start, boolean hyphens, long[] out) {
+        if (hyphens && (chars.charAt(start + 8) != '-' || chars.charAt(start + 13) != '-'
+                || chars.charAt(start + 18) != '-' || chars.charAt(start + 23) != '-')) {
+            return false;
+        }
+        long hi = 0;
+        long lo = 0;
+        int digits = 0;
+        int end = start + (hyphens ? 36 : 32);
+        for (int i = start; i < end; i++) {
+            char c = chars.charAt(i);
+            if (hyphens && c == '-' && (i - start == 8 || i - start == 13 || i - start == 18 || i - start == 23)) {
+                continue;
+            }
+            int value = (c < 128 ? HEX_VALUES[c] : -1);
+            if (value < 0) {
+                return false;
+            }
+            if (digits++ < 16) {
+                hi = (hi << 4) | value;
+            } else {
+                lo = (lo << 4) | value;
+            }
+        }
+        out[0] = hi;
+        out[1] = lo;
+        return true;
     }
 
     public static URL parseUrl(String url) {
@@ -0,0 +1,306 @@
+package com.deadmandungeons.connect.commons.collect;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * An open addressing hash map specialized for UUID keys. Keys are stored as their most and least significant bits
+ * in parallel long arrays, so a mapping costs no boxed UUID and no entry object, and a lookup is a linear probe
+ * over primitive arrays. Every operation has an overload that takes the two longs of the key directly, so looking up
+ * the id of a message never allocates.
+ * <p>The keys can optionally be stored off-heap in a direct buffer, which keeps very large tables out of the
+ * garbage collected heap. Values are always held on the heap, and cannot be null.</p>
+ * <p>This class is not thread safe.</p>
+ * @param <V> the type of the mapped values
+ */
+public final class UuidMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double LOAD_FACTOR = 0.7;
+
+    private final boolean offHeap;
+    private KeyStore keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public UuidMap() {
+        this(DEFAULT_CAPACITY, false);
+    }
+
+    /**
+     * @param expectedSize the number of mappings the map should hold without resizing
+     * @param offHeap true to store the keys in a direct buffer outside of the heap
+     */
+    public UuidMap(int expectedSize, boolean offHeap) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize cannot be negative");
+        }
+        this.offHeap = offHeap;
+        allocate(tableSizeFor((int) Math.ceil(expectedSize / LOAD_FACTOR)));
+    }
+
+    /**
+     * Receives every mapping of a {@link UuidMap}
+     * @param <V> the type of the mapped values
+     */
+    public interface Visitor<V> {
+
+        void visit(long mostSigBits, long leastSigBits, V value);
+
+    }
+
+    /**
+     * @return the number of mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public V get(UUID key) {
+        return get(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    /**
+     * @param mostSigBits the most significant bits of the key
+     * @param leastSigBits the least significant bits of the key
+     * @return the value mapped to the key, or null if there is no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long mostSigBits, long leastSigBits) {
+        int index = indexOf(mostSigBits, leastSigBits);
+        return (index >= 0 ? (V) values[index] : null);
+    }
+
+    public boolean containsKey(UUID key) {
+        return containsKey(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    public boolean containsKey(long mostSigBits, long leastSigBits) {
+        return indexOf(mostSigBits, leastSigBits) >= 0;
+    }
+
+    public V put(UUID key, V value) {
+        return put(key.getMostSignificantBits(), key.getLeastSignificantBits(), value);
+    }
+
+    /**
+     * @param mostSigBits the most significant bits of the key
+     * @param leastSigBits the least significant bits of the key
+     * @param value the value to map to the key
+     * @return the value previously mapped to the key, or null if there was no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long mostSigBits, long leastSigBits, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value cannot be null");
+        }
+        int index = hash(mostSigBits, leastSigBits) & mask;
+        while (values[index] != null) {
+            if (keys.matches(index, mostSigBits, leastSigBits)) {
+                V previous = (V) values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+
+        keys.set(index, mostSigBits, leastSigBits);
+        values[index] = value;
+        if (++size > resizeThreshold) {
+            resize(values.length << 1);
+        }
+        return null;
+    }
+
+    public V remove(UUID key) {
+        return remove(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    /**
+     * @param mostSigBits the most significant bits of the key
+     * @param leastSigBits the least significant bits of the key
+     * @return the value that was mapped to the key, or null if there was no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long mostSigBits, long leastSigBits) {
+        int index = indexOf(mostSigBits, leastSigBits);
+        if (index < 0) {
+            return null;
+        }
+        V previous = (V) values[index];
+        values[index] = null;
+        size--;
+
+        // shift back the following entries of the probe sequence so that no tombstones are needed
+        int empty = index;
+        int next = (index + 1) & mask;
+        while (values[next] != null) {
+            int ideal = hash(keys.mostSigBits(next), keys.leastSigBits(next)) & mask;
+            // move the entry if its ideal slot is not cyclically within (empty, next]
+            if (((next - ideal) & mask) >= ((next - empty) & mask)) {
+                keys.set(empty, keys.mostSigBits(next), keys.leastSigBits(next));
+                values[empty] = values[next];
+                values[next] = null;
+                empty = next;
+            }
+            next = (next + 1) & mask;
+        }
+        return previous;
+    }
+
+    /**
+     * Remove every mapping
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * @param visitor the Visitor to pass every mapping to
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(Visitor<? super V> visitor) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                visitor.visit(keys.mostSigBits(i), keys.leastSigBits(i), (V) values[i]);
+            }
+        }
+    }
+
+    private int indexOf(long mostSigBits, long leastSigBits) {
+        int index = hash(mostSigBits, leastSigBits) & mask;
+        while (values[index] != null) {
+            if (keys.matches(index, mostSigBits, leastSigBits)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void allocate(int capacity) {
+        keys = (offHeap ? new DirectKeyStore(capacity) : new HeapKeyStore(capacity));
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void resize(int capacity) {
+        KeyStore oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                long mostSigBits = oldKeys.mostSigBits(i);
+                long leastSigBits = oldKeys.leastSigBits(i);
+                int index = hash(mostSigBits, leastSigBits) & mask;
+                while (values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys.set(index, mostSigBits, leastSigBits);
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        if (size <= 0) {
+            throw new IllegalArgumentException("expectedSize is too large");
+        }
+        return size;
+    }
+
+    private static int hash(long mostSigBits, long leastSigBits) {
+        // the finalizer of MurmurHash3, since version 1 and 2 UUIDs are not uniformly random
+        long h = mostSigBits * 31 + leastSigBits;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+
+    private static abstract class KeyStore {
+
+        abstract long mostSigBits(int index);
+
+        abstract long leastSigBits(int index);
+
+        abstract void set(int index, long mostSigBits, long leastSigBits);
+
+        final boolean matches(int index, long mostSigBits, long leastSigBits) {
+            return leastSigBits(index) == leastSigBits && mostSigBits(index) == mostSigBits;
+        }
+
+    }
+
+    private static final class HeapKeyStore extends KeyStore {
+
+        private final long[] mostSigBits;
+        private final long[] leastSigBits;
+
+        private HeapKeyStore(int capacity) {
+            mostSigBits = new long[capacity];
+            leastSigBits = new long[capacity];
+        }
+
+        @Override
+        long mostSigBits(int index) {
+            return mostSigBits[index];
+        }
+
+        @Override
+        long leastSigBits(int index) {
+            return leastSigBits[index];
+        }
+
+        @Override
+        void set(int index, long mostSigBits, long leastSigBits) {
+            this.mostSigBits[index] = mostSigBits;
+            this.leastSigBits[index] = leastSigBits;
+        }
+
+    }
+
+    private static final class DirectKeyStore extends KeyStore {
+
+        private final LongBuffer mostSigBits;
+        private final LongBuffer leastSigBits;
+
+        private DirectKeyStore(int capacity) {
+            mostSigBits = ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+            leastSigBits = ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+
+        @Override
+        long mostSigBits(int index) {
+            return mostSigBits.get(index);
+        }
+
+        @Override
+        long leastSigBits(int index) {
+            return leastSigBits.get(index);
+        }
+
+        @Override
+        void set(int index, long mostSigBits, long leastSigBits) {
+            this.mostSigBits.put(index, mostSigBits);
+            this.leastSigBits.put(index, leastSigBits);
+        }
+
+    }
+
+}
@@ -0,0 +1,247 @@
+package com.deadmandungeons.connect.commons.messenger;
+
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An AsyncMessenger serializes and deserializes messages with a {@link Messenger} on a dedicated bounded executor,
+ * so that the codec work is kept off of the calling thread, such as the main thread of a game server.
+ * Each operation returns a {@link ListenableFuture} of its result. If the queue of the executor is full,
+ * the returned future fails with a {@link RejectedExecutionException} rather than blocking the caller.
+ * <p>Use {@link #addCallback(ListenableFuture, FutureCallback)} to have the result handed back to the
+ * callback executor, which would typically run tasks on the main thread.</p>
+ */
+public final class AsyncMessenger implements Closeable {
+
+    private final Messenger messenger;
+    private final ListeningExecutorService executor;
+    private final Executor callbackExecutor;
+    private final boolean ownsExecutor;
+
+    /**
+     * @param messenger the Messenger used to serialize and deserialize messages
+     * @return a new {@link AsyncMessenger.Builder} to be used to build a new AsyncMessenger instance
+     */
+    public static Builder builder(Messenger messenger) {
+        return new Builder(messenger);
+    }
+
+    /**
+     * The Builder class for an {@link AsyncMessenger} instance
+     */
+    public static final class Builder {
+
+        private final Messenger messenger;
+        private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        private int queueCapacity = 1024;
+        private ExecutorService executor;
+        private Executor callbackExecutor = MoreExecutors.sameThreadExecutor();
+
+        private Builder(Messenger messenger) {
+            if (messenger == null) {
+                throw new IllegalArgumentException("messenger cannot be null");
+            }
+            this.messenger = messenger;
+        }
+
+        /**
+         * @param threads the number of threads of the executor. The default is half of the available processors
+         * @return this Builder instance
+         */
+        public Builder threads(int threads) {
+            if (threads <= 0) {
+                throw new IllegalArgumentException("threads must be greater than 0");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param queueCapacity the maximum number of operations waiting for a thread of the executor.
+         * The default is 1024
+         * @return this Builder instance
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            if (queueCapacity <= 0) {
+                throw new IllegalArgumentException("queueCapacity must be greater than 0");
+            }
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * @param executor the executor to serialize and deserialize messages on, in place of the bounded executor
+         * configured by {@link #threads(int)} and {@link #queueCapacity(int)}. The executor is not shut down when
+         * the AsyncMessenger is closed.
+         * @return this Builder instance
+         */
+        public Builder executor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @param callbackExecutor the executor that callbacks added with
+         * {@link AsyncMessenger#addCallback(ListenableFuture, FutureCallback)} are run on, such as one that schedules
+         * tasks on the main thread. By default, callbacks are run on the thread that completed the operation.
+         * @return this Builder instance
+         */
+        public Builder callbackExecutor(Executor callbackExecutor) {
+            if (callbackExecutor == null) {
+                throw new IllegalArgumentException("callbackExecutor cannot be null");
+            }
+            this.callbackExecutor = callbackExecutor;
+            return this;
+        }
+
+        /**
+         * @return the built AsyncMessenger instance
+         */
+        public AsyncMessenger build() {
+            return new AsyncMessenger(this);
+        }
+
+    }
+
+    private AsyncMessenger(Builder builder) {
+        messenger = builder.messenger;
+        callbackExecutor = builder.callbackExecutor;
+        if (builder.executor != null) {
+            executor = MoreExecutors.listeningDecorator(builder.executor);
+            ownsExecutor = false;
+        } else {
+            ThreadFactoryBuilder threadFactory = new ThreadFactoryBuilder().setNameFormat("AsyncMessenger-%d").setDaemon(true);
+            executor = MoreExecutors.listeningDecorator(new ThreadPoolExecutor(builder.threads, builder.threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(builder.queueCapacity), threadFactory.build()));
+            ownsExecutor = true;
+        }
+    }
+
+
+    /**
+     * @return the Messenger used by this AsyncMessenger
+     */
+    public Messenger getMessenger() {
+        return messenger;
+    }
+
+    /**
+     * @param messages the messages to serialize
+     * @return a future of the JSON string, which fails with an IllegalArgumentException if any message is invalid
+     * @see Messenger#serialize(Message...)
+     */
+    public ListenableFuture<String> serialize(Message... messages) {
+        final Message[] copy = messages.clone();
+        return submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return messenger.serialize(copy);
+            }
+        });
+    }
+
+    /**
+     * @param messages the messages to serialize
+     * @return a future of the UTF-8 encoded JSON, which fails with an IllegalArgumentException if any message is invalid
+     * @see Messenger#serializeToBytes(Message...)
+     */
+    public ListenableFuture<byte[]> serializeToBytes(Message... messages) {
+        final Message[] copy = messages.clone();
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return messenger.serializeToBytes(copy);
+            }
+        });
+    }
+
+    /**
+     * @param messages the messages to serialize
+     * @return a future of the binary encoding, which fails with an IllegalArgumentException if any message is invalid
+     * @see Messenger#serializeBinary(Message...)
+     */
+    public ListenableFuture<byte[]> serializeBinary(Message... messages) {
+        final Message[] copy = messages.clone();
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return messenger.serializeBinary(copy);
+            }
+        });
+    }
+
+    /**
+     * @param rawMsg the JSON string to deserialize
+     * @return a future of the deserialized messages, which fails with a
+     * {@link com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException} if the JSON is invalid
+     * @see Messenger#deserialize(String)
+     */
+    public ListenableFuture<Message[]> deserialize(final String rawMsg) {
+        return submit(new Callable<Message[]>() {
+            @Override
+            public Message[] call() throws Exception {
+                return messenger.deserialize(rawMsg);
+            }
+        });
+    }
+
+    /**
+     * @param rawMsg the UTF-8 encoded JSON or binary encoding to deserialize. The array must not be modified until
+     * the returned future is done.
+     * @return a future of the deserialized messages, which fails with a
+     * {@link com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException} if the input is invalid
+     * @see Messenger#deserialize(byte[])
+     */
+    public ListenableFuture<Message[]> deserialize(final byte[] rawMsg) {
+        return submit(new Callable<Message[]>() {
+            @Override
+            public Message[] call() throws Exception {
+                return messenger.deserialize(rawMsg);
+            }
+        });
+    }
+
+    /**
+     * Add the given callback to the given future, to be run on the callback executor of this AsyncMessenger
+     * once the future is done
+     * @param future the future returned by this AsyncMessenger
+     * @param callback the callback of the result
+     */
+    public <V> void addCallback(ListenableFuture<V> future, FutureCallback<? super V> callback) {
+        Futures.addCallback(future, callback, callbackExecutor);
+    }
+
+    /**
+     * Shut down the executor if it is owned by this AsyncMessenger.
+     * Operations that were already submitted are still completed.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private <V> ListenableFuture<V> submit(Callable<V> task) {
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.deadmandungeons.connect.commons.messenger;
+
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.google.common.base.Defaults;
+import com.google.common.base.Supplier;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The default {@link InstantiationStrategy} which resolves the cheapest available creation path for a Message type:
+ * <ol>
+ * <li>the no-arg constructor</li>
+ * <li>the constructor with the fewest parameters that can be invoked with empty values
+ * (null, zero, false, or an empty array), with the empty arguments bound to the constructor once</li>
+ * <li>allocating the instance without invoking any constructor. This is only used if no constructor could be
+ * invoked with empty values, and only if the JVM supports it. Field initializers will not be run for such instances.</li>
+ * </ol>
+ * Each path is compiled to a single {@link MethodHandle}, so creating an instance is a single direct call.
+ */
+public class DefaultInstantiationStrategy implements InstantiationStrategy {
+
+    /**
+     * The stateless instance used by every {@link Messenger.Builder} by default. Builders that use the same
+     * InstantiationStrategy instance can share their compiled Message types.
+     */
+    public static final DefaultInstantiationStrategy INSTANCE = new DefaultInstantiationStrategy();
+
+    private static final Comparator<Constructor<?>> CONSTRUCTOR_COMPARATOR = new Comparator<Constructor<?>>() {
+        @Override
+        public int compare(Constructor<?> a, Constructor<?> b) {
+            return a.getParameterTypes().length - b.getParameterTypes().length;
+        }
+    };
+
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(Object.class);
+    private static final MethodHandle ALLOCATE_INSTANCE = findAllocateInstance();
+    private static final MethodHandle INIT_TYPE = findInitType();
+    private static final Field TYPE_FIELD = findTypeField();
+
+    @Override
+    public <T extends Message> Supplier<T> resolve(Class<T> messageClass) throws IllegalArgumentException {
+        List<Constructor<?>> constructors = new ArrayList<>(Arrays.asList(messageClass.getDeclaredConstructors()));
+        Collections.sort(constructors, CONSTRUCTOR_COMPARATOR);
+
+        RuntimeException exception = null;
+        for (Constructor<?> constructor : constructors) {
+            try {
+                MethodHandle factory = newConstructorFactory(constructor);
+                return new FactorySupplier<>(factory, probe(factory));
+            } catch (RuntimeException e) {
+                exception = e;
+            }
+        }
+
+        if (ALLOCATE_INSTANCE != null && INIT_TYPE != null && TYPE_FIELD != null) {
+            MethodHandle allocate = MethodHandles.insertArguments(ALLOCATE_INSTANCE, 0, messageClass);
+            MethodHandle initType = MethodHandles.insertArguments(INIT_TYPE, 0, Message.getType(messageClass));
+            return new FactorySupplier<>(MethodHandles.filterReturnValue(allocate, initType).asType(FACTORY_TYPE), null);
+        }
+        if (exception != null) {
+            throw exception;
+        }
+        throw new IllegalArgumentException("Message type " + messageClass + " is missing a valid constructor");
+    }
+
+    private static MethodHandle newConstructorFactory(Constructor<?> constructor) throws IllegalArgumentException {
+        if (!constructor.isAccessible()) {
+            constructor.setAccessible(true);
+        }
+        Class<?>[] paramTypes = constructor.getParameterTypes();
+        Object[] params = new Object[paramTypes.length];
+        for (int i = 0; i < params.length; i++) {
+            Class<?> paramType = paramTypes[i];
+            params[i] = (paramType.isArray() ? Array.newInstance(paramType.getComponentType(), 0) : Defaults.defaultValue(paramType));
+        }
+
+        MethodHandle factory;
+        try {
+            factory = MethodHandles.lookup().unreflectConstructor(constructor);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Message types must be constructable with empty values", e);
+        }
+        return MethodHandles.insertArguments(factory, 0, params).asType(FACTORY_TYPE);
+    }
+
+    // A constructor that rejects the empty values, such as one with a null check, would fail every deserialization,
+    // so it is detected once here and the next constructor or the allocating factory is used instead.
+    // The probed instance is handed out by the first call to the Supplier rather than discarded.
+    private static Object probe(MethodHandle factory) throws IllegalArgumentException {
+        try {
+            return (Object) factory.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalArgumentException("Message types must be constructable with empty values", e);
+        }
+    }
+
+    // The Message type is normally assigned by the Message constructor which is skipped when allocating an instance
+    private static Object initType(String type, Object message) {
+        try {
+            TYPE_FIELD.set(message, type);
+        } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+        return message;
+    }
+
+    private static MethodHandle findAllocateInstance() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            MethodHandle allocateInstance = MethodHandles.lookup().unreflect(unsafeClass.getMethod("allocateInstance", Class.class));
+            return allocateInstance.bindTo(unsafe);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle findInitType() {
+        try {
+            MethodType type = MethodType.methodType(Object.class, String.class, Object.class);
+            return MethodHandles.lookup().findStatic(DefaultInstantiationStrategy.class, "initType", type);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static Field findTypeField() {
+        try {
+            Field typeField = Message.class.getDeclaredField("type");
+            typeField.setAccessible(true);
+            return typeField;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+
+    private static class FactorySupplier<T> implements Supplier<T> {
+
+        private final MethodHandle factory;
+        private final AtomicReference<Object> probed;
+
+        private FactorySupplier(MethodHandle factory, Object probed) {
+            this.factory = factory;
+            this.probed = (probed != null ? new AtomicReference<>(probed) : null);
+        }
+
+        @Override
+        public T get() {
+            if (probed != null && probed.get() != null) {
+                Object instance = probed.getAndSet(null);
+                if (instance != null) {
+                    @SuppressWarnings("unchecked")
+                    T first = (T) instance;
+                    return first;
+                }
+            }
+            try {
+                @SuppressWarnings("unchecked")
+                T instance = (T) (Object) factory.invokeExact();
+                return instance;
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to create a new Message instance", e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,311 @@
+package com.deadmandungeons.connect.commons.messenger;
+
+import com.deadmandungeons.connect.commons.ConnectUtils;
+import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
+import com.deadmandungeons.connect.commons.messenger.messages.IdentifiableMessage;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.deadmandungeons.connect.commons.messenger.serializers.MessageSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Scans a JSON Message object, or an array of JSON Message objects, for the {@link MessageEnvelope} of each Message.
+ * Only the <code>type</code> and <code>id</code> properties of each object are read. Every other value is skipped
+ * by tracking nesting and string literals, so the structure is only checked as far as needed to find the objects.
+ */
+final class EnvelopeScanner {
+
+    private static final String TYPE = "type";
+    private static final String ID = "id";
+
+    private final Messenger messenger;
+    private final MessageSerializer serializer;
+    private final JsonSource source;
+    private final int length;
+    private final long[] idBits = new long[2];
+    // whether the last scanned string contains an escape sequence
+    private boolean escaped;
+
+    EnvelopeScanner(Messenger messenger, MessageSerializer serializer, JsonSource source) {
+        this.messenger = messenger;
+        this.serializer = serializer;
+        this.source = source;
+        length = source.length();
+    }
+
+    MessageEnvelope[] scan() throws MessageParseException {
+        List<MessageEnvelope> envelopes = new ArrayList<>();
+        int i = skipWhitespace(0);
+        if (i < length && source.charAt(i) == '[') {
+            i = skipWhitespace(i + 1);
+            if (peek(i) == ']') {
+                i++;
+            } else {
+                while (true) {
+                    i = skipWhitespace(scanMessage(i, envelopes));
+                    char c = peek(i++);
+                    if (c == ']') {
+                        break;
+                    } else if (c != ',') {
+                        throw unexpected(i - 1);
+                    }
+                    i = skipWhitespace(i);
+                }
+            }
+        } else {
+            i = scanMessage(i, envelopes);
+        }
+        i = skipWhitespace(i);
+        if (i != length) {
+            throw unexpected(i);
+        }
+        return envelopes.toArray(new MessageEnvelope[envelopes.size()]);
+    }
+
+    private int scanMessage(int start, List<MessageEnvelope> envelopes) throws MessageParseException {
+        if (peek(start) != '{') {
+            throw unexpected(start);
+        }
+        int typeStart = -1, typeEnd = -1, idStart = -1, idEnd = -1;
+        boolean typeEscaped = false, idEscaped = false;
+
+        int i = skipWhitespace(start + 1);
+        if (peek(i) == '}') {
+            i++;
+        } else {
+            while (true) {
+                if (peek(i) != '"') {
+                    throw unexpected(i);
+                }
+                int keyStart = i + 1;
+                int keyEnd = scanString(i);
+                String key = matchKey(keyStart, keyEnd, escaped);
+
+                i = skipWhitespace(keyEnd + 1);
+                if (peek(i) != ':') {
+                    throw unexpected(i);
+                }
+                i = skipWhitespace(i + 1);
+                if (key == TYPE && typeStart >= 0) {
+                    // the decoders use the first 'type' property, so the message is routed by the same one
+                    i = skipValue(i);
+                } else if (key == TYPE && peek(i) != '"') {
+                    throw new MessageParseException("Expected the 'type' property to be a string at index " + i);
+                } else if (key != null && peek(i) == '"') {
+                    int valueStart = i + 1;
+                    int valueEnd = scanString(i);
+                    if (key == TYPE) {
+                        typeStart = valueStart;
+                        typeEnd = valueEnd;
+                        typeEscaped = escaped;
+                    } else {
+                        idStart = valueStart;
+                        idEnd = valueEnd;
+                        idEscaped = escaped;
+                    }
+                    i = valueEnd + 1;
+                } else {
+                    i = skipValue(i);
+                }
+
+                i = skipWhitespace(i);
+                char c = peek(i++);
+                if (c == '}') {
+                    break;
+                } else if (c != ',') {
+                    throw unexpected(i - 1);
+                }
+                i = skipWhitespace(i);
+            }
+        }
+
+        if (typeStart < 0) {
+            throw new MessageParseException("Missing 'type' property");
+        }
+        Class<? extends Message> messageClass;
+        String type;
+        if (typeEscaped) {
+            type = unescape(source.text(typeStart, typeEnd));
+            messageClass = serializer.getMessageType(type, 0, type.length());
+        } else {
+            // a registered type name is ASCII, so it is matched exactly by the chars of a byte source
+            messageClass = serializer.getMessageType(source, typeStart, typeEnd);
+            type = (messageClass == null ? source.text(typeStart, typeEnd) : null);
+        }
+        type = (messageClass != null ? Message.getType(messageClass) : type.trim().toLowerCase(Locale.ROOT));
+
+        UUID id = null;
+        if (idStart >= 0 && (messageClass == null || IdentifiableMessage.class.isAssignableFrom(messageClass))) {
+            boolean valid;
+            if (idEscaped) {
+                String idString = unescape(source.text(idStart, idEnd));
+                valid = ConnectUtils.parseId(idString, 0, idString.length(), idBits);
+            } else {
+                valid = ConnectUtils.parseId(source, idStart, idEnd, idBits);
+            }
+            if (valid) {
+                id = new UUID(idBits[0], idBits[1]);
+            } else if (messageClass != null) {
+                throw new MessageParseException("Invalid id '" + source.text(idStart, idEnd) + "'");
+            }
+        }
+
+        envelopes.add(new MessageEnvelope(messenger, source, start, i, type, messageClass, id));
+        return i;
+    }
+
+    // returns the TYPE or ID constant if the key is one of them
+    private String matchKey(int start, int end, boolean escaped) throws MessageParseException {
+        if (escaped) {
+            String key = unescape(source.text(start, end));
+            return (key.equals(TYPE) ? TYPE : key.equals(ID) ? ID : null);
+        }
+        if (regionMatches(start, end, TYPE)) {
+            return TYPE;
+        }
+        return (regionMatches(start, end, ID) ? ID : null);
+    }
+
+    private boolean regionMatches(int start, int end, String key) {
+        if (end - start != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (source.charAt(start + i) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // returns the index of the closing quote of the string that opens at the given index
+    private int scanString(int i) throws MessageParseException {
+        escaped = false;
+        for (i++; ; i++) {
+            char c = peek(i);
+            if (c == '\\') {
+                escaped = true;
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+    }
+
+    // returns the index after the value that starts at the given index
+    private int skipValue(int i) throws MessageParseException {
+        char c = peek(i);
+        if (c == '"') {
+            return scanString(i) + 1;
+        }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            for (; ; i++) {
+                c = peek(i);
+                if (c == '"') {
+                    i = scanString(i);
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if ((c == '}' || c == ']') && --depth == 0) {
+                    return i + 1;
+                }
+            }
+        }
+        int start = i;
+        while (i < length && (c = source.charAt(i)) != ',' && c != '}' && c != ']' && !isWhitespace(c)) {
+            i++;
+        }
+        if (i == start) {
+            throw unexpected(i);
+        }
+        return i;
+    }
+
+    private int skipWhitespace(int i) {
+        while (i < length && isWhitespace(source.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private char peek(int i) throws MessageParseException {
+        if (i >= length) {
+            throw new MessageParseException("Unexpected end of JSON");
+        }
+        return source.charAt(i);
+    }
+
+    private MessageParseException unexpected(int i) {
+        if (i >= length) {
+            return new MessageParseException("Unexpected end of JSON");
+        }
+        return new MessageParseException("Unexpected character '" + source.charAt(i) + "' at index " + i);
+    }
+
+    private static String unescape(String escaped) throws MessageParseException {
+        StringBuilder unescaped = new StringBuilder(escaped.length());
+        try {
+            for (int i = 0; i < escaped.length(); i++) {
+                char c = escaped.charAt(i);
+                if (c != '\\') {
+                    unescaped.append(c);
+                    continue;
+                }
+                c = escaped.charAt(++i);
+                switch (c) {
+                    case 'b':
+                        unescaped.append('\b');
+                        break;
+                    case 'f':
+                        unescaped.append('\f');
+                        break;
+                    case 'n':
+                        unescaped.append('\n');
+                        break;
+                    case 'r':
+                        unescaped.append('\r');
+                        break;
+                    case 't':
+                        unescaped.append('\t');
+                        break;
+                    case 'u':
+                        int value = 0;
+                        for (int end = i + 4; i < end; ) {
+                            int digit = hexDigit(escaped.charAt(++i));
+                            if (digit < 0) {
+                                throw new MessageParseException("Invalid escape sequence in '" + escaped + "'");
+                            }
+                            value = (value << 4) | digit;
+                        }
+                        unescaped.append((char) value);
+                        break;
+                    default:
+                        unescaped.append(c);
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new MessageParseException("Invalid escape sequence in '" + escaped + "'");
+        }
+        return unescaped.toString();
+    }
+
+    // only ASCII hex digits, so a sign or the digits of other scripts are not accepted like Integer#parseInt would
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.deadmandungeons.connect.commons.messenger;
+
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.google.common.base.Supplier;
+
+/**
+ * An InstantiationStrategy determines how new instances of a {@link Message} type are created when a message of
+ * that type is deserialized by a reflectively bound codec. The creation path is resolved once when the Message type
+ * is registered, so the returned Supplier should do as little work as possible per instance.
+ * @see Messenger.Builder#instantiationStrategy(InstantiationStrategy)
+ * @see DefaultInstantiationStrategy
+ */
+public interface InstantiationStrategy {
+
+    /**
+     * @param messageClass the Message type class token to resolve the creation path of
+     * @return a Supplier of new instances of the given Message type. The fields of the supplied instances will be
+     * overwritten by the deserialized values, so they may be left with any value.
+     * @throws IllegalArgumentException if instances of the given Message type cannot be created
+     */
+    <T extends Message> Supplier<T> resolve(Class<T> messageClass) throws IllegalArgumentException;
+
+}
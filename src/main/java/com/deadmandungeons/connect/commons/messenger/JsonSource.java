@@ -0,0 +1,129 @@
+package com.deadmandungeons.connect.commons.messenger;
+
+import com.deadmandungeons.connect.commons.messenger.io.Utf8Reader;
+import com.google.common.io.CharSource;
+
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JSON that is scanned for its structure without being parsed, given as either chars or UTF-8 encoded bytes.
+ * Every structural character of JSON is ASCII, and no byte of a multi-byte UTF-8 sequence is, so UTF-8 encoded JSON
+ * is scanned one byte per char. The chars of a byte source are only exact where the JSON is ASCII, so any other range
+ * of it must be read with {@link #text(int, int)}.
+ */
+abstract class JsonSource implements CharSequence {
+
+    /**
+     * @param json the JSON chars
+     * @return a source of the given chars
+     */
+    static JsonSource of(final CharSequence json) {
+        return new JsonSource() {
+            @Override
+            public int length() {
+                return json.length();
+            }
+
+            @Override
+            public char charAt(int index) {
+                return json.charAt(index);
+            }
+
+            @Override
+            String text(int start, int end) {
+                return json.subSequence(start, end).toString();
+            }
+
+            @Override
+            CharSource slice(int start, int end) {
+                return CharSource.wrap(CharBuffer.wrap(json, start, end));
+            }
+
+            @Override
+            ByteBuffer bytes(int start, int end) {
+                return ByteBuffer.wrap(text(start, end).getBytes(StandardCharsets.UTF_8));
+            }
+        };
+    }
+
+    /**
+     * @param json the buffer of the UTF-8 encoded JSON from its position to its limit. The buffer is not modified,
+     * and index 0 of the source is the position of the buffer.
+     * @return a source of the given bytes
+     */
+    static JsonSource of(ByteBuffer json) {
+        final ByteBuffer bytes = json.slice();
+        return new JsonSource() {
+            @Override
+            public int length() {
+                return bytes.limit();
+            }
+
+            @Override
+            public char charAt(int index) {
+                return (char) (bytes.get(index) & 0xFF);
+            }
+
+            @Override
+            String text(int start, int end) {
+                ByteBuffer range = bytes(start, end);
+                if (range.hasArray()) {
+                    return new String(range.array(), range.arrayOffset() + range.position(), range.remaining(), StandardCharsets.UTF_8);
+                }
+                return StandardCharsets.UTF_8.decode(range).toString();
+            }
+
+            @Override
+            CharSource slice(final int start, final int end) {
+                return new CharSource() {
+                    @Override
+                    public Reader openStream() {
+                        return new Utf8Reader(bytes(start, end));
+                    }
+                };
+            }
+
+            @Override
+            ByteBuffer bytes(int start, int end) {
+                ByteBuffer range = bytes.duplicate();
+                range.limit(end).position(start);
+                return range.slice();
+            }
+        };
+    }
+
+    /**
+     * @param start the index of the first char or byte
+     * @param end the index after the last char or byte
+     * @return the decoded text of the given range
+     */
+    abstract String text(int start, int end);
+
+    /**
+     * @param start the index of the first char or byte
+     * @param end the index after the last char or byte
+     * @return a source of the decoded text of the given range
+     */
+    abstract CharSource slice(int start, int end);
+
+    /**
+     * @param start the index of the first char or byte
+     * @param end the index after the last char or byte
+     * @return a buffer of the UTF-8 encoded given range, which is a view of the bytes of a byte source
+     */
+    abstract ByteBuffer bytes(int start, int end);
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return text(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return text(0, length());
+    }
+
+}
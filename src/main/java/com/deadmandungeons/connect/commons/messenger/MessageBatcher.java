@@ -0,0 +1,391 @@
+package com.deadmandungeons.connect.commons.messenger;
+
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thread safe MessageBatcher collects the Messages added by any number of producer threads, and coalesces them into
+ * a single serialized JSON array per flush which is passed to a {@link Handler}. A batch is flushed once the
+ * target batch size or the byte budget is reached, or once the oldest pending message has waited for the max delay.
+ * <p>The target batch size adapts to the observed flush latency. It tracks how many messages arrive while a flush is
+ * in progress, so when load is low every message is flushed as soon as it is added, and when load is high the batch
+ * size grows up to the max batch size, amortizing the cost of each flush.</p>
+ * <p>Batches are serialized and handled on the executor of the batcher, or on the calling thread if the executor
+ * rejects the flush, one at a time, in the order the messages were added. A batch that could not be serialized or handled is passed to the {@link FailureHandler}.</p>
+ */
+public final class MessageBatcher implements Closeable {
+
+    private static final double INITIAL_BYTES_PER_MESSAGE = 128;
+    // weight of the newest sample in the moving averages
+    private static final double SMOOTHING = 0.25;
+
+    private final Messenger messenger;
+    private final Handler handler;
+    private final FailureHandler failureHandler;
+    private final int maxBatchSize;
+    private final int maxBatchBytes;
+    private final long maxDelayNanos;
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+
+    private final Object lock = new Object();
+    // held while a batch is taken and handled so batches are handled in order
+    private final Object flushLock = new Object();
+    private final Queue<Message> pending = new ArrayDeque<>();
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            runFlush();
+        }
+    };
+    private final Runnable timerTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (lock) {
+                timer = null;
+                if (flushing || pending.isEmpty()) {
+                    return;
+                }
+                flushing = true;
+            }
+            runFlush();
+        }
+    };
+
+    // guarded by lock
+    private ScheduledFuture<?> timer;
+    private boolean flushing;
+    private boolean closed;
+    private int arrivedDuringFlush;
+    private double targetBatchSize = 1;
+    private double bytesPerMessage = INITIAL_BYTES_PER_MESSAGE;
+
+    /**
+     * @param messenger the Messenger used to serialize each batch
+     * @param handler the Handler to pass each serialized batch to
+     * @return a new {@link MessageBatcher.Builder} to be used to build a new MessageBatcher instance
+     */
+    public static Builder builder(Messenger messenger, Handler handler) {
+        return new Builder(messenger, handler);
+    }
+
+    /**
+     * Receives the serialized batches of a {@link MessageBatcher}
+     */
+    public interface Handler {
+
+        /**
+         * Called for every flushed batch, on the executor of the MessageBatcher, or on the calling thread of
+         * {@link MessageBatcher#flush()}, {@link MessageBatcher#close()}, or of an add that the executor rejected
+         * @param batch the UTF-8 encoded JSON array of the batched messages
+         * @param messageCount the number of messages in the batch
+         */
+        void handle(byte[] batch, int messageCount);
+
+    }
+
+    /**
+     * Receives the batches of a {@link MessageBatcher} that could not be serialized or handled
+     */
+    public interface FailureHandler {
+
+        /**
+         * Called on the thread that flushed the batch. The messages of the batch are not flushed again.
+         * @param batch the messages of the failed batch
+         * @param cause the exception thrown while serializing or handling the batch
+         */
+        void batchFailed(Message[] batch, RuntimeException cause);
+
+    }
+
+    // passes the failure to the uncaught exception handler of the flushing thread, without killing the thread
+    private static final FailureHandler DEFAULT_FAILURE_HANDLER = new FailureHandler() {
+        @Override
+        public void batchFailed(Message[] batch, RuntimeException cause) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, cause);
+        }
+    };
+
+    /**
+     * The Builder class for a {@link MessageBatcher} instance
+     */
+    public static final class Builder {
+
+        private final Messenger messenger;
+        private final Handler handler;
+        private FailureHandler failureHandler = DEFAULT_FAILURE_HANDLER;
+        private int maxBatchSize = 256;
+        private int maxBatchBytes = 64 * 1024;
+        private long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(5);
+        private ScheduledExecutorService executor;
+
+        private Builder(Messenger messenger, Handler handler) {
+            if (messenger == null || handler == null) {
+                throw new IllegalArgumentException("messenger and handler cannot be null");
+            }
+            this.messenger = messenger;
+            this.handler = handler;
+        }
+
+        /**
+         * @param maxBatchSize the maximum number of messages in a single batch. The default is 256
+         * @return this Builder instance
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            if (maxBatchSize <= 0) {
+                throw new IllegalArgumentException("maxBatchSize must be greater than 0");
+            }
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * The byte budget of a single batch. Message sizes are estimated from the previously serialized batches,
+         * so a batch may be slightly larger than this budget. The default is 64 KiB
+         * @param maxBatchBytes the approximate maximum number of bytes in a single batch
+         * @return this Builder instance
+         */
+        public Builder maxBatchBytes(int maxBatchBytes) {
+            if (maxBatchBytes <= 0) {
+                throw new IllegalArgumentException("maxBatchBytes must be greater than 0");
+            }
+            this.maxBatchBytes = maxBatchBytes;
+            return this;
+        }
+
+        /**
+         * @param maxDelay the maximum time a message will wait for its batch to fill. The default is 5 milliseconds
+         * @param unit the unit of maxDelay
+         * @return this Builder instance
+         */
+        public Builder maxDelay(long maxDelay, TimeUnit unit) {
+            if (maxDelay < 0) {
+                throw new IllegalArgumentException("maxDelay cannot be negative");
+            }
+            this.maxDelayNanos = unit.toNanos(maxDelay);
+            return this;
+        }
+
+        /**
+         * @param failureHandler the handler of the batches that could not be serialized or handled. By default,
+         * the exception is passed to the uncaught exception handler of the flushing thread.
+         * @return this Builder instance
+         */
+        public Builder failureHandler(FailureHandler failureHandler) {
+            if (failureHandler == null) {
+                throw new IllegalArgumentException("failureHandler cannot be null");
+            }
+            this.failureHandler = failureHandler;
+            return this;
+        }
+
+        /**
+         * @param executor the executor to serialize and handle batches on. The executor is not shut down when the
+         * MessageBatcher is closed. By default, the MessageBatcher uses its own single daemon thread.
+         * @return this Builder instance
+         */
+        public Builder executor(ScheduledExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @return the built MessageBatcher instance
+         */
+        public MessageBatcher build() {
+            return new MessageBatcher(this);
+        }
+
+    }
+
+    private MessageBatcher(Builder builder) {
+        messenger = builder.messenger;
+        handler = builder.handler;
+        failureHandler = builder.failureHandler;
+        maxBatchSize = builder.maxBatchSize;
+        maxBatchBytes = builder.maxBatchBytes;
+        maxDelayNanos = builder.maxDelayNanos;
+        if (builder.executor != null) {
+            executor = builder.executor;
+            ownsExecutor = false;
+        } else {
+            ThreadFactoryBuilder threadFactory = new ThreadFactoryBuilder().setNameFormat("MessageBatcher-%d").setDaemon(true);
+            executor = Executors.newSingleThreadScheduledExecutor(threadFactory.build());
+            ownsExecutor = true;
+        }
+    }
+
+
+    /**
+     * Add the given message to the pending batch
+     * @param message the message to add
+     * @throws IllegalArgumentException if the message is invalid ({@link Message#validate()}) as checked by the
+     * {@link ValidationPolicy} of the Messenger
+     * @throws IllegalStateException if this MessageBatcher has been closed
+     */
+    public void add(Message message) throws IllegalArgumentException, IllegalStateException {
+        messenger.validateOutbound(message);
+
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("MessageBatcher has been closed");
+            }
+            pending.add(message);
+            if (flushing) {
+                arrivedDuringFlush++;
+                return;
+            }
+            if (!isBatchReady()) {
+                scheduleTimer();
+                return;
+            }
+            flushing = true;
+            cancelTimer();
+        }
+        try {
+            executor.execute(flushTask);
+        } catch (RejectedExecutionException e) {
+            // a given executor was shut down or is saturated, so flush on the calling thread rather than stall
+            runFlush();
+        }
+    }
+
+    /**
+     * Add each of the given messages to the pending batch
+     * @param messages the messages to add
+     * @throws IllegalArgumentException if any message is invalid ({@link Message#validate()}) as checked by the
+     * {@link ValidationPolicy} of the Messenger
+     * @throws IllegalStateException if this MessageBatcher has been closed
+     */
+    public void addAll(Message... messages) throws IllegalArgumentException, IllegalStateException {
+        for (Message message : messages) {
+            add(message);
+        }
+    }
+
+    /**
+     * Flush every pending message on the calling thread, regardless of the batch triggers
+     */
+    public void flush() {
+        while (flushBatch() > 0) {
+            // flush until no messages are pending
+        }
+    }
+
+    /**
+     * @return the current adaptive target batch size
+     */
+    public int getTargetBatchSize() {
+        synchronized (lock) {
+            return (int) Math.min(maxBatchSize, Math.round(targetBatchSize));
+        }
+    }
+
+    /**
+     * Flush every pending message and stop accepting new messages.
+     * The executor is shut down if it is owned by this MessageBatcher.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            cancelTimer();
+        }
+        flush();
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    // must hold lock
+    private boolean isBatchReady() {
+        return pending.size() >= Math.min(maxBatchSize, Math.round(targetBatchSize))
+                || pending.size() * bytesPerMessage >= maxBatchBytes;
+    }
+
+    // must hold lock
+    private void scheduleTimer() {
+        if (timer == null && !pending.isEmpty() && !closed) {
+            try {
+                timer = executor.schedule(timerTask, maxDelayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // a given executor was shut down, so the pending messages are flushed by the next add or flush
+            }
+        }
+    }
+
+    // must hold lock
+    private void cancelTimer() {
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+    }
+
+    private void runFlush() {
+        boolean done = false;
+        try {
+            while (!done) {
+                flushBatch();
+                synchronized (lock) {
+                    // the messages that arrived during the flush are a measure of the arrival rate times the flush latency
+                    int arrived = Math.max(1, arrivedDuringFlush);
+                    arrivedDuringFlush = 0;
+                    targetBatchSize += SMOOTHING * (Math.min(arrived, maxBatchSize) - targetBatchSize);
+
+                    if (pending.isEmpty() || !(isBatchReady() || closed)) {
+                        flushing = false;
+                        done = true;
+                        scheduleTimer();
+                    }
+                }
+            }
+        } finally {
+            if (!done) {
+                // a FailureHandler or an Error interrupted the flush, so the remaining messages wait for the timer
+                synchronized (lock) {
+                    flushing = false;
+                    scheduleTimer();
+                }
+            }
+        }
+    }
+
+    private int flushBatch() {
+        synchronized (flushLock) {
+            Message[] batch;
+            synchronized (lock) {
+                int budgetSize = (int) Math.max(1, maxBatchBytes / bytesPerMessage);
+                batch = new Message[Math.min(pending.size(), Math.min(maxBatchSize, budgetSize))];
+                for (int i = 0; i < batch.length; i++) {
+                    batch[i] = pending.poll();
+                }
+            }
+            if (batch.length == 0) {
+                return 0;
+            }
+
+            try {
+                byte[] serialized = messenger.serializeToBytes(batch, false);
+                synchronized (lock) {
+                    bytesPerMessage += SMOOTHING * ((double) serialized.length / batch.length - bytesPerMessage);
+                }
+                handler.handle(serialized, batch.length);
+            } catch (RuntimeException e) {
+                failureHandler.batchFailed(batch, e);
+            }
+            return batch.length;
+        }
+    }
+
+}
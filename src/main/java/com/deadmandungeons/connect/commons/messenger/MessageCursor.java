@@ -0,0 +1,38 @@
+package com.deadmandungeons.connect.commons.messenger;
+
+import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A MessageCursor lazily reads the Messages of a single JSON Message object, or an array of JSON Message objects,
+ * one at a time from an underlying character stream. Only the Message currently being read is held in memory.
+ * <p><b>Note:</b> The returned Messages will not have been validated yet with {@link Message#validate()}</p>
+ * @see Messenger#openCursor(java.io.Reader)
+ */
+public interface MessageCursor extends Closeable {
+
+    /**
+     * @return true if there is another Message to read
+     * @throws IOException if the underlying stream could not be read
+     * @throws MessageParseException if the underlying stream is not a valid representation of one or more Messages
+     */
+    boolean hasNext() throws IOException, MessageParseException;
+
+    /**
+     * @return the next Message
+     * @throws IOException if the underlying stream could not be read
+     * @throws MessageParseException if the next Message is not a valid representation for a Message of the type it specifies
+     * @throws java.util.NoSuchElementException if there are no more Messages to read
+     */
+    Message next() throws IOException, MessageParseException;
+
+    /**
+     * Close this cursor and the underlying stream
+     */
+    @Override
+    void close() throws IOException;
+
+}
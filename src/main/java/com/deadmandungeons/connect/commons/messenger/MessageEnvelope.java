@@ -0,0 +1,114 @@
+package com.deadmandungeons.connect.commons.messenger;
+
+import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
+import com.deadmandungeons.connect.commons.messenger.messages.IdentifiableMessage;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * The envelope of a single JSON Message, which holds its type and id along with the range of its raw JSON in the
+ * scanned input. An envelope allows a message to be routed by its type and id, and forwarded verbatim, without
+ * deserializing the message. The message is only deserialized if {@link #decode()} is called.
+ * <p>An envelope refers to the scanned input, so the input must not be modified while the envelope is in use.</p>
+ * @see Messenger#scanEnvelopes(String)
+ */
+public final class MessageEnvelope {
+
+    private final Messenger messenger;
+    private final JsonSource source;
+    private final int start;
+    private final int end;
+    private final String type;
+    private final Class<? extends Message> messageClass;
+    private final UUID id;
+    private volatile Message message;
+
+    MessageEnvelope(Messenger messenger, JsonSource source, int start, int end, String type,
+            Class<? extends Message> messageClass, UUID id) {
+        this.messenger = messenger;
+        this.source = source;
+        this.start = start;
+        this.end = end;
+        this.type = type;
+        this.messageClass = messageClass;
+        this.id = id;
+    }
+
+    /**
+     * @return the type of the message. This is the name of the registered Message type if there is one,
+     * otherwise the type as it was given in lower case.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return the registered Message type class of the message, or null if its type is not registered
+     */
+    public Class<? extends Message> getMessageClass() {
+        return messageClass;
+    }
+
+    /**
+     * @return the id of the message if it is an {@link IdentifiableMessage}, or is of an unregistered type with a
+     * valid <code>id</code> property. Otherwise null.
+     */
+    public UUID getId() {
+        return id;
+    }
+
+    /**
+     * @return the index of the first char, or byte if the input was UTF-8 encoded, of the JSON object of the message
+     * in the scanned input
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return the index after the last char, or byte if the input was UTF-8 encoded, of the JSON object of the message
+     * in the scanned input
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the raw JSON object of the message exactly as it was scanned
+     */
+    public String getRawJson() {
+        return source.text(start, end);
+    }
+
+    /**
+     * @return a read-only buffer of the UTF-8 encoded raw JSON object of the message.
+     * If the input was UTF-8 encoded, the buffer is a view of the input without copying it.
+     */
+    public ByteBuffer getRawBytes() {
+        return source.bytes(start, end).asReadOnlyBuffer();
+    }
+
+    /**
+     * Deserialize the message of this envelope with the Messenger that scanned it. The message is only deserialized
+     * the first time this is called, so every call returns the same instance.
+     * @return the deserialized message
+     * @throws MessageParseException if the raw JSON is not a valid representation for a Message of the type it specifies
+     */
+    public Message decode() throws MessageParseException {
+        Message message = this.message;
+        if (message == null) {
+            try (Reader reader = source.slice(start, end).openStream()) {
+                message = messenger.deserialize(reader)[0];
+            } catch (IOException e) {
+                throw new MessageParseException(e);
+            }
+            this.message = message;
+        }
+        return message;
+    }
+
+}
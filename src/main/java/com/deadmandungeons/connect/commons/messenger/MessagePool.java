@@ -0,0 +1,80 @@
+package com.deadmandungeons.connect.commons.messenger;
+
+import com.deadmandungeons.connect.commons.messenger.codecs.ReflectiveMessageCodec;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.deadmandungeons.connect.commons.messenger.messages.Recyclable;
+import com.google.common.base.Supplier;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of released instances of a single {@link Message} type, which supplies the instances that its
+ * reflectively bound codec reads into. A new instance is created when no released instance is available, and a
+ * released instance is dropped when the pool is full. The pool is array backed, so releasing and reusing an
+ * instance does not allocate.
+ * <p>Only mutable Message types are pooled, since reading into a reused instance writes every serialized field.
+ * A type with a final serialized field is assumed to be immutable, as the built-in Message types are, so its
+ * instances are never reused. The {@link ValidationPolicy} never memoizes the validation of a mutable instance,
+ * so a reused instance is validated again by every Messenger that shares the pool.</p>
+ * @param <T> the pooled Message type
+ */
+final class MessagePool<T extends Message> implements Supplier<T> {
+
+    private final Class<T> messageClass;
+    private final Supplier<T> messageSupplier;
+    private final ReflectiveMessageCodec<T> codec;
+    private final BlockingQueue<T> released;
+
+    MessagePool(Class<T> messageClass, Supplier<T> messageSupplier, int capacity) {
+        this.messageClass = messageClass;
+        this.messageSupplier = messageSupplier;
+        codec = new ReflectiveMessageCodec<>(messageClass, this);
+        released = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * @param messageClass the Message type to check
+     * @return true if the given Message type has no final serialized fields, so its instances can be reused
+     */
+    static boolean isPoolable(Class<? extends Message> messageClass) {
+        for (Class<?> raw = messageClass; raw != Message.class && raw != null; raw = raw.getSuperclass()) {
+            for (Field field : raw.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && Modifier.isFinal(modifiers)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the codec that reads into the instances of this pool
+     */
+    ReflectiveMessageCodec<T> getCodec() {
+        return codec;
+    }
+
+    @Override
+    public T get() {
+        T message = released.poll();
+        return (message != null ? message : messageSupplier.get());
+    }
+
+    /**
+     * Reset the given message and return it to this pool
+     * @param message the message to release, which must be of the pooled type
+     */
+    void release(Message message) {
+        T instance = messageClass.cast(message);
+        codec.reset(instance);
+        if (instance instanceof Recyclable) {
+            ((Recyclable) instance).recycle();
+        }
+        released.offer(instance);
+    }
+
+}
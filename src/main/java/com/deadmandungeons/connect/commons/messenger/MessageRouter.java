@@ -0,0 +1,331 @@
+package com.deadmandungeons.connect.commons.messenger;
+
+import com.deadmandungeons.connect.commons.messenger.messages.IdentifiableMessage;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A MessageRouter dispatches each routed {@link Message} to the {@link Handler}s registered for its type, in place of
+ * an <code>instanceof</code> chain. The handlers of every Message class are resolved once and cached, so dispatching
+ * a message is a single table lookup.
+ * <p>Handlers run on an executor, striped by the id of each {@link IdentifiableMessage}. Messages with the same id
+ * are always handled one at a time in the order they were routed, while messages with different ids are handled in
+ * parallel. Messages without an id are ordered by their type instead.</p>
+ * <p>An exception or error thrown by a handler is passed to the uncaught exception handler of the executing thread,
+ * and does not prevent the following messages from being handled.</p>
+ */
+public final class MessageRouter implements Closeable {
+
+    // the number of messages a stripe handles before it yields its thread to the other stripes
+    private static final int MAX_BATCH = 64;
+
+    private final ImmutableMap<Class<?>, Handler<Message>[]> handlers;
+    private final Handler<Message>[] defaultHandlers;
+    private final Stripe[] stripes;
+    private final Executor executor;
+    private final boolean ownsExecutor;
+    private volatile boolean closed;
+
+    private final ClassValue<Handler<Message>[]> routes = new ClassValue<Handler<Message>[]>() {
+        @Override
+        protected Handler<Message>[] computeValue(Class<?> type) {
+            // the handlers of the most specific registered type apply to its subclasses
+            for (Class<?> raw = type; raw != null; raw = raw.getSuperclass()) {
+                Handler<Message>[] registered = handlers.get(raw);
+                if (registered != null) {
+                    return registered;
+                }
+            }
+            return defaultHandlers;
+        }
+    };
+
+    /**
+     * @return a new {@link MessageRouter.Builder} to be used to build a new MessageRouter instance
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Handles the routed messages of a type
+     * @param <T> the Message type this handler handles
+     */
+    public interface Handler<T extends Message> {
+
+        /**
+         * Called on a thread of the executor of the MessageRouter for every routed message of the type
+         * @param message the message to handle
+         */
+        void handle(T message);
+
+    }
+
+    /**
+     * The Builder class for a {@link MessageRouter} instance
+     */
+    public static final class Builder {
+
+        private final Map<Class<?>, List<Handler<?>>> handlers = new LinkedHashMap<>();
+        private Handler<? super Message> defaultHandler;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int stripes = -1;
+        private ExecutorService executor;
+
+        private Builder() {
+        }
+
+        /**
+         * Register a handler of the given Message type. The handler also handles the messages of any subclass that
+         * does not have a handler of its own. When a type has more than one handler,
+         * they are called in the order they were registered.
+         * @param typeClass the Message type class token to register the handler of
+         * @param handler the handler of the messages of the type
+         * @return this Builder instance
+         * @throws IllegalArgumentException if the given type is not annotated with a
+         * {@link com.deadmandungeons.connect.commons.messenger.messages.MessageType MessageType}
+         */
+        public <T extends Message> Builder handler(Class<T> typeClass, Handler<? super T> handler) throws IllegalArgumentException {
+            if (handler == null) {
+                throw new IllegalArgumentException("handler cannot be null");
+            }
+            // throws IllegalArgumentException if type is undefined
+            Message.getType(typeClass);
+
+            List<Handler<?>> typeHandlers = handlers.get(typeClass);
+            if (typeHandlers == null) {
+                typeHandlers = new ArrayList<>();
+                handlers.put(typeClass, typeHandlers);
+            }
+            typeHandlers.add(handler);
+            return this;
+        }
+
+        /**
+         * @param defaultHandler the handler of the messages of every type that does not have a handler.
+         * By default, such messages are ignored.
+         * @return this Builder instance
+         */
+        public Builder defaultHandler(Handler<? super Message> defaultHandler) {
+            this.defaultHandler = defaultHandler;
+            return this;
+        }
+
+        /**
+         * @param threads the number of threads to handle messages on. The default is the number of available processors
+         * @return this Builder instance
+         */
+        public Builder threads(int threads) {
+            if (threads <= 0) {
+                throw new IllegalArgumentException("threads must be greater than 0");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * More stripes than threads lets a thread move on to another stripe while a stripe is idle,
+         * at the cost of a little more memory.
+         * @param stripes the number of stripes that ids are spread across. The default is 4 times the number of threads
+         * @return this Builder instance
+         */
+        public Builder stripes(int stripes) {
+            if (stripes <= 0) {
+                throw new IllegalArgumentException("stripes must be greater than 0");
+            }
+            this.stripes = stripes;
+            return this;
+        }
+
+        /**
+         * @param executor the executor to handle messages on, in place of the threads of the MessageRouter.
+         * The executor is not shut down when the MessageRouter is closed.
+         * @return this Builder instance
+         */
+        public Builder executor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @return the built MessageRouter instance
+         */
+        public MessageRouter build() {
+            return new MessageRouter(this);
+        }
+
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private MessageRouter(Builder builder) {
+        ImmutableMap.Builder<Class<?>, Handler<Message>[]> handlers = ImmutableMap.builder();
+        for (Map.Entry<Class<?>, List<Handler<?>>> entry : builder.handlers.entrySet()) {
+            handlers.put(entry.getKey(), entry.getValue().toArray(new Handler[entry.getValue().size()]));
+        }
+        this.handlers = handlers.build();
+        defaultHandlers = (builder.defaultHandler != null ? new Handler[] {builder.defaultHandler} : new Handler[0]);
+
+        if (builder.executor != null) {
+            executor = builder.executor;
+            ownsExecutor = false;
+        } else {
+            ThreadFactoryBuilder threadFactory = new ThreadFactoryBuilder().setNameFormat("MessageRouter-%d").setDaemon(true);
+            executor = Executors.newFixedThreadPool(builder.threads, threadFactory.build());
+            ownsExecutor = true;
+        }
+        stripes = new Stripe[builder.stripes > 0 ? builder.stripes : builder.threads * 4];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+
+    /**
+     * Route the given message to the handlers of its type
+     * @param message the message to route
+     * @throws IllegalStateException if this MessageRouter has been closed
+     */
+    public void route(Message message) throws IllegalStateException {
+        if (closed) {
+            throw new IllegalStateException("MessageRouter has been closed");
+        }
+        stripes[stripeOf(message)].add(message);
+    }
+
+    /**
+     * Route each of the given messages to the handlers of its type, in order
+     * @param messages the messages to route, such as those returned by {@link Messenger#deserialize(String)}
+     * @throws IllegalStateException if this MessageRouter has been closed
+     */
+    public void route(Message... messages) throws IllegalStateException {
+        for (Message message : messages) {
+            route(message);
+        }
+    }
+
+    /**
+     * Stop accepting new messages. The messages that were already routed are still handled.
+     * The executor is shut down if it is owned by this MessageRouter.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (ownsExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    private int stripeOf(Message message) {
+        int hash;
+        UUID id = (message instanceof IdentifiableMessage ? ((IdentifiableMessage) message).getId() : null);
+        if (id != null) {
+            hash = id.hashCode();
+        } else {
+            hash = message.getClass().hashCode();
+        }
+        // spread the hash so that similar ids do not share a stripe
+        hash *= 0x9E3779B9;
+        return (hash >>> 1) % stripes.length;
+    }
+
+    private void dispatch(Message message) {
+        for (Handler<Message> handler : routes.get(message.getClass())) {
+            try {
+                handler.handle(message);
+            } catch (Throwable t) {
+                // an Error must not stop the stripe either, or the messages of every id on it would be dropped
+                report(t);
+            }
+        }
+    }
+
+    private static void report(Throwable t) {
+        Thread thread = Thread.currentThread();
+        try {
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+        } catch (Throwable ignored) {
+            // a failing exception handler must not stop the stripe
+        }
+    }
+
+
+    // handles its messages one at a time in order, on at most one thread of the executor at a time
+    private class Stripe implements Runnable {
+
+        private final Queue<Message> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private void add(Message message) {
+            pending.add(message);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // the owned executor was shut down by close, so handle the messages on the calling thread
+                    run();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                drain();
+            } catch (Throwable t) {
+                // unschedule the stripe so that its pending and later messages are still handled
+                scheduled.set(false);
+                if (!pending.isEmpty()) {
+                    schedule();
+                }
+                throw t;
+            }
+        }
+
+        private void drain() {
+            int handled = 0;
+            while (true) {
+                Message message = pending.poll();
+                if (message == null) {
+                    scheduled.set(false);
+                    // a message may have been added after the poll, but before the stripe was unscheduled
+                    if (pending.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                dispatch(message);
+
+                if (++handled == MAX_BATCH) {
+                    handled = 0;
+                    try {
+                        executor.execute(this);
+                        return;
+                    } catch (RejectedExecutionException e) {
+                        // keep handling the remaining messages on this thread
+                    }
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,205 @@
+package com.deadmandungeons.connect.commons.messenger;
+
+import com.deadmandungeons.connect.commons.messenger.exceptions.InvalidMessageException;
+import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.google.common.collect.MapMaker;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Applies the {@link ValidationPolicy} of a {@link Messenger}. Batches of at least {@link #PARALLEL_THRESHOLD}
+ * messages are validated in parallel on the {@link SharedPool}.
+ */
+final class MessageValidator {
+
+    static final int PARALLEL_THRESHOLD = 1024;
+    private static final int SEQUENTIAL_CHUNK = 256;
+
+    private static final Map<Class<?>, Boolean> immutableTypes = new ConcurrentHashMap<>();
+
+    private final ValidationPolicy policy;
+    // identity based and weakly referenced, so validated messages are collected as usual
+    private final Set<Message> validated;
+
+    MessageValidator(ValidationPolicy policy) {
+        this.policy = policy;
+        boolean memoize = (policy == ValidationPolicy.ONCE_PER_INSTANCE || policy == ValidationPolicy.ON_RECEIVE);
+        validated = (memoize ? Collections.newSetFromMap(new MapMaker().weakKeys().<Message, Boolean>makeMap()) : null);
+    }
+
+    /**
+     * @param messages the messages about to be serialized
+     * @throws IllegalArgumentException if any message is invalid
+     */
+    void validateOutbound(Message[] messages) throws IllegalArgumentException {
+        if (policy == ValidationPolicy.TRUSTED) {
+            return;
+        }
+        InvalidMessageException failure = validate(messages);
+        if (failure != null) {
+            throw new IllegalArgumentException("serialized messenger must be valid", failure);
+        }
+    }
+
+    /**
+     * @param messages the deserialized messages
+     * @throws MessageParseException if any message is invalid and the policy is {@link ValidationPolicy#ON_RECEIVE}
+     */
+    void validateInbound(Message[] messages) throws MessageParseException {
+        if (policy != ValidationPolicy.ON_RECEIVE) {
+            return;
+        }
+        InvalidMessageException failure = validate(messages);
+        if (failure != null) {
+            throw new MessageParseException(failure);
+        }
+    }
+
+    /**
+     * @param cursor the cursor of the deserialized messages
+     * @return a cursor that validates each message as it is read if the policy is {@link ValidationPolicy#ON_RECEIVE}
+     */
+    MessageCursor validateInbound(final MessageCursor cursor) {
+        if (policy != ValidationPolicy.ON_RECEIVE) {
+            return cursor;
+        }
+        return new MessageCursor() {
+            @Override
+            public boolean hasNext() throws IOException, MessageParseException {
+                return cursor.hasNext();
+            }
+
+            @Override
+            public Message next() throws IOException, MessageParseException {
+                Message message = cursor.next();
+                try {
+                    validate(message);
+                } catch (InvalidMessageException e) {
+                    throw new MessageParseException(e);
+                }
+                return message;
+            }
+
+            @Override
+            public void close() throws IOException {
+                cursor.close();
+            }
+        };
+    }
+
+    /**
+     * @param message the message that is about to be reused with different properties
+     */
+    void forget(Message message) {
+        if (validated != null) {
+            validated.remove(message);
+        }
+    }
+
+    private InvalidMessageException validate(Message[] messages) {
+        if (messages.length >= PARALLEL_THRESHOLD) {
+            ValidationTask task = new ValidationTask(messages, 0, messages.length, new AtomicReference<InvalidMessageException>());
+            SharedPool.get().invoke(task);
+            return task.failure.get();
+        }
+        try {
+            for (Message message : messages) {
+                validate(message);
+            }
+            return null;
+        } catch (InvalidMessageException e) {
+            return e;
+        }
+    }
+
+    private void validate(Message message) throws InvalidMessageException {
+        try {
+            if (validated == null) {
+                message.validate();
+            } else if (!validated.contains(message)) {
+                message.validate();
+                if (isImmutable(message.getClass())) {
+                    validated.add(message);
+                }
+            }
+        } catch (InvalidMessageException e) {
+            if (e.getMessageClass() != null) {
+                throw e;
+            }
+            // the metrics of the Messenger record the failure under the type of the invalid message
+            throw new InvalidMessageException(e.getMessage(), e, message.getClass());
+        }
+    }
+
+    private static boolean isImmutable(Class<?> messageClass) {
+        Boolean immutable = immutableTypes.get(messageClass);
+        if (immutable == null) {
+            immutable = true;
+            for (Class<?> raw = messageClass; raw != Message.class && raw != null; raw = raw.getSuperclass()) {
+                for (Field field : raw.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers)) {
+                        continue;
+                    }
+                    if (!Modifier.isFinal(modifiers) || !isImmutableValue(field.getType())) {
+                        immutable = false;
+                    }
+                }
+            }
+            immutableTypes.put(messageClass, immutable);
+        }
+        return immutable;
+    }
+
+    private static boolean isImmutableValue(Class<?> type) {
+        return type.isPrimitive() || type.isEnum() || type == String.class || type == UUID.class
+                || type == Boolean.class || type == Character.class || type == Byte.class || type == Short.class
+                || type == Integer.class || type == Long.class || type == Float.class || type == Double.class;
+    }
+
+
+    private class ValidationTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 6373592150962545023L;
+
+        private final Message[] messages;
+        private final int start;
+        private final int end;
+        private final AtomicReference<InvalidMessageException> failure;
+
+        private ValidationTask(Message[] messages, int start, int end, AtomicReference<InvalidMessageException> failure) {
+            this.messages = messages;
+            this.start = start;
+            this.end = end;
+            this.failure = failure;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > SEQUENTIAL_CHUNK) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new ValidationTask(messages, start, middle, failure), new ValidationTask(messages, middle, end, failure));
+                return;
+            }
+            for (int i = start; i < end && failure.get() == null; i++) {
+                try {
+                    validate(messages[i]);
+                } catch (InvalidMessageException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }
+
+    }
+
+}
@@ -1,24 +1,28 @@
 package com.deadmandungeons.connect.commons.messenger;
 
 import com.deadmandungeons.connect.commons.ConnectUtils;
-import com.deadmandungeons.connect.commons.messenger.exceptions.InvalidMessageException;
+import com.deadmandungeons.connect.commons.messenger.codecs.MessageCodec;
 import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
+import com.deadmandungeons.connect.commons.messenger.io.Utf8Reader;
+import com.deadmandungeons.connect.commons.messenger.io.Utf8Writer;
 import com.deadmandungeons.connect.commons.messenger.messages.HeartbeatMessage;
 import com.deadmandungeons.connect.commons.messenger.messages.Message;
 import com.deadmandungeons.connect.commons.messenger.messages.StatusMessage;
-import com.deadmandungeons.connect.commons.messenger.serializers.CraftbukkitGsonMessageSerializer;
-import com.deadmandungeons.connect.commons.messenger.serializers.GsonMessageSerializer;
+import com.deadmandungeons.connect.commons.messenger.metrics.MessengerMetrics;
+import com.deadmandungeons.connect.commons.messenger.serializers.BinaryMessageSerializer;
 import com.deadmandungeons.connect.commons.messenger.serializers.MessageSerializer;
-import com.google.common.base.Defaults;
-import com.google.common.base.Supplier;
 
-import java.lang.reflect.Array;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.TreeSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 
 /**
@@ -29,14 +33,13 @@ import java.util.TreeSet;
  */
 public final class Messenger {
 
-    private static final Comparator<Constructor<?>> CONSTRUCTOR_COMPARATOR = new Comparator<Constructor<?>>() {
-        @Override
-        public int compare(Constructor a, Constructor b) {
-            return a.getParameterTypes().length - b.getParameterTypes().length;
-        }
-    };
-
+    private final MessengerRegistry registry;
     private final MessageSerializer serializer;
+    private final BinaryMessageSerializer binarySerializer;
+    private final MessageValidator validator;
+    private final int parallelDecodeThreshold;
+    private final ParallelDecoder parallelDecoder;
+    private final MetricsRecorder recorder;
 
     /**
      * @return a new {@link Messenger.Builder} to be used to build a new Messenger instance
@@ -52,16 +55,17 @@ public final class Messenger {
      */
     public static final class Builder {
 
-        private final MessageSerializer serializer;
+        private final Map<Class<? extends Message>, InstantiationStrategy> messageTypes = new LinkedHashMap<>();
+        private InstantiationStrategy instantiationStrategy = DefaultInstantiationStrategy.INSTANCE;
+        private boolean compactUuids;
+        private boolean warmUp;
+        private ValidationPolicy validationPolicy = ValidationPolicy.ALWAYS;
+        private int parallelDecodeThreshold = -1;
+        private MessengerMetrics metrics;
+        private int poolCapacity;
+        private SerializerBackend serializerBackend = SerializerBackend.AUTO;
 
         private Builder() {
-            if (ConnectUtils.checkClass("com.google.gson.Gson")) {
-                serializer = new GsonMessageSerializer();
-            } else {
-                // servers v1.8.0 and below include Gson shaded at org.bukkit.craftbukkit.libs.com.google.gson
-                serializer = new CraftbukkitGsonMessageSerializer();
-            }
-
             registerMessageType(StatusMessage.class);
             registerMessageType(HeartbeatMessage.class);
         }
@@ -69,6 +73,7 @@ public final class Messenger {
         /**
          * Register a {@link Message} type for the built Messenger instance. A Message type must be registered
          * in order to deserialize a message of that type using {@link Messenger#deserialize(String)}.
+         * The codec of the Message type is resolved when the Messenger is built.
          * @param typeClass the Message type class token to register
          * @return this Builder instance
          * @throws IllegalArgumentException if the given type is not a valid subclass of the {@link Message} abstract class
@@ -78,35 +83,167 @@ public final class Messenger {
                 throw new IllegalArgumentException("typeClass must be a subclass of Message");
             }
             // throws IllegalArgumentException if type is undefined
-            String type = Message.getType(typeClass);
-            // throws IllegalArgumentException if unconstructable
-            final Constructor<?> messageConstructor = findMessageConstructor(typeClass);
+            Message.getType(typeClass);
+
+            if (!messageTypes.containsKey(typeClass)) {
+                messageTypes.put(typeClass, instantiationStrategy);
+            }
+            return this;
+        }
+
+        /**
+         * Write the UUIDs of messages, such as the id of an {@link com.deadmandungeons.connect.commons.messenger.messages.IdentifiableMessage},
+         * in the 22 character base64 encoded form rather than the 36 character normal form. UUIDs in the normal,
+         * shortened, and base64 encoded forms are accepted when deserializing regardless of this option.
+         * @param compactUuids true to write UUIDs in the base64 encoded form. The default is false
+         * @return this Builder instance
+         * @see ConnectUtils#encodeUuidBase64(java.util.UUID)
+         */
+        public Builder compactUuids(boolean compactUuids) {
+            this.compactUuids = compactUuids;
+            return this;
+        }
+
+        /**
+         * Set the {@link InstantiationStrategy} used to create new instances of Message types that are registered
+         * after this call. Message types with a generated {@link MessageCodec} do not need an InstantiationStrategy.
+         * @param instantiationStrategy the InstantiationStrategy to use. The default is {@link DefaultInstantiationStrategy}
+         * @return this Builder instance
+         */
+        public Builder instantiationStrategy(InstantiationStrategy instantiationStrategy) {
+            if (instantiationStrategy == null) {
+                throw new IllegalArgumentException("instantiationStrategy cannot be null");
+            }
+            this.instantiationStrategy = instantiationStrategy;
+            return this;
+        }
+
+        /**
+         * Serialize and deserialize a message of every registered type when the Messenger is built, so that the
+         * first real message does not pay for loading the classes and code paths of its codec.
+         * A set of registered types is only warmed up once no matter how many Messengers are built with it.
+         * If the codec of a type fails to serialize a message with default property values, {@link #build()} fails.
+         * @param warmUp true to warm up the codecs of the registered types. The default is false
+         * @return this Builder instance
+         */
+        public Builder warmUp(boolean warmUp) {
+            this.warmUp = warmUp;
+            return this;
+        }
+
+        /**
+         * @param validationPolicy the ValidationPolicy that determines when messages are validated.
+         * The default is {@link ValidationPolicy#ALWAYS}
+         * @return this Builder instance
+         */
+        public Builder validationPolicy(ValidationPolicy validationPolicy) {
+            if (validationPolicy == null) {
+                throw new IllegalArgumentException("validationPolicy cannot be null");
+            }
+            this.validationPolicy = validationPolicy;
+            return this;
+        }
+
+        /**
+         * Decode JSON arrays of at least the given length in parallel. The array is split into chunks at the
+         * boundaries of its elements, the chunks are decoded on a shared ForkJoinPool, and the deserialized
+         * Messages are returned in their original order. This applies to {@link Messenger#deserialize(String)},
+         * {@link Messenger#deserialize(byte[])} and {@link Messenger#deserialize(ByteBuffer)}.
+         * @param parallelDecodeThreshold the minimum length in characters, or bytes when UTF-8 encoded, of the JSON
+         * to decode in parallel. By default JSON is never decoded in parallel
+         * @return this Builder instance
+         */
+        public Builder parallelDecodeThreshold(int parallelDecodeThreshold) {
+            if (parallelDecodeThreshold <= 0) {
+                throw new IllegalArgumentException("parallelDecodeThreshold must be greater than 0");
+            }
+            this.parallelDecodeThreshold = parallelDecodeThreshold;
+            return this;
+        }
 
-            serializer.registerMessageType(type, typeClass, new Supplier<T>() {
+        /**
+         * Enable pooled decoding, where deserialized messages are read into instances that are reused once they are
+         * passed to {@link Messenger#release(Message...)}. A released message has every serialized property reset
+         * to its default value, and {@link com.deadmandungeons.connect.commons.messenger.messages.Recyclable#recycle()}
+         * is called if its type implements it. Pooled Message types are bound reflectively instead of by a generated codec.
+         * <p>Only Message types without final serialized fields are pooled, so the instances of immutable types, such
+         * as the built-in {@link StatusMessage}, are never modified. By default, every deserialized message is a new
+         * instance.</p>
+         * @param poolCapacity the maximum number of released instances to pool for each Message type
+         * @return this Builder instance
+         */
+        public Builder pooledDecoding(int poolCapacity) {
+            if (poolCapacity <= 0) {
+                throw new IllegalArgumentException("poolCapacity must be greater than 0");
+            }
+            this.poolCapacity = poolCapacity;
+            return this;
+        }
 
-                @Override
-                public T get() {
-                    return newInstance(messageConstructor);
-                }
-            });
+        /**
+         * @param serializerBackend the backend to serialize and deserialize JSON with. By default, the backend is
+         * {@link SerializerBackend#AUTO}
+         * @return this Builder instance
+         */
+        public Builder serializerBackend(SerializerBackend serializerBackend) {
+            if (serializerBackend == null) {
+                throw new IllegalArgumentException("serializerBackend cannot be null");
+            }
+            this.serializerBackend = serializerBackend;
+            return this;
+        }
+
+        /**
+         * @param metrics the MessengerMetrics to report the messages serialized and deserialized by the Messenger to,
+         * such as a {@link com.deadmandungeons.connect.commons.messenger.metrics.StripedMessengerMetrics}.
+         * By default, no metrics are recorded.
+         * @return this Builder instance
+         */
+        public Builder metrics(MessengerMetrics metrics) {
+            this.metrics = metrics;
             return this;
         }
 
         /**
          * Build the Messenger that will allow messenger for any of the registered Message types to be deserialized.
+         * The codecs of the registered Message types are shared with every other Messenger that was built with the
+         * same Message types and options, so building the same Messenger again is cheap.
          * @return the built Messenger instance
+         * @throws IllegalArgumentException if any of the registered Message types cannot be constructed, or cannot be
+         * bound by the {@link SerializerBackend}
+         * @throws IllegalStateException if the {@link SerializerBackend} is not available, if the type name or {@link com.deadmandungeons.connect.commons.messenger.messages.MessageType#binaryId() binaryId}
+         * of any two registered Message types are the same, or if the {@link #warmUp(boolean) warm up} fails
          */
-        public Messenger build() {
-            return new Messenger(this);
+        public Messenger build() throws IllegalArgumentException, IllegalStateException {
+            MessengerRegistry registry = MessengerRegistry.get(messageTypes, compactUuids, poolCapacity, serializerBackend);
+            if (warmUp) {
+                registry.warmUp();
+            }
+            MetricsRecorder recorder = (metrics != null ? new MetricsRecorder(metrics) : MetricsRecorder.DISABLED);
+            return new Messenger(registry, new MessageValidator(validationPolicy), parallelDecodeThreshold, recorder);
         }
 
     }
 
-    private Messenger(Builder builder) {
-        this.serializer = builder.serializer;
+    private Messenger(MessengerRegistry registry, MessageValidator validator, int parallelDecodeThreshold, MetricsRecorder recorder) {
+        // keep the registry reachable for as long as this Messenger is so that it stays cached
+        this.registry = registry;
+        this.serializer = registry.getSerializer();
+        this.binarySerializer = registry.getBinarySerializer();
+        this.validator = validator;
+        this.parallelDecodeThreshold = parallelDecodeThreshold;
+        parallelDecoder = (parallelDecodeThreshold > 0 ? new ParallelDecoder(serializer) : null);
+        this.recorder = recorder;
     }
 
 
+    /**
+     * @return the Message types registered with this Messenger, in the order they were registered
+     */
+    public Set<Class<? extends Message>> getMessageTypes() {
+        return registry.getMessageTypes();
+    }
+
     /**
      * @param messages the messenger to serialize
      * @return the JSON of the serialized messenger.
@@ -118,80 +255,339 @@ public final class Messenger {
     /**
      * @param messages the messenger to serialize
      * @return the JSON of the serialized messenger.
-     * @throws IllegalArgumentException if any message is invalid ({@link Message#validate()})
+     * @throws IllegalArgumentException if any message is invalid ({@link Message#validate()}) as checked by the {@link ValidationPolicy}
      */
     public String serialize(Message... messages) throws IllegalArgumentException {
-        // validate messenger before serializing
-        for (Message msg : messages) {
+        long start = recorder.start();
+        try {
+            validator.validateOutbound(messages);
+            String json = serializer.toJson(messages);
+            recorder.encoded(messages, json.length(), start);
+            return json;
+        } catch (RuntimeException e) {
+            recorder.encodeFailed(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Serialize the given messages as a JSON array directly to the given Appendable
+     * without building the entire JSON String in memory.
+     * @param messages the messenger to serialize
+     * @param out the Appendable, such as a {@link java.io.Writer}, to write the JSON to
+     * @throws IllegalArgumentException if any message is invalid ({@link Message#validate()}) as checked by the {@link ValidationPolicy}
+     * @throws IOException if out could not be written to
+     */
+    public void serialize(Message[] messages, Appendable out) throws IllegalArgumentException, IOException {
+        long start = recorder.start();
+        try {
+            validator.validateOutbound(messages);
+            serializer.toJson(messages, out);
+            recorder.encoded(messages, 0, start);
+        } catch (IOException | RuntimeException e) {
+            recorder.encodeFailed(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Serialize the given messages as a UTF-8 encoded JSON array. The JSON is encoded directly to bytes using a
+     * buffer that is reused by the calling thread, so the returned array is the only allocation in the steady state.
+     * @param messages the messenger to serialize
+     * @return the UTF-8 encoded JSON of the serialized messenger
+     * @throws IllegalArgumentException if any message is invalid ({@link Message#validate()}) as checked by the {@link ValidationPolicy}
+     */
+    public byte[] serializeToBytes(Message... messages) throws IllegalArgumentException {
+        return serializeToBytes(messages, true);
+    }
+
+    // validates messages that are serialized later, as checked by the ValidationPolicy
+    void validateOutbound(Message... messages) throws IllegalArgumentException {
+        validator.validateOutbound(messages);
+    }
+
+    // the messages of a MessageBatcher are validated when they are added, so they are not validated again
+    byte[] serializeToBytes(Message[] messages, boolean validate) throws IllegalArgumentException {
+        long start = recorder.start();
+        try {
+            if (validate) {
+                validator.validateOutbound(messages);
+            }
+            Utf8Writer writer = Utf8Writer.acquire();
             try {
-                msg.validate();
-            } catch (InvalidMessageException e) {
-                throw new IllegalArgumentException("serialized messenger must be valid", e);
+                writeJson(messages, writer);
+                byte[] bytes = writer.toByteArray();
+                recorder.encoded(messages, bytes.length, start);
+                return bytes;
+            } finally {
+                writer.release();
             }
+        } catch (RuntimeException e) {
+            recorder.encodeFailed(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Serialize the given messages as a UTF-8 encoded JSON array into the given buffer.
+     * @param out the buffer to put the UTF-8 encoded JSON into. Its position is advanced by the number of bytes written.
+     * @param messages the messenger to serialize
+     * @return the number of bytes written to out
+     * @throws IllegalArgumentException if any message is invalid ({@link Message#validate()}) as checked by the {@link ValidationPolicy}
+     * @throws BufferOverflowException if out does not have enough space remaining.
+     * Nothing is written to out in this case.
+     */
+    public int serializeTo(ByteBuffer out, Message... messages) throws IllegalArgumentException, BufferOverflowException {
+        long start = recorder.start();
+        try {
+            validator.validateOutbound(messages);
+            Utf8Writer writer = Utf8Writer.acquire();
+            try {
+                writeJson(messages, writer);
+                writer.writeTo(out);
+                recorder.encoded(messages, writer.size(), start);
+                return writer.size();
+            } finally {
+                writer.release();
+            }
+        } catch (RuntimeException e) {
+            recorder.encodeFailed(e);
+            throw e;
+        }
+    }
+
+    private void writeJson(Message[] messages, Utf8Writer writer) {
+        try {
+            serializer.toJson(messages, writer);
+        } catch (IOException e) {
+            // Utf8Writer does not throw IOException
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Serialize the given messages to the compact binary format of the {@link BinaryMessageSerializer}.
+     * Both ends must have the same Message types registered.
+     * @param messages the messenger to serialize
+     * @return the binary payload of the serialized messenger
+     * @throws IllegalArgumentException if any message is invalid ({@link Message#validate()}) as checked by the {@link ValidationPolicy},
+     * or has a property type that is not supported by the binary format
+     */
+    public byte[] serializeBinary(Message... messages) throws IllegalArgumentException {
+        long start = recorder.start();
+        try {
+            validator.validateOutbound(messages);
+            byte[] bytes;
+            try {
+                bytes = binarySerializer.toBinary(messages);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("messenger cannot be serialized to binary", e);
+            }
+            recorder.encoded(messages, bytes.length, start);
+            return bytes;
+        } catch (RuntimeException e) {
+            recorder.encodeFailed(e);
+            throw e;
+        }
+    }
+
+    /**
+     * This can accept either a binary payload produced by {@link #serializeBinary(Message...)}, or UTF-8 encoded JSON
+     * of a single Message object or an array of Message objects. The format is detected from the first byte.
+     * <p><b>Note:</b> The returned Messages will not have been validated yet with {@link Message#validate()}
+     * unless the {@link ValidationPolicy} is {@link ValidationPolicy#ON_RECEIVE}</p>
+     * @param rawMsg the raw message(s) in either format to deserialize
+     * @return an Array of the deserialized Message objects
+     * @throws MessageParseException if rawMsg is not a valid representation for a Message of the type it specifies
+     */
+    public Message[] deserialize(byte[] rawMsg) throws MessageParseException {
+        return deserialize(ByteBuffer.wrap(rawMsg));
+    }
+
+    /**
+     * This can accept either a binary payload produced by {@link #serializeBinary(Message...)}, or UTF-8 encoded JSON
+     * of a single Message object or an array of Message objects. The format is detected from the first byte.
+     * UTF-8 is decoded as it is parsed without building an intermediate String.
+     * <p><b>Note:</b> The returned Messages will not have been validated yet with {@link Message#validate()}
+     * unless the {@link ValidationPolicy} is {@link ValidationPolicy#ON_RECEIVE}</p>
+     * @param rawMsg the buffer of the raw message(s) in either format to deserialize from its position to its limit.
+     * The position of the buffer is advanced to its limit.
+     * @return an Array of the deserialized Message objects
+     * @throws MessageParseException if rawMsg is not a valid representation for a Message of the type it specifies
+     */
+    public Message[] deserialize(ByteBuffer rawMsg) throws MessageParseException {
+        long start = recorder.start();
+        int length = rawMsg.remaining();
+        try {
+            Message[] messages = decode(rawMsg);
+            recorder.decoded(messages, length, start);
+            return messages;
+        } catch (MessageParseException | RuntimeException e) {
+            recorder.decodeFailed(e);
+            throw e;
+        }
+    }
+
+    private Message[] decode(ByteBuffer rawMsg) throws MessageParseException {
+        if (BinaryMessageSerializer.isBinary(rawMsg)) {
+            Message[] messages = binarySerializer.fromBinary(rawMsg);
+            validator.validateInbound(messages);
+            return messages;
+        }
+        if (parallelDecoder != null && rawMsg.remaining() >= parallelDecodeThreshold) {
+            Message[] messages = parallelDecoder.decode(rawMsg);
+            if (messages != null) {
+                validator.validateInbound(messages);
+                return messages;
+            }
+        }
+        try {
+            return read(new Utf8Reader(rawMsg));
+        } catch (IOException e) {
+            // Utf8Reader does not throw IOException
+            throw new MessageParseException(e);
         }
-        return serializer.toJson(messages);
     }
 
     /**
      * This can accept a single JSON Message object, or an array of JSON Message objects.
-     * <p><b>Note:</b> The returned Messages will not have been validated yet with {@link Message#validate()}</p>
+     * <p><b>Note:</b> The returned Messages will not have been validated yet with {@link Message#validate()}
+     * unless the {@link ValidationPolicy} is {@link ValidationPolicy#ON_RECEIVE}</p>
      * @param rawMsg the raw message(s) in JSON format to deserialize
      * @return an Array of the deserialized Message objects
      * @throws MessageParseException if rawMsg is not a valid representation for a Message of the type it specifies
      */
     public Message[] deserialize(String rawMsg) throws MessageParseException {
-        Message[] messages;
-        rawMsg = rawMsg.trim();
-        if (rawMsg.startsWith("[") && rawMsg.endsWith("]")) {
-            messages = serializer.fromJson(rawMsg, Message[].class);
-            if (messages.length == 0) {
-                throw new MessageParseException("Empty json array with no message to parse");
-            }
-        } else {
-            Message message = serializer.fromJson(rawMsg, Message.class);
-            messages = new Message[]{message};
+        long start = recorder.start();
+        try {
+            Message[] messages = decode(rawMsg);
+            recorder.decoded(messages, rawMsg.length(), start);
+            return messages;
+        } catch (MessageParseException | RuntimeException e) {
+            recorder.decodeFailed(e);
+            throw e;
         }
-        return messages;
     }
 
-
-    private static Constructor<?> findMessageConstructor(Class<?> type) throws IllegalArgumentException {
-        TreeSet<Constructor<?>> sortedConstructors = new TreeSet<>(CONSTRUCTOR_COMPARATOR);
-        Collections.addAll(sortedConstructors, type.getDeclaredConstructors());
-
-        RuntimeException exception = null;
-        for (Constructor<?> constructor : sortedConstructors) {
-            if (!constructor.isAccessible()) {
-                constructor.setAccessible(true);
-            }
-            try {
-                newInstance(constructor);
-                return constructor;
-            } catch (RuntimeException e) {
-                exception = e;
+    private Message[] decode(String rawMsg) throws MessageParseException {
+        if (parallelDecoder != null && rawMsg.length() >= parallelDecodeThreshold) {
+            Message[] messages = parallelDecoder.decode(rawMsg);
+            if (messages != null) {
+                validator.validateInbound(messages);
+                return messages;
             }
         }
-        if (exception != null) {
-            throw exception;
+        try {
+            return read(new StringReader(rawMsg));
+        } catch (IOException e) {
+            // StringReader does not throw IOException
+            throw new MessageParseException(e);
         }
-        throw new IllegalArgumentException("Message type " + type + " is missing a valid constructor");
     }
 
-    private static <T> T newInstance(Constructor<?> constructor) throws IllegalArgumentException {
+    /**
+     * This can accept a single JSON Message object, or an array of JSON Message objects.
+     * The given Reader will not be closed.
+     * <p><b>Note:</b> The returned Messages will not have been validated yet with {@link Message#validate()}
+     * unless the {@link ValidationPolicy} is {@link ValidationPolicy#ON_RECEIVE}</p>
+     * @param reader the Reader of the raw message(s) in JSON format to deserialize
+     * @return an Array of the deserialized Message objects
+     * @throws IOException if the reader could not be read
+     * @throws MessageParseException if the read JSON is not a valid representation for a Message of the type it specifies
+     */
+    public Message[] deserialize(Reader reader) throws IOException, MessageParseException {
+        long start = recorder.start();
         try {
-            Class<?>[] paramTypes = constructor.getParameterTypes();
-            Object[] params = new Object[paramTypes.length];
-            for (int i = 0; i < params.length; i++) {
-                Class<?> paramType = paramTypes[i];
-                params[i] = (paramType.isArray() ? Array.newInstance(paramType.getComponentType(), 0) : Defaults.defaultValue(paramType));
-            }
+            Message[] messages = read(reader);
+            recorder.decoded(messages, 0, start);
+            return messages;
+        } catch (IOException | MessageParseException | RuntimeException e) {
+            recorder.decodeFailed(e);
+            throw e;
+        }
+    }
+
+    private Message[] read(Reader reader) throws IOException, MessageParseException {
+        List<Message> messages = new ArrayList<>();
+        MessageCursor cursor = serializer.openCursor(reader);
+        while (cursor.hasNext()) {
+            messages.add(cursor.next());
+        }
+        Message[] deserialized = messages.toArray(new Message[messages.size()]);
+        validator.validateInbound(deserialized);
+        return deserialized;
+    }
+
+    /**
+     * Scan the given JSON for the {@link MessageEnvelope} of each message without deserializing the messages.
+     * This can accept a single JSON Message object, or an array of JSON Message objects. Only the type and id of
+     * each message are read, and the message is deserialized only if {@link MessageEnvelope#decode()} is called.
+     * Messages of a type that is not registered are scanned as well, so that they can still be forwarded.
+     * @param rawMsg the raw message(s) in JSON format to scan
+     * @return an Array of the envelopes of the scanned messages in their original order
+     * @throws MessageParseException if rawMsg is not a JSON object or array of objects, or a message has no type
+     */
+    public MessageEnvelope[] scanEnvelopes(String rawMsg) throws MessageParseException {
+        return new EnvelopeScanner(this, serializer, JsonSource.of(rawMsg)).scan();
+    }
+
+    /**
+     * Scan the given UTF-8 encoded JSON for the {@link MessageEnvelope} of each message without deserializing
+     * the messages. The range of each envelope is the range of bytes in the given array.
+     * @param rawMsg the raw message(s) in UTF-8 encoded JSON format to scan
+     * @return an Array of the envelopes of the scanned messages in their original order
+     * @throws MessageParseException if rawMsg is not a JSON object or array of objects, or a message has no type
+     * @see #scanEnvelopes(String)
+     */
+    public MessageEnvelope[] scanEnvelopes(byte[] rawMsg) throws MessageParseException {
+        return scanEnvelopes(ByteBuffer.wrap(rawMsg));
+    }
+
+    /**
+     * Scan the given UTF-8 encoded JSON for the {@link MessageEnvelope} of each message without deserializing
+     * the messages. The range of each envelope is relative to the position of the buffer when it was scanned.
+     * The binary format is not supported.
+     * @param rawMsg the buffer of the raw message(s) in UTF-8 encoded JSON format to scan from its position to its limit.
+     * The position of the buffer is advanced to its limit.
+     * @return an Array of the envelopes of the scanned messages in their original order
+     * @throws MessageParseException if rawMsg is not a JSON object or array of objects, or a message has no type
+     * @see #scanEnvelopes(String)
+     */
+    public MessageEnvelope[] scanEnvelopes(ByteBuffer rawMsg) throws MessageParseException {
+        if (BinaryMessageSerializer.isBinary(rawMsg)) {
+            throw new MessageParseException("Envelopes cannot be scanned from the binary format");
+        }
+        MessageEnvelope[] envelopes = new EnvelopeScanner(this, serializer, JsonSource.of(rawMsg)).scan();
+        rawMsg.position(rawMsg.limit());
+        return envelopes;
+    }
 
-            @SuppressWarnings("unchecked")
-            T instance = (T) constructor.newInstance(params);
-            return instance;
-        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
-            throw new IllegalArgumentException("Message types must be constructable with empty values", e);
+    /**
+     * Return the given deserialized messages to the pool of their type so that their instances can be reused
+     * by a later deserialization. This does nothing unless pooled decoding is enabled by
+     * {@link Builder#pooledDecoding(int)}, or for messages of a type that is not pooled. A released message must not be used again by the caller, and must not
+     * be released more than once.
+     * @param messages the messages deserialized by this Messenger to release
+     */
+    public void release(Message... messages) {
+        for (Message message : messages) {
+            if (message != null && registry.release(message)) {
+                validator.forget(message);
+            }
         }
     }
 
+    /**
+     * Open a {@link MessageCursor} that lazily deserializes the Messages from the given Reader one at a time.
+     * This can accept a single JSON Message object, or an array of JSON Message objects.
+     * Closing the returned cursor will close the given Reader.
+     * <p><b>Note:</b> The read Messages will not have been validated yet with {@link Message#validate()}
+     * unless the {@link ValidationPolicy} is {@link ValidationPolicy#ON_RECEIVE}</p>
+     * @param reader the Reader of the raw message(s) in JSON format to deserialize
+     * @return a new MessageCursor over the given Reader
+     */
+    public MessageCursor openCursor(Reader reader) {
+        return recorder.record(validator.validateInbound(serializer.openCursor(reader)));
+    }
+
 }
@@ -0,0 +1,246 @@
+package com.deadmandungeons.connect.commons.messenger;
+
+import com.deadmandungeons.connect.commons.ConnectUtils;
+import com.deadmandungeons.connect.commons.messenger.codecs.GeneratedMessageCodecs;
+import com.deadmandungeons.connect.commons.messenger.codecs.MessageCodec;
+import com.deadmandungeons.connect.commons.messenger.codecs.ReflectiveMessageCodec;
+import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.deadmandungeons.connect.commons.messenger.serializers.BinaryMessageSerializer;
+import com.deadmandungeons.connect.commons.messenger.serializers.CraftbukkitGsonMessageSerializer;
+import com.deadmandungeons.connect.commons.messenger.serializers.GsonMessageSerializer;
+import com.deadmandungeons.connect.commons.messenger.serializers.JsonMessageSerializer;
+import com.deadmandungeons.connect.commons.messenger.serializers.MessageSerializer;
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The compiled, immutable serializers of a set of registered {@link Message} types. Compiling a registry resolves
+ * the codec of every Message type, so Messenger instances that are built with the same Message types and options
+ * share one registry. Registries are only weakly cached so the Message types of an unloaded plugin can be collected.
+ */
+final class MessengerRegistry {
+
+    // servers v1.8.0 and below include Gson shaded at org.bukkit.craftbukkit.libs.com.google.gson
+    private static final boolean GSON_AVAILABLE = ConnectUtils.checkClass("com.google.gson.Gson");
+    private static final boolean CRAFTBUKKIT_GSON_AVAILABLE = ConnectUtils.checkClass("org.bukkit.craftbukkit.libs.com.google.gson.Gson");
+
+    private static final Cache<Key, MessengerRegistry> REGISTRIES = CacheBuilder.newBuilder().weakValues().build();
+
+    private final Key key;
+    private final MessageSerializer serializer;
+    private final BinaryMessageSerializer binarySerializer;
+    private final Map<Class<? extends Message>, MessagePool<?>> pools;
+    private volatile boolean warmedUp;
+
+    /**
+     * @param messageTypes the Message types to register with the InstantiationStrategy of each
+     * @param compactUuids true to write UUIDs in the base64 encoded form
+     * @param poolCapacity the maximum number of released instances pooled per Message type, or 0 to not pool instances
+     * @param serializerBackend the backend of the JSON serializer
+     * @return the shared registry of the given Message types and options
+     * @throws IllegalArgumentException if any of the Message types cannot be constructed or bound by the backend
+     * @throws IllegalStateException if the backend is not available, or if any two Message types have the same
+     * type name or binaryId
+     */
+    static MessengerRegistry get(Map<Class<? extends Message>, InstantiationStrategy> messageTypes, boolean compactUuids,
+            int poolCapacity, SerializerBackend serializerBackend) throws IllegalArgumentException, IllegalStateException {
+        final Key key = new Key(ImmutableMap.copyOf(messageTypes), compactUuids, poolCapacity, serializerBackend);
+        try {
+            return REGISTRIES.get(key, new Callable<MessengerRegistry>() {
+                @Override
+                public MessengerRegistry call() {
+                    return new MessengerRegistry(key);
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private MessengerRegistry(Key key) {
+        this.key = key;
+        serializer = newSerializer(key.serializerBackend, key.messageTypes.keySet());
+        serializer.setCompactUuids(key.compactUuids);
+        binarySerializer = new BinaryMessageSerializer();
+
+        ImmutableMap.Builder<Class<? extends Message>, MessagePool<?>> pools = ImmutableMap.builder();
+        for (Map.Entry<Class<? extends Message>, InstantiationStrategy> entry : key.messageTypes.entrySet()) {
+            MessagePool<?> pool = register(entry.getKey(), entry.getValue());
+            if (pool != null) {
+                pools.put(entry.getKey(), pool);
+            }
+        }
+        this.pools = pools.build();
+    }
+
+    private static MessageSerializer newSerializer(SerializerBackend backend, Iterable<Class<? extends Message>> messageTypes) {
+        if (backend == SerializerBackend.AUTO) {
+            // the JsonMessageSerializer is strict, so Gson is preferred to keep accepting the lenient JSON it accepts
+            if (GSON_AVAILABLE) {
+                backend = SerializerBackend.GSON;
+            } else if (CRAFTBUKKIT_GSON_AVAILABLE) {
+                backend = SerializerBackend.CRAFTBUKKIT;
+            } else {
+                backend = SerializerBackend.JSON;
+            }
+        }
+        switch (backend) {
+            case GSON:
+                if (!GSON_AVAILABLE) {
+                    throw new IllegalStateException("Gson is not available");
+                }
+                return new GsonMessageSerializer();
+            case CRAFTBUKKIT:
+                if (!CRAFTBUKKIT_GSON_AVAILABLE) {
+                    throw new IllegalStateException("The Gson bundled with Craftbukkit is not available");
+                }
+                return new CraftbukkitGsonMessageSerializer();
+            default:
+                for (Class<? extends Message> messageType : messageTypes) {
+                    if (!JsonMessageSerializer.supports(messageType)) {
+                        throw new IllegalArgumentException(messageType + " has a property that only Gson can bind");
+                    }
+                }
+                return new JsonMessageSerializer();
+        }
+    }
+
+    private <T extends Message> MessagePool<T> register(Class<T> typeClass, InstantiationStrategy instantiationStrategy) {
+        String type = Message.getType(typeClass);
+
+        // throws IllegalArgumentException if unconstructable
+        Supplier<T> messageSupplier = instantiationStrategy.resolve(typeClass);
+        MessagePool<T> pool = null;
+        MessageCodec<T> codec;
+        if (key.poolCapacity > 0 && MessagePool.isPoolable(typeClass)) {
+            // pooled instances are reset by the reflective codec of their pool, so they are also read by it
+            pool = new MessagePool<>(typeClass, messageSupplier, key.poolCapacity);
+            codec = pool.getCodec();
+        } else {
+            // prefer the codec generated by the MessageCodecProcessor if there is one
+            codec = GeneratedMessageCodecs.find(typeClass, messageSupplier);
+            if (codec == null) {
+                codec = new ReflectiveMessageCodec<>(typeClass, messageSupplier);
+            }
+        }
+
+        binarySerializer.registerMessageType(type, typeClass, codec);
+        serializer.registerMessageType(type, typeClass, codec);
+        return pool;
+    }
+
+    Set<Class<? extends Message>> getMessageTypes() {
+        return key.messageTypes.keySet();
+    }
+
+    MessageSerializer getSerializer() {
+        return serializer;
+    }
+
+    BinaryMessageSerializer getBinarySerializer() {
+        return binarySerializer;
+    }
+
+    /**
+     * @param message the message to return to the pool of its type
+     * @return true if the message was released, or false if its type is not pooled
+     */
+    boolean release(Message message) {
+        MessagePool<?> pool = pools.get(message.getClass());
+        if (pool == null) {
+            return false;
+        }
+        pool.release(message);
+        return true;
+    }
+
+    /**
+     * Exercise the read and write paths of every registered codec once, so that the classes and code paths used
+     * by the first real message are already loaded.
+     * @throws IllegalStateException if a message of any registered type with default property values could not be
+     * serialized and deserialized again, since a codec that fails on such a message would also fail on real messages.
+     * A type with a property that is not supported by the binary format is only warmed up in JSON.
+     */
+    void warmUp() throws IllegalStateException {
+        if (warmedUp) {
+            return;
+        }
+        for (Class<? extends Message> typeClass : key.messageTypes.keySet()) {
+            try {
+                String json = "{\"" + "type" + "\":\"" + Message.getType(typeClass) + "\"}";
+                Message[] messages = collect(serializer.openCursor(new StringReader(json)));
+                collect(serializer.openCursor(new StringReader(serializer.toJson(messages))));
+                byte[] binary;
+                try {
+                    binary = binarySerializer.toBinary(messages);
+                } catch (IOException e) {
+                    // the binary format is optional, and does not support every property type
+                    continue;
+                }
+                binarySerializer.fromBinary(ByteBuffer.wrap(binary));
+            } catch (IOException | MessageParseException | RuntimeException e) {
+                throw new IllegalStateException("Failed to warm up the codec of " + typeClass.getName(), e);
+            }
+        }
+        warmedUp = true;
+    }
+
+    private static Message[] collect(MessageCursor cursor) throws IOException, MessageParseException {
+        Message message = null;
+        while (cursor.hasNext()) {
+            message = cursor.next();
+        }
+        return new Message[] {message};
+    }
+
+
+    private static final class Key {
+
+        private final ImmutableMap<Class<? extends Message>, InstantiationStrategy> messageTypes;
+        private final boolean compactUuids;
+        private final int poolCapacity;
+        private final SerializerBackend serializerBackend;
+
+        private Key(ImmutableMap<Class<? extends Message>, InstantiationStrategy> messageTypes, boolean compactUuids,
+                int poolCapacity, SerializerBackend serializerBackend) {
+            this.messageTypes = messageTypes;
+            this.compactUuids = compactUuids;
+            this.poolCapacity = poolCapacity;
+            this.serializerBackend = serializerBackend;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            // the registration order is compared too, since it is the order of Messenger#getMessageTypes
+            return compactUuids == other.compactUuids && poolCapacity == other.poolCapacity
+                    && serializerBackend == other.serializerBackend
+                    && messageTypes.entrySet().asList().equals(other.messageTypes.entrySet().asList());
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * (31 * messageTypes.entrySet().asList().hashCode() + (compactUuids ? 1 : 0)) + poolCapacity) + serializerBackend.hashCode();
+        }
+
+    }
+
+}
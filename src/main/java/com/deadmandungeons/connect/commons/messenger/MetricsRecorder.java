@@ -0,0 +1,160 @@
+package com.deadmandungeons.connect.commons.messenger;
+
+import com.deadmandungeons.connect.commons.messenger.exceptions.InvalidMessageException;
+import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.deadmandungeons.connect.commons.messenger.metrics.MessengerMetrics;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports the work of a {@link Messenger} to its {@link MessengerMetrics}, grouped by Message type.
+ * The {@link #DISABLED} recorder does not read the clock, so a Messenger without metrics pays nothing for them.
+ */
+final class MetricsRecorder {
+
+    static final MetricsRecorder DISABLED = new MetricsRecorder(null);
+
+    private final MessengerMetrics metrics;
+
+    MetricsRecorder(MessengerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the start time of an operation to pass to the recording methods
+     */
+    long start() {
+        return (metrics != null ? System.nanoTime() : 0);
+    }
+
+    void encoded(Message[] messages, long bytes, long start) {
+        if (metrics != null && messages.length > 0) {
+            record(messages, bytes, System.nanoTime() - start, true);
+        }
+    }
+
+    void decoded(Message[] messages, long bytes, long start) {
+        if (metrics != null && messages.length > 0) {
+            record(messages, bytes, System.nanoTime() - start, false);
+        }
+    }
+
+    void encodeFailed(Exception failure) {
+        if (metrics == null) {
+            return;
+        }
+        Throwable cause = failure.getCause();
+        if (cause instanceof InvalidMessageException) {
+            metrics.encodeFailed(typeOf((InvalidMessageException) cause), (InvalidMessageException) cause);
+        } else if (cause instanceof IOException) {
+            metrics.encodeFailed(null, (IOException) cause);
+        } else {
+            metrics.encodeFailed(null, failure);
+        }
+    }
+
+    void decodeFailed(Exception failure) {
+        if (metrics == null) {
+            return;
+        }
+        if (failure instanceof MessageParseException && failure.getCause() instanceof InvalidMessageException) {
+            InvalidMessageException cause = (InvalidMessageException) failure.getCause();
+            metrics.decodeFailed(typeOf(cause), cause);
+        } else {
+            // the input could not be parsed, so the type it specifies is not known or trusted
+            metrics.decodeFailed(null, failure);
+        }
+    }
+
+    /**
+     * @param cursor the cursor of the deserialized messages
+     * @return a cursor that records each message as it is read if there are metrics to report to
+     */
+    MessageCursor record(final MessageCursor cursor) {
+        if (metrics == null) {
+            return cursor;
+        }
+        return new MessageCursor() {
+            @Override
+            public boolean hasNext() throws IOException, MessageParseException {
+                try {
+                    return cursor.hasNext();
+                } catch (IOException | MessageParseException | RuntimeException e) {
+                    decodeFailed(e);
+                    throw e;
+                }
+            }
+
+            @Override
+            public Message next() throws IOException, MessageParseException {
+                long start = System.nanoTime();
+                try {
+                    Message message = cursor.next();
+                    metrics.messagesDecoded(message.getType(), 1, 0, System.nanoTime() - start);
+                    return message;
+                } catch (IOException | MessageParseException | RuntimeException e) {
+                    decodeFailed(e);
+                    throw e;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                cursor.close();
+            }
+        };
+    }
+
+    private void record(Message[] messages, long bytes, long nanos, boolean encoded) {
+        String firstType = typeOf(messages[0]);
+        int same = 1;
+        while (same < messages.length && equal(firstType, typeOf(messages[same]))) {
+            same++;
+        }
+        if (same == messages.length) {
+            report(firstType, messages.length, bytes, nanos, encoded);
+            return;
+        }
+
+        Map<String, int[]> counts = new LinkedHashMap<>();
+        for (Message message : messages) {
+            String type = typeOf(message);
+            int[] count = counts.get(type);
+            if (count == null) {
+                counts.put(type, count = new int[1]);
+            }
+            count[0]++;
+        }
+        // attribute the bytes and time of the batch in proportion to the number of messages of each type
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            int count = entry.getValue()[0];
+            report(entry.getKey(), count, bytes * count / messages.length, nanos * count / messages.length, encoded);
+        }
+    }
+
+    private void report(String type, int count, long bytes, long nanos, boolean encoded) {
+        if (encoded) {
+            metrics.messagesEncoded(type, count, bytes, nanos);
+        } else {
+            metrics.messagesDecoded(type, count, bytes, nanos);
+        }
+    }
+
+    private static String typeOf(InvalidMessageException failure) {
+        Class<? extends Message> messageClass = failure.getMessageClass();
+        return (messageClass != null ? Message.getType(messageClass) : null);
+    }
+
+    private static String typeOf(Message message) {
+        return (message != null ? message.getType() : null);
+    }
+
+    private static boolean equal(String type, String other) {
+        // the type of every Message of the same class is the same instance
+        return type == other || (type != null && type.equals(other));
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.deadmandungeons.connect.commons.messenger;
+
+import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.deadmandungeons.connect.commons.messenger.serializers.MessageSerializer;
+import com.google.common.io.CharSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Decodes a large JSON array of Messages in parallel on the {@link SharedPool}. The array is first scanned for the
+ * boundaries of its top level elements, which only tracks nesting and string literals and is far cheaper than
+ * parsing. The elements are then split into chunks of roughly equal length, each chunk is decoded as its own JSON
+ * array by a separate task, and the decoded chunks are joined in their original order.
+ * <p>Input that is not a well formed array at the top level is left for the sequential decoder,
+ * so that it reports the same errors as always.</p>
+ */
+final class ParallelDecoder {
+
+    private static final int MIN_CHUNK_LENGTH = 8192;
+    private static final CharSource BEGIN_ARRAY = CharSource.wrap("[");
+    private static final CharSource END_ARRAY = CharSource.wrap("]");
+
+    private final MessageSerializer serializer;
+
+    ParallelDecoder(MessageSerializer serializer) {
+        this.serializer = serializer;
+    }
+
+    /**
+     * @param json the JSON to decode
+     * @return the decoded Messages, or null if the JSON is not an array that can be split into more than one chunk
+     * @throws MessageParseException if any element is not a valid representation of a Message
+     */
+    Message[] decode(CharSequence json) throws MessageParseException {
+        return decode(JsonSource.of(json));
+    }
+
+    /**
+     * @param json the buffer of the UTF-8 encoded JSON to decode from its position to its limit.
+     * The position is advanced to the limit if the JSON is decoded.
+     * @return the decoded Messages, or null if the JSON is not an array that can be split into more than one chunk
+     * @throws MessageParseException if any element is not a valid representation of a Message
+     */
+    Message[] decode(ByteBuffer json) throws MessageParseException {
+        Message[] messages = decode(JsonSource.of(json));
+        if (messages != null) {
+            json.position(json.limit());
+        }
+        return messages;
+    }
+
+    private Message[] decode(JsonSource source) throws MessageParseException {
+        List<CharSource> chunks = split(source);
+        if (chunks == null || chunks.size() < 2) {
+            return null;
+        }
+
+        final ChunkTask[] tasks = new ChunkTask[chunks.size()];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new ChunkTask(CharSource.concat(BEGIN_ARRAY, chunks.get(i), END_ARRAY));
+        }
+        SharedPool.get().invoke(new RecursiveAction() {
+            private static final long serialVersionUID = -4062370516651788431L;
+
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        int count = 0;
+        for (ChunkTask task : tasks) {
+            // report the failure of the earliest chunk, as the sequential decoder would
+            if (task.failure != null) {
+                throw task.failure;
+            }
+            count += task.messages.size();
+        }
+        Message[] messages = new Message[count];
+        int index = 0;
+        for (ChunkTask task : tasks) {
+            for (Message message : task.messages) {
+                messages[index++] = message;
+            }
+        }
+        return messages;
+    }
+
+    private static List<CharSource> split(JsonSource source) {
+        int length = source.length();
+        int chunkLength = Math.max(MIN_CHUNK_LENGTH, length / (SharedPool.get().getParallelism() * 4));
+
+        int i = skipWhitespace(source, 0, length);
+        if (i == length || source.charAt(i) != '[') {
+            return null;
+        }
+        List<CharSource> chunks = new ArrayList<>();
+        int chunkStart = ++i;
+        int depth = 1;
+        boolean inString = false;
+        for (; i < length; i++) {
+            char c = source.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (--depth == 0) {
+                    break;
+                }
+            } else if (c == ',' && depth == 1 && i - chunkStart >= chunkLength) {
+                chunks.add(source.slice(chunkStart, i));
+                chunkStart = i + 1;
+            }
+        }
+        if (depth != 0 || skipWhitespace(source, i + 1, length) != length) {
+            return null;
+        }
+        chunks.add(source.slice(chunkStart, i));
+        return chunks;
+    }
+
+    private static int skipWhitespace(JsonSource source, int index, int length) {
+        while (index < length) {
+            char c = source.charAt(index);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                break;
+            }
+            index++;
+        }
+        return index;
+    }
+
+
+    private class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 2717183425016391840L;
+
+        private final CharSource chunk;
+        private final List<Message> messages = new ArrayList<>();
+        private MessageParseException failure;
+
+        private ChunkTask(CharSource chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            try (MessageCursor cursor = serializer.openCursor(chunk.openStream())) {
+                while (cursor.hasNext()) {
+                    messages.add(cursor.next());
+                }
+            } catch (MessageParseException e) {
+                failure = e;
+            } catch (IOException e) {
+                failure = new MessageParseException(e);
+            }
+        }
+
+    }
+
+}
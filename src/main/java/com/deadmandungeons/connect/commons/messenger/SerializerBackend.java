@@ -0,0 +1,29 @@
+package com.deadmandungeons.connect.commons.messenger;
+
+/**
+ * Determines which {@link com.deadmandungeons.connect.commons.messenger.serializers.MessageSerializer} a
+ * {@link Messenger} serializes and deserializes JSON with.
+ * @see Messenger.Builder#serializerBackend(SerializerBackend)
+ */
+public enum SerializerBackend {
+
+    /**
+     * Use {@link #GSON} if Gson is available, or else {@link #CRAFTBUKKIT} if the Gson bundled with Craftbukkit is
+     * available, or else the strict {@link #JSON} serializer.
+     */
+    AUTO,
+    /**
+     * Always use the dependency free {@link com.deadmandungeons.connect.commons.messenger.serializers.JsonMessageSerializer}.
+     * It is faster than Gson, but it only accepts strict JSON, unlike the lenient parsing of the Gson serializers.
+     */
+    JSON,
+    /**
+     * Always use the {@link com.deadmandungeons.connect.commons.messenger.serializers.GsonMessageSerializer}
+     */
+    GSON,
+    /**
+     * Always use the {@link com.deadmandungeons.connect.commons.messenger.serializers.CraftbukkitGsonMessageSerializer}
+     */
+    CRAFTBUKKIT
+
+}
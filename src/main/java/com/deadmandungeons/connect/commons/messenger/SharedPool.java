@@ -0,0 +1,25 @@
+package com.deadmandungeons.connect.commons.messenger;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The ForkJoinPool shared by every {@link Messenger} for parallel work on large batches of messages.
+ * It is created on first use, so a Messenger that never handles a large batch starts no threads.
+ */
+final class SharedPool {
+
+    private SharedPool() {
+    }
+
+    static ForkJoinPool get() {
+        return Holder.POOL;
+    }
+
+    private static final class Holder {
+
+        // worker threads of a ForkJoinPool are daemon threads
+        private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    }
+
+}
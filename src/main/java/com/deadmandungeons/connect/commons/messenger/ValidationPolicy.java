@@ -0,0 +1,34 @@
+package com.deadmandungeons.connect.commons.messenger;
+
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+
+/**
+ * Determines when a {@link Messenger} calls {@link Message#validate()} on the messages it serializes and deserializes.
+ * @see Messenger.Builder#validationPolicy(ValidationPolicy)
+ */
+public enum ValidationPolicy {
+
+    /**
+     * Validate every message on every call to serialize. Deserialized messages are not validated.
+     */
+    ALWAYS,
+    /**
+     * Validate each message instance only the first time it is serialized if its type is immutable, meaning every
+     * property is a final field of a primitive, String, UUID or enum type. Messages of other types are validated
+     * on every call like {@link #ALWAYS}. Deserialized messages are not validated.
+     */
+    ONCE_PER_INSTANCE,
+    /**
+     * Never validate messages. Serialized messages are trusted to be valid, and deserialized messages are
+     * expected to be validated by the caller if needed.
+     */
+    TRUSTED,
+    /**
+     * Validate every deserialized message, and fail the deserialization with a
+     * {@link com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException} if any is invalid.
+     * Serialized messages are validated like {@link #ONCE_PER_INSTANCE}, so a received message that is
+     * rebroadcast is not validated again.
+     */
+    ON_RECEIVE
+
+}
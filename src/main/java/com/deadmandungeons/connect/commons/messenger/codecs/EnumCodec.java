@@ -0,0 +1,76 @@
+package com.deadmandungeons.connect.commons.messenger.codecs;
+
+/**
+ * Maps the constants of an enum type to and from their serialized names.
+ * Serialized names are matched ignoring case with a {@link SymbolTable}, and the serialized name of every constant
+ * is computed once, so neither reading nor writing a constant creates a String.
+ * @param <E> the enum type
+ */
+public final class EnumCodec<E extends Enum<E>> {
+
+    private final Class<E> enumClass;
+    private final E[] constants;
+    private final String[] names;
+    private final SymbolTable<E> constantsByName = new SymbolTable<>();
+
+    /**
+     * @param enumClass the class token of the enum type
+     * @return a new EnumCodec for the given enum type
+     */
+    public static <E extends Enum<E>> EnumCodec<E> of(Class<E> enumClass) {
+        return new EnumCodec<>(enumClass);
+    }
+
+    private EnumCodec(Class<E> enumClass) {
+        this.enumClass = enumClass;
+        constants = enumClass.getEnumConstants();
+        names = new String[constants.length];
+
+        // Backwards compatibility hack
+        boolean writeLower = enumClass.getSimpleName().equals("Status");
+        for (E constant : constants) {
+            String name = constant.name();
+            names[constant.ordinal()] = (writeLower ? name.toLowerCase() : name);
+            constantsByName.put(name, constant);
+        }
+    }
+
+    public Class<E> getEnumClass() {
+        return enumClass;
+    }
+
+    /**
+     * @param name the serialized name of the enum constant
+     * @return the enum constant matching the given name ignoring case, or null if there is no such constant
+     */
+    public E valueOf(String name) {
+        return constantsByName.get(name);
+    }
+
+    /**
+     * @param chars the characters that contain the serialized name of the enum constant
+     * @param start the index of the first character of the name
+     * @param end the index after the last character of the name
+     * @return the enum constant matching the given name ignoring case, or null if there is no such constant
+     */
+    public E valueOf(char[] chars, int start, int end) {
+        return constantsByName.get(chars, start, end);
+    }
+
+    /**
+     * @param ordinal the ordinal of the enum constant
+     * @return the enum constant with the given ordinal, or null if there is no such constant
+     */
+    public E valueOf(int ordinal) {
+        return (ordinal >= 0 && ordinal < constants.length ? constants[ordinal] : null);
+    }
+
+    /**
+     * @param constant the enum constant
+     * @return the serialized name of the given enum constant
+     */
+    public String nameOf(E constant) {
+        return names[constant.ordinal()];
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.deadmandungeons.connect.commons.messenger.codecs;
+
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.google.common.base.Supplier;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/**
+ * Locates the {@link MessageCodec} classes generated at compile time by the
+ * {@link com.deadmandungeons.connect.commons.messenger.codecs.processor.MessageCodecProcessor MessageCodecProcessor}.
+ * A generated codec is named after the binary name of its Message type with '$' replaced by '_' and the
+ * {@link #CODEC_SUFFIX} appended, and is placed in the same package as the Message type.
+ */
+public final class GeneratedMessageCodecs {
+
+    public static final String CODEC_SUFFIX = "_MessageCodec";
+
+    private GeneratedMessageCodecs() {
+    }
+
+    /**
+     * @param messageClassName the binary name of the Message type
+     * @return the binary name of the generated codec for the given Message type
+     */
+    public static String getCodecClassName(String messageClassName) {
+        int packageEnd = messageClassName.lastIndexOf('.') + 1;
+        return messageClassName.substring(0, packageEnd) + messageClassName.substring(packageEnd).replace('$', '_') + CODEC_SUFFIX;
+    }
+
+    /**
+     * @param messageClass the Message type class token to find the generated codec for
+     * @param messageSupplier the Supplier for new instances to read into
+     * @return a new instance of the generated codec for the given Message type,
+     * or null if no codec was generated for the given Message type
+     */
+    public static <T extends Message> MessageCodec<T> find(Class<T> messageClass, Supplier<T> messageSupplier) {
+        Class<?> codecClass;
+        try {
+            codecClass = Class.forName(getCodecClassName(messageClass.getName()), true, messageClass.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+        if (!isCodecOf(codecClass, messageClass)) {
+            // a class of the same name that is not the codec of this Message type
+            return null;
+        }
+        try {
+            @SuppressWarnings("unchecked")
+            MessageCodec<T> codec = (MessageCodec<T>) codecClass.getConstructor(Supplier.class).newInstance(messageSupplier);
+            return codec;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static boolean isCodecOf(Class<?> codecClass, Class<?> messageClass) {
+        for (Type type : codecClass.getGenericInterfaces()) {
+            if (type instanceof ParameterizedType && ((ParameterizedType) type).getRawType() == MessageCodec.class) {
+                return ((ParameterizedType) type).getActualTypeArguments()[0] == messageClass;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Called by the generated codecs to bind the getter of a field without calling any accessor of the Message type
+     * @param messageClass the Message type class token
+     * @param fieldName the name of the field declared by the Message type or one of its superclasses
+     * @return a method handle of type <code>(messageClass)fieldType</code> that gets the value of the field
+     * @throws IllegalStateException if the field cannot be bound
+     */
+    public static MethodHandle findGetter(Class<? extends Message> messageClass, String fieldName) throws IllegalStateException {
+        Field field = findField(messageClass, fieldName);
+        try {
+            return MethodHandles.lookup().unreflectGetter(field).asType(MethodType.methodType(field.getType(), messageClass));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot bind the field " + fieldName + " of " + messageClass, e);
+        }
+    }
+
+    /**
+     * Called by the generated codecs to bind the setter of a field without calling any accessor of the Message type.
+     * Final fields are set the same way as by {@link ReflectiveMessageCodec}.
+     * @param messageClass the Message type class token
+     * @param fieldName the name of the field declared by the Message type or one of its superclasses
+     * @return a method handle of type <code>(messageClass, fieldType)void</code> that sets the value of the field
+     * @throws IllegalStateException if the field cannot be bound
+     */
+    public static MethodHandle findSetter(Class<? extends Message> messageClass, String fieldName) throws IllegalStateException {
+        Field field = findField(messageClass, fieldName);
+        try {
+            return MethodHandles.lookup().unreflectSetter(field).asType(MethodType.methodType(void.class, messageClass, field.getType()));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot bind the field " + fieldName + " of " + messageClass, e);
+        }
+    }
+
+    private static Field findField(Class<?> messageClass, String fieldName) throws IllegalStateException {
+        for (Class<?> raw = messageClass; raw != Message.class && raw != null; raw = raw.getSuperclass()) {
+            try {
+                Field field = raw.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException e) {
+                // declared by a superclass
+            }
+        }
+        throw new IllegalStateException(messageClass + " does not declare a field named " + fieldName);
+    }
+
+}
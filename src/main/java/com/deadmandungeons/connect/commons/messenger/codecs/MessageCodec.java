@@ -0,0 +1,39 @@
+package com.deadmandungeons.connect.commons.messenger.codecs;
+
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A MessageCodec reads and writes the properties of a single {@link Message} type.
+ * The enclosing object and the <code>type</code> property are handled by the {@link MessageReader} and
+ * {@link MessageWriter} owner, so a codec only ever sees the properties that are specific to its Message type.
+ * This allows the same codec to be used by any serializer backend.
+ * @param <T> the Message type this codec handles
+ */
+public interface MessageCodec<T extends Message> {
+
+    /**
+     * Read every remaining property from the given reader into a new Message instance.
+     * Unknown properties must be skipped with {@link MessageReader#skipValue()}.
+     * @param in the reader positioned at the first property after the message type
+     * @return the read Message
+     * @throws IOException if the properties could not be read
+     */
+    T read(MessageReader in) throws IOException;
+
+    /**
+     * Write every non-null property of the given message. The message type is written by the caller.
+     * @param message the Message to write
+     * @param out the writer to write the properties to
+     * @throws IOException if the properties could not be written
+     */
+    void write(T message, MessageWriter out) throws IOException;
+
+    /**
+     * @return the names of every property this codec may write, in the order they are written
+     */
+    List<String> getFieldNames();
+
+}
@@ -0,0 +1,58 @@
+package com.deadmandungeons.connect.commons.messenger.codecs;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.UUID;
+
+/**
+ * A backend independent reader for the properties of a single serialized Message.
+ * @see MessageCodec#read(MessageReader)
+ */
+public interface MessageReader {
+
+    /**
+     * @return true if there is another property to read for the current Message
+     */
+    boolean hasNextField() throws IOException;
+
+    /**
+     * @return the name of the next property. One of the read methods must be called before the next name is read.
+     */
+    String nextFieldName() throws IOException;
+
+    /**
+     * Consume the current value if it is null
+     * @return true if the current value was null and has been consumed, and false otherwise
+     */
+    boolean readNull() throws IOException;
+
+    String readString() throws IOException;
+
+    boolean readBoolean() throws IOException;
+
+    int readInt() throws IOException;
+
+    long readLong() throws IOException;
+
+    float readFloat() throws IOException;
+
+    double readDouble() throws IOException;
+
+    UUID readUuid() throws IOException;
+
+    /**
+     * @param codec the EnumCodec for the enum type to read
+     * @return the read enum constant, or null if the value did not match any of the enum constants
+     */
+    <E extends Enum<E>> E readEnum(EnumCodec<E> codec) throws IOException;
+
+    /**
+     * Read a value of a type that has no dedicated read method using the backend's own type binding.
+     * @param type the type of value to read
+     * @return the read value
+     */
+    Object readValue(Type type) throws IOException;
+
+    void skipValue() throws IOException;
+
+}
@@ -0,0 +1,37 @@
+package com.deadmandungeons.connect.commons.messenger.codecs;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.UUID;
+
+/**
+ * A backend independent writer for the properties of a single Message.
+ * Every value must be preceded by a call to {@link #writeName(String)}.
+ * @see MessageCodec#write(com.deadmandungeons.connect.commons.messenger.messages.Message, MessageWriter)
+ */
+public interface MessageWriter {
+
+    void writeName(String name) throws IOException;
+
+    void writeString(String value) throws IOException;
+
+    void writeBoolean(boolean value) throws IOException;
+
+    void writeLong(long value) throws IOException;
+
+    void writeFloat(float value) throws IOException;
+
+    void writeDouble(double value) throws IOException;
+
+    void writeUuid(UUID value) throws IOException;
+
+    <E extends Enum<E>> void writeEnum(EnumCodec<E> codec, E value) throws IOException;
+
+    /**
+     * Write a value of a type that has no dedicated write method using the backend's own type binding.
+     * @param type the declared type of the value
+     * @param value the value to write
+     */
+    void writeValue(Type type, Object value) throws IOException;
+
+}
@@ -0,0 +1,262 @@
+package com.deadmandungeons.connect.commons.messenger.codecs;
+
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.google.common.base.Supplier;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A {@link MessageCodec} that binds the fields of a {@link Message} type using reflection.
+ * Fields are bound from the Message type up to, but excluding, the Message base class in the same
+ * subclass first order used by Gson. Static, transient and synthetic fields are ignored.
+ * @param <T> the Message type this codec handles
+ */
+public class ReflectiveMessageCodec<T extends Message> implements MessageCodec<T> {
+
+    private final Class<T> messageClass;
+    private final Supplier<T> messageSupplier;
+    private final BoundField[] fields;
+    private final Map<String, BoundField> fieldsByName = new HashMap<>();
+    private final List<String> fieldNames;
+
+    /**
+     * @param messageClass the Message type class token to bind
+     * @param messageSupplier the Supplier for new instances to read into,
+     * or null if this codec will only be used to write messages
+     * @throws IllegalArgumentException if the given type declares more than one field with the same name
+     */
+    public ReflectiveMessageCodec(Class<T> messageClass, Supplier<T> messageSupplier) throws IllegalArgumentException {
+        this.messageClass = messageClass;
+        this.messageSupplier = messageSupplier;
+
+        List<BoundField> boundFields = new ArrayList<>();
+        for (Class<?> raw = messageClass; raw != Message.class && raw != null; raw = raw.getSuperclass()) {
+            for (Field field : raw.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                BoundField boundField = new BoundField(field);
+                if (fieldsByName.put(boundField.name, boundField) != null) {
+                    throw new IllegalArgumentException(messageClass + " declares multiple fields named " + boundField.name);
+                }
+                boundFields.add(boundField);
+            }
+        }
+        fields = boundFields.toArray(new BoundField[boundFields.size()]);
+
+        List<String> names = new ArrayList<>();
+        for (BoundField field : fields) {
+            names.add(field.name);
+        }
+        fieldNames = Collections.unmodifiableList(names);
+    }
+
+    @Override
+    public T read(MessageReader in) throws IOException {
+        if (messageSupplier == null) {
+            throw new IllegalStateException("Message type " + messageClass.getName() + " has not been registered");
+        }
+        T message = messageSupplier.get();
+        while (in.hasNextField()) {
+            BoundField field = fieldsByName.get(in.nextFieldName());
+            if (field != null) {
+                field.read(message, in);
+            } else {
+                in.skipValue();
+            }
+        }
+        return message;
+    }
+
+    @Override
+    public void write(T message, MessageWriter out) throws IOException {
+        for (BoundField field : fields) {
+            field.write(message, out);
+        }
+    }
+
+    /**
+     * Reset every bound field of the given message to the default value of its type,
+     * so that the instance can be read into again as if it was new.
+     * @param message the Message to reset
+     */
+    public void reset(T message) {
+        for (BoundField field : fields) {
+            field.reset(message);
+        }
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+
+    private enum FieldKind {
+        BOOLEAN,
+        BYTE,
+        SHORT,
+        INT,
+        LONG,
+        FLOAT,
+        DOUBLE,
+        STRING,
+        UUID,
+        ENUM,
+        OTHER;
+
+        private static FieldKind of(Class<?> type) {
+            if (type == boolean.class || type == Boolean.class) {
+                return BOOLEAN;
+            } else if (type == byte.class || type == Byte.class) {
+                return BYTE;
+            } else if (type == short.class || type == Short.class) {
+                return SHORT;
+            } else if (type == int.class || type == Integer.class) {
+                return INT;
+            } else if (type == long.class || type == Long.class) {
+                return LONG;
+            } else if (type == float.class || type == Float.class) {
+                return FLOAT;
+            } else if (type == double.class || type == Double.class) {
+                return DOUBLE;
+            } else if (type == String.class) {
+                return STRING;
+            } else if (type == UUID.class) {
+                return UUID;
+            } else if (type.isEnum()) {
+                return ENUM;
+            }
+            return OTHER;
+        }
+    }
+
+    private static class BoundField {
+
+        private final String name;
+        private final Field field;
+        private final Type type;
+        private final FieldKind kind;
+        private final boolean primitive;
+        private final EnumCodec<?> enumCodec;
+        private final Object defaultValue;
+
+        private BoundField(Field field) {
+            this.field = field;
+            name = field.getName();
+            type = field.getGenericType();
+            kind = FieldKind.of(field.getType());
+            primitive = field.getType().isPrimitive();
+            enumCodec = (kind == FieldKind.ENUM ? newEnumCodec(field.getType()) : null);
+            defaultValue = (primitive ? Array.get(Array.newInstance(field.getType(), 1), 0) : null);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static EnumCodec<?> newEnumCodec(Class<?> enumClass) {
+            return EnumCodec.of((Class) enumClass);
+        }
+
+        private void read(Object message, MessageReader in) throws IOException {
+            Object value = (in.readNull() ? null : readValue(in));
+            if (value != null || !primitive) {
+                try {
+                    field.set(message, value);
+                } catch (IllegalAccessException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        }
+
+        private void reset(Object message) {
+            try {
+                field.set(message, defaultValue);
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        private Object readValue(MessageReader in) throws IOException {
+            switch (kind) {
+                case BOOLEAN:
+                    return in.readBoolean();
+                case BYTE:
+                    return (byte) in.readInt();
+                case SHORT:
+                    return (short) in.readInt();
+                case INT:
+                    return in.readInt();
+                case LONG:
+                    return in.readLong();
+                case FLOAT:
+                    return in.readFloat();
+                case DOUBLE:
+                    return in.readDouble();
+                case STRING:
+                    return in.readString();
+                case UUID:
+                    return in.readUuid();
+                case ENUM:
+                    return in.readEnum(enumCodec);
+                default:
+                    return in.readValue(type);
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private void write(Object message, MessageWriter out) throws IOException {
+            Object value;
+            try {
+                value = field.get(message);
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e);
+            }
+            if (value == null) {
+                return;
+            }
+
+            out.writeName(name);
+            switch (kind) {
+                case BOOLEAN:
+                    out.writeBoolean((Boolean) value);
+                    break;
+                case BYTE:
+                case SHORT:
+                case INT:
+                case LONG:
+                    out.writeLong(((Number) value).longValue());
+                    break;
+                case FLOAT:
+                    out.writeFloat((Float) value);
+                    break;
+                case DOUBLE:
+                    out.writeDouble((Double) value);
+                    break;
+                case STRING:
+                    out.writeString((String) value);
+                    break;
+                case UUID:
+                    out.writeUuid((UUID) value);
+                    break;
+                case ENUM:
+                    out.writeEnum((EnumCodec) enumCodec, (Enum) value);
+                    break;
+                default:
+                    out.writeValue(type, value);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.deadmandungeons.connect.commons.messenger.codecs;
+
+/**
+ * A case-insensitive table of symbols, such as Message type names and enum constant names, that can be looked up
+ * directly from a range of characters without creating a String or changing its case first.
+ * <p>Lookups are lock free and may run concurrently with {@link #put(String, Object)}, which copies the table.
+ * Symbols are expected to be few and registered up front, so puts are not optimized.</p>
+ * @param <V> the type of the value of each symbol
+ */
+public final class SymbolTable<V> {
+
+    private volatile Table table = new Table(4);
+
+    /**
+     * @param symbol the symbol to add
+     * @param value the value of the symbol
+     * @return the previous value of the symbol, or null if the symbol was not in the table
+     */
+    public synchronized V put(String symbol, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value cannot be null");
+        }
+        Table current = table;
+        int length = symbol.length();
+        int hash = hash(symbol, 0, length);
+        int index = current.indexOf(symbol, 0, length, hash);
+
+        V previous = null;
+        Table updated;
+        if (index >= 0) {
+            @SuppressWarnings("unchecked")
+            V existing = (V) current.values[index];
+            previous = existing;
+            updated = current.copy(current.keys.length);
+        } else {
+            // keep the load factor at or below a half
+            int size = current.size + 1;
+            updated = current.copy(size * 2 > current.keys.length ? current.keys.length * 2 : current.keys.length);
+            updated.size = size;
+        }
+        updated.insert(symbol, hash, value);
+        table = updated;
+        return previous;
+    }
+
+    /**
+     * @param symbol the symbol to get the value of ignoring case
+     * @return the value of the symbol, or null if the symbol is not in the table
+     */
+    public V get(CharSequence symbol) {
+        return get(symbol, 0, symbol.length());
+    }
+
+    /**
+     * @param chars the characters that contain the symbol
+     * @param start the index of the first character of the symbol
+     * @param end the index after the last character of the symbol
+     * @return the value of the symbol ignoring case, or null if the symbol is not in the table
+     */
+    @SuppressWarnings("unchecked")
+    public V get(CharSequence chars, int start, int end) {
+        Table table = this.table;
+        int index = table.indexOf(chars, start, end, hash(chars, start, end));
+        return (index >= 0 ? (V) table.values[index] : null);
+    }
+
+    /**
+     * @param chars the characters that contain the symbol
+     * @param start the index of the first character of the symbol
+     * @param end the index after the last character of the symbol
+     * @return the value of the symbol ignoring case, or null if the symbol is not in the table
+     */
+    @SuppressWarnings("unchecked")
+    public V get(char[] chars, int start, int end) {
+        Table table = this.table;
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + fold(chars[i]);
+        }
+        int mask = table.keys.length - 1;
+        for (int index = mix(hash) & mask; table.keys[index] != null; index = (index + 1) & mask) {
+            String key = table.keys[index];
+            if (table.hashes[index] == hash && key.length() == end - start) {
+                int i = 0;
+                while (i < key.length() && key.charAt(i) == fold(chars[start + i])) {
+                    i++;
+                }
+                if (i == key.length()) {
+                    return (V) table.values[index];
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of symbols in the table
+     */
+    public int size() {
+        return table.size;
+    }
+
+    private static char fold(char c) {
+        if (c < 0x80) {
+            return (c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static int hash(CharSequence chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + fold(chars.charAt(i));
+        }
+        return hash;
+    }
+
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+
+    private static final class Table {
+
+        // the folded keys
+        private final String[] keys;
+        private final int[] hashes;
+        private final Object[] values;
+        private int size;
+
+        private Table(int capacity) {
+            keys = new String[capacity];
+            hashes = new int[capacity];
+            values = new Object[capacity];
+        }
+
+        private Table copy(int capacity) {
+            Table copy = new Table(capacity);
+            copy.size = size;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    copy.insert(keys[i], hashes[i], values[i]);
+                }
+            }
+            return copy;
+        }
+
+        private void insert(String symbol, int hash, Object value) {
+            StringBuilder folded = new StringBuilder(symbol.length());
+            for (int i = 0; i < symbol.length(); i++) {
+                folded.append(fold(symbol.charAt(i)));
+            }
+            String key = folded.toString();
+
+            int mask = keys.length - 1;
+            int index = mix(hash) & mask;
+            while (keys[index] != null && !keys[index].equals(key)) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            hashes[index] = hash;
+            values[index] = value;
+        }
+
+        private int indexOf(CharSequence chars, int start, int end, int hash) {
+            int mask = keys.length - 1;
+            for (int index = mix(hash) & mask; keys[index] != null; index = (index + 1) & mask) {
+                String key = keys[index];
+                if (hashes[index] == hash && key.length() == end - start) {
+                    int i = 0;
+                    while (i < key.length() && key.charAt(i) == fold(chars.charAt(start + i))) {
+                        i++;
+                    }
+                    if (i == key.length()) {
+                        return index;
+                    }
+                }
+            }
+            return -1;
+        }
+
+    }
+
+}
@@ -0,0 +1,433 @@
+package com.deadmandungeons.connect.commons.messenger.codecs.processor;
+
+import com.deadmandungeons.connect.commons.messenger.codecs.GeneratedMessageCodecs;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This annotation processor generates a reflection free
+ * {@link com.deadmandungeons.connect.commons.messenger.codecs.MessageCodec MessageCodec} for every class annotated
+ * with {@link com.deadmandungeons.connect.commons.messenger.messages.MessageType MessageType}. The generated codecs
+ * are found by {@link GeneratedMessageCodecs} when the Message type is registered with a Messenger.
+ * <p>
+ * A generated codec binds the same fields as {@link com.deadmandungeons.connect.commons.messenger.codecs.ReflectiveMessageCodec
+ * ReflectiveMessageCodec}, and reads into the instances of the same Supplier. Fields are accessed directly through
+ * method handles that are resolved once, so the constructors and accessors of the Message type are never called and
+ * the behaviour of both codecs is the same. A codec can only be generated when the Message type is accessible from
+ * its package, and every field declared by the Message type and its superclasses (excluding the Message base class)
+ * is a primitive (other than char), a boxed primitive, a String, a UUID, or an accessible enum.
+ * Message types that do not meet these requirements are skipped with a note, and will be bound reflectively.
+ * </p>
+ * <p>Two Message types whose codec names would be the same, such as <code>A_B.C</code> and <code>A.B_C</code>,
+ * fail the compilation with an error.</p>
+ */
+@SupportedAnnotationTypes(MessageCodecProcessor.MESSAGE_TYPE_ANNOTATION)
+public class MessageCodecProcessor extends AbstractProcessor {
+
+    static final String MESSAGE_TYPE_ANNOTATION = "com.deadmandungeons.connect.commons.messenger.messages.MessageType";
+
+    private static final String MESSAGE_CLASS = "com.deadmandungeons.connect.commons.messenger.messages.Message";
+    private static final String CODECS_PACKAGE = "com.deadmandungeons.connect.commons.messenger.codecs";
+
+    // the qualified name of the Message type of each codec generated by this processor, keyed by codec class name
+    private final Map<String, String> generatedCodecs = new HashMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Elements elements = processingEnv.getElementUtils();
+        TypeElement annotationElement = elements.getTypeElement(MESSAGE_TYPE_ANNOTATION);
+        TypeElement messageElement = elements.getTypeElement(MESSAGE_CLASS);
+        if (annotationElement == null || messageElement == null) {
+            return false;
+        }
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(annotationElement)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                continue;
+            }
+            TypeElement typeElement = (TypeElement) element;
+            try {
+                CodecModel model = new CodecModel(typeElement, messageElement);
+                String messageType = typeElement.getQualifiedName().toString();
+                String existing = generatedCodecs.get(model.codecClassName);
+                if (existing != null) {
+                    String msg = "The MessageCodec " + model.codecClassName + " of " + messageType
+                            + " has the same name as the MessageCodec of " + existing + ". Rename one of the Message types.";
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, typeElement);
+                    continue;
+                }
+                generatedCodecs.put(model.codecClassName, messageType);
+                writeCodec(model);
+            } catch (UnsupportedMessageException e) {
+                String msg = "A MessageCodec will not be generated for " + typeElement.getQualifiedName() + ": " + e.getMessage();
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, msg, typeElement);
+            } catch (IOException e) {
+                String msg = "Failed to write the MessageCodec for " + typeElement.getQualifiedName() + ": " + e.getMessage();
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, typeElement);
+            }
+        }
+        return false;
+    }
+
+    private void writeCodec(CodecModel model) throws IOException {
+        String messageType = model.typeElement.getQualifiedName().toString();
+        String codecName = model.codecSimpleName;
+
+        StringBuilder src = new StringBuilder();
+        src.append("// Generated by ").append(MessageCodecProcessor.class.getSimpleName()).append(". Do not edit.\n");
+        if (!model.packageName.isEmpty()) {
+            src.append("package ").append(model.packageName).append(";\n");
+        }
+        src.append('\n');
+        src.append("public final class ").append(codecName).append(" implements ")
+                .append(CODECS_PACKAGE).append(".MessageCodec<").append(messageType).append("> {\n\n");
+
+        for (CodecModel.FieldModel field : model.fields) {
+            src.append("    private static final java.lang.invoke.MethodHandle ").append(field.getterName()).append(" = ")
+                    .append(CODECS_PACKAGE).append(".GeneratedMessageCodecs.findGetter(").append(messageType)
+                    .append(".class, \"").append(field.name).append("\");\n");
+            src.append("    private static final java.lang.invoke.MethodHandle ").append(field.setterName()).append(" = ")
+                    .append(CODECS_PACKAGE).append(".GeneratedMessageCodecs.findSetter(").append(messageType)
+                    .append(".class, \"").append(field.name).append("\");\n");
+            if (field.kind == FieldKind.ENUM) {
+                src.append("    private static final ").append(CODECS_PACKAGE).append(".EnumCodec<").append(field.typeName).append("> ")
+                        .append(field.enumCodecName()).append(" = ").append(CODECS_PACKAGE).append(".EnumCodec.of(")
+                        .append(field.typeName).append(".class);\n");
+            }
+        }
+        src.append("    private static final java.util.List<String> FIELD_NAMES = java.util.Collections.unmodifiableList(java.util.Arrays.<String>asList(");
+        for (int i = 0; i < model.fields.size(); i++) {
+            src.append(i > 0 ? ", " : "").append('"').append(model.fields.get(i).name).append('"');
+        }
+        src.append("));\n\n");
+
+        src.append("    private final com.google.common.base.Supplier<").append(messageType).append("> messageSupplier;\n\n");
+        src.append("    public ").append(codecName).append("(com.google.common.base.Supplier<").append(messageType)
+                .append("> messageSupplier) {\n");
+        src.append("        this.messageSupplier = messageSupplier;\n");
+        src.append("    }\n\n");
+
+        // read
+        src.append("    @Override\n");
+        src.append("    public ").append(messageType).append(" read(").append(CODECS_PACKAGE)
+                .append(".MessageReader in) throws java.io.IOException {\n");
+        src.append("        try {\n");
+        src.append("            ").append(messageType).append(" message = messageSupplier.get();\n");
+        src.append("            while (in.hasNextField()) {\n");
+        src.append("                switch (in.nextFieldName()) {\n");
+        for (CodecModel.FieldModel field : model.fields) {
+            String local = field.localName();
+            src.append("                    case \"").append(field.name).append("\": {\n");
+            if (field.primitive) {
+                // a null primitive keeps the value of the new instance
+                src.append("                        if (!in.readNull()) {\n");
+                src.append("                            ").append(field.typeName).append(' ').append(local).append(" = ")
+                        .append(field.readExpression()).append(";\n");
+                src.append("                            ").append(field.setterName()).append(".invokeExact(message, ").append(local).append(");\n");
+                src.append("                        }\n");
+            } else {
+                src.append("                        ").append(field.typeName).append(' ').append(local).append(" = (in.readNull() ? null : ")
+                        .append(field.readExpression()).append(");\n");
+                src.append("                        ").append(field.setterName()).append(".invokeExact(message, ").append(local).append(");\n");
+            }
+            src.append("                        break;\n");
+            src.append("                    }\n");
+        }
+        src.append("                    default:\n");
+        src.append("                        in.skipValue();\n");
+        src.append("                }\n");
+        src.append("            }\n");
+        src.append("            return message;\n");
+        src.append("        } catch (java.io.IOException | Error e) {\n");
+        src.append("            throw e;\n");
+        src.append("        } catch (Throwable e) {\n");
+        src.append("            throw new java.io.IOException(\"Failed to read a Message of type ").append(messageType)
+                .append(": \" + e, e);\n");
+        src.append("        }\n");
+        src.append("    }\n\n");
+
+        // write
+        src.append("    @Override\n");
+        src.append("    public void write(").append(messageType).append(" message, ").append(CODECS_PACKAGE)
+                .append(".MessageWriter out) throws java.io.IOException {\n");
+        if (!model.fields.isEmpty()) {
+            src.append("        try {\n");
+            for (CodecModel.FieldModel field : model.fields) {
+                String local = field.localName();
+                src.append("            ").append(field.typeName).append(' ').append(local).append(" = (").append(field.typeName)
+                        .append(") ").append(field.getterName()).append(".invokeExact(message);\n");
+                String indent = "            ";
+                if (!field.primitive) {
+                    src.append("            if (").append(local).append(" != null) {\n");
+                    indent = "                ";
+                }
+                src.append(indent).append("out.writeName(\"").append(field.name).append("\");\n");
+                src.append(indent).append(field.writeStatement()).append('\n');
+                if (!field.primitive) {
+                    src.append("            }\n");
+                }
+            }
+            src.append("        } catch (java.io.IOException | RuntimeException | Error e) {\n");
+            src.append("            throw e;\n");
+            src.append("        } catch (Throwable e) {\n");
+            src.append("            throw new java.io.IOException(\"Failed to write a Message of type ").append(messageType)
+                    .append(": \" + e, e);\n");
+            src.append("        }\n");
+        }
+        src.append("    }\n\n");
+
+        src.append("    @Override\n");
+        src.append("    public java.util.List<String> getFieldNames() {\n");
+        src.append("        return FIELD_NAMES;\n");
+        src.append("    }\n\n");
+        src.append("}\n");
+
+        String qualifiedCodecName = (model.packageName.isEmpty() ? codecName : model.packageName + "." + codecName);
+        JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(qualifiedCodecName, model.typeElement);
+        try (Writer writer = sourceFile.openWriter()) {
+            writer.write(src.toString());
+        }
+    }
+
+
+    private class CodecModel {
+
+        private final TypeElement typeElement;
+        private final String packageName;
+        private final String codecClassName;
+        private final String codecSimpleName;
+        private final List<FieldModel> fields = new ArrayList<>();
+
+        private CodecModel(TypeElement typeElement, TypeElement messageElement) throws UnsupportedMessageException {
+            Elements elements = processingEnv.getElementUtils();
+            Types types = processingEnv.getTypeUtils();
+
+            this.typeElement = typeElement;
+            PackageElement packageElement = elements.getPackageOf(typeElement);
+            packageName = packageElement.getQualifiedName().toString();
+            String binaryName = elements.getBinaryName(typeElement).toString();
+            codecClassName = GeneratedMessageCodecs.getCodecClassName(binaryName);
+            codecSimpleName = codecClassName.substring(codecClassName.lastIndexOf('.') + 1);
+
+            if (!types.isSubtype(types.erasure(typeElement.asType()), types.erasure(messageElement.asType()))) {
+                throw new UnsupportedMessageException("it is not a subclass of Message");
+            }
+            if (typeElement.getModifiers().contains(Modifier.ABSTRACT) || !typeElement.getTypeParameters().isEmpty()) {
+                throw new UnsupportedMessageException("it is abstract or generic");
+            }
+            for (Element enclosing = typeElement; enclosing.getKind() != ElementKind.PACKAGE; enclosing = enclosing.getEnclosingElement()) {
+                TypeElement enclosingType = (TypeElement) enclosing;
+                if (enclosingType.getModifiers().contains(Modifier.PRIVATE)) {
+                    throw new UnsupportedMessageException("it is not accessible from its package");
+                }
+                if (enclosingType.getNestingKind() == NestingKind.MEMBER && !enclosingType.getModifiers().contains(Modifier.STATIC)) {
+                    throw new UnsupportedMessageException("it is an inner class");
+                }
+                if (enclosingType.getNestingKind() == NestingKind.LOCAL || enclosingType.getNestingKind() == NestingKind.ANONYMOUS) {
+                    throw new UnsupportedMessageException("it is a local or anonymous class");
+                }
+            }
+
+            Set<String> fieldNames = new HashSet<>();
+            TypeElement raw = typeElement;
+            while (raw != null && !raw.equals(messageElement)) {
+                for (VariableElement field : ElementFilter.fieldsIn(raw.getEnclosedElements())) {
+                    Set<Modifier> modifiers = field.getModifiers();
+                    if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                        continue;
+                    }
+                    FieldModel fieldModel = new FieldModel(field);
+                    if (!fieldNames.add(fieldModel.name)) {
+                        throw new UnsupportedMessageException("it declares multiple fields named " + fieldModel.name);
+                    }
+                    fields.add(fieldModel);
+                }
+                TypeMirror superclass = raw.getSuperclass();
+                raw = (superclass.getKind() == TypeKind.DECLARED ? (TypeElement) types.asElement(superclass) : null);
+            }
+        }
+
+        private boolean isAccessible(TypeElement type) {
+            for (Element enclosing = type; enclosing.getKind() != ElementKind.PACKAGE; enclosing = enclosing.getEnclosingElement()) {
+                if (!(enclosing instanceof TypeElement)) {
+                    return false;
+                }
+                Set<Modifier> modifiers = enclosing.getModifiers();
+                if (modifiers.contains(Modifier.PRIVATE)) {
+                    return false;
+                }
+                // package-private and protected types are only accessible from the same package
+                if (!modifiers.contains(Modifier.PUBLIC)
+                        && !processingEnv.getElementUtils().getPackageOf(enclosing).getQualifiedName().contentEquals(packageName)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+
+        private class FieldModel {
+
+            private final String name;
+            private final String typeName;
+            private final FieldKind kind;
+            private final boolean primitive;
+
+            private FieldModel(VariableElement field) throws UnsupportedMessageException {
+                name = field.getSimpleName().toString();
+                TypeMirror type = field.asType();
+                typeName = type.toString();
+                primitive = type.getKind().isPrimitive();
+                kind = FieldKind.of(type);
+                if (kind == null) {
+                    throw new UnsupportedMessageException("the type " + typeName + " of field " + name + " is not supported");
+                }
+                if (kind == FieldKind.ENUM && !isAccessible((TypeElement) ((DeclaredType) type).asElement())) {
+                    throw new UnsupportedMessageException("the enum type " + typeName + " of field " + name + " is not accessible");
+                }
+            }
+
+            // the names of the generated members are derived from the field name as is, which is unique in the type
+
+            private String localName() {
+                return "_" + name;
+            }
+
+            private String getterName() {
+                return "GET_" + name;
+            }
+
+            private String setterName() {
+                return "SET_" + name;
+            }
+
+            private String enumCodecName() {
+                return "CODEC_" + name;
+            }
+
+            private String readExpression() {
+                return String.format(kind.readFormat, enumCodecName());
+            }
+
+            private String writeStatement() {
+                return String.format(kind.writeFormat, localName(), enumCodecName());
+            }
+
+        }
+
+    }
+
+    private enum FieldKind {
+        BOOLEAN("in.readBoolean()", "out.writeBoolean(%1$s);"),
+        BYTE("(byte) in.readInt()", "out.writeLong(%1$s);"),
+        SHORT("(short) in.readInt()", "out.writeLong(%1$s);"),
+        INT("in.readInt()", "out.writeLong(%1$s);"),
+        LONG("in.readLong()", "out.writeLong(%1$s);"),
+        FLOAT("in.readFloat()", "out.writeFloat(%1$s);"),
+        DOUBLE("in.readDouble()", "out.writeDouble(%1$s);"),
+        STRING("in.readString()", "out.writeString(%1$s);"),
+        UUID("in.readUuid()", "out.writeUuid(%1$s);"),
+        ENUM("in.readEnum(%1$s)", "out.writeEnum(%2$s, %1$s);");
+
+        private final String readFormat;
+        private final String writeFormat;
+
+        FieldKind(String readFormat, String writeFormat) {
+            this.readFormat = readFormat;
+            this.writeFormat = writeFormat;
+        }
+
+        private static FieldKind of(TypeMirror type) {
+            switch (type.getKind()) {
+                case BOOLEAN:
+                    return BOOLEAN;
+                case BYTE:
+                    return BYTE;
+                case SHORT:
+                    return SHORT;
+                case INT:
+                    return INT;
+                case LONG:
+                    return LONG;
+                case FLOAT:
+                    return FLOAT;
+                case DOUBLE:
+                    return DOUBLE;
+                case DECLARED:
+                    DeclaredType declaredType = (DeclaredType) type;
+                    if (!declaredType.getTypeArguments().isEmpty()) {
+                        return null;
+                    }
+                    TypeElement element = (TypeElement) declaredType.asElement();
+                    if (element.getKind() == ElementKind.ENUM) {
+                        return ENUM;
+                    }
+                    switch (element.getQualifiedName().toString()) {
+                        case "java.lang.Boolean":
+                            return BOOLEAN;
+                        case "java.lang.Byte":
+                            return BYTE;
+                        case "java.lang.Short":
+                            return SHORT;
+                        case "java.lang.Integer":
+                            return INT;
+                        case "java.lang.Long":
+                            return LONG;
+                        case "java.lang.Float":
+                            return FLOAT;
+                        case "java.lang.Double":
+                            return DOUBLE;
+                        case "java.lang.String":
+                            return STRING;
+                        case "java.util.UUID":
+                            return UUID;
+                    }
+                    return null;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static class UnsupportedMessageException extends Exception {
+
+        private static final long serialVersionUID = -2418374001293836571L;
+
+        private UnsupportedMessageException(String message) {
+            super(message);
+        }
+
+    }
+
+}
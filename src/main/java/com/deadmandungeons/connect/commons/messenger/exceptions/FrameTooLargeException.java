@@ -0,0 +1,11 @@
+package com.deadmandungeons.connect.commons.messenger.exceptions;
+
+public class FrameTooLargeException extends MessageParseException {
+
+    private static final long serialVersionUID = -4318069252046711853L;
+
+    public FrameTooLargeException(String message) {
+        super(message);
+    }
+
+}
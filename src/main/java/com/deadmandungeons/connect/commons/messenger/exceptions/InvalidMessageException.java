@@ -1,15 +1,36 @@
 package com.deadmandungeons.connect.commons.messenger.exceptions;
 
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+
 public class InvalidMessageException extends Exception {
 
     private static final long serialVersionUID = 330763119431699203L;
 
+    private final Class<? extends Message> messageClass;
+
     public InvalidMessageException(String message) {
-        super(message);
+        this(message, null, null);
     }
 
     public InvalidMessageException(String message, Throwable throwable) {
+        this(message, throwable, null);
+    }
+
+    /**
+     * @param message the detail message
+     * @param throwable the cause, such as the InvalidMessageException thrown by {@link Message#validate()}
+     * @param messageClass the class of the invalid Message, or null if it is unknown
+     */
+    public InvalidMessageException(String message, Throwable throwable, Class<? extends Message> messageClass) {
         super(message, throwable);
+        this.messageClass = messageClass;
+    }
+
+    /**
+     * @return the class of the invalid Message, or null if it is unknown
+     */
+    public Class<? extends Message> getMessageClass() {
+        return messageClass;
     }
 
 }
@@ -0,0 +1,345 @@
+package com.deadmandungeons.connect.commons.messenger.heartbeat;
+
+import com.deadmandungeons.connect.commons.messenger.Messenger;
+import com.deadmandungeons.connect.commons.messenger.io.FrameEncoder;
+import com.deadmandungeons.connect.commons.messenger.messages.HeartbeatMessage;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends a {@link HeartbeatMessage} to every registered peer at a fixed interval, and detects failed peers with a
+ * {@link PhiAccrualFailureDetector} per peer. Every peer is driven by a single shared {@link TimingWheel},
+ * so monitoring thousands of peers costs one thread and O(1) work per peer per interval.
+ * <p>The heartbeat frame is serialized once when the monitor is built, in the length-prefixed format of the
+ * {@link FrameEncoder}, and the same read-only bytes are passed to {@link Listener#sendHeartbeat(Object, ByteBuffer)}
+ * for every peer. Any message received from a peer, not only a heartbeat, should be reported with
+ * {@link #heartbeatReceived(Object)}.</p>
+ * @param <P> the type that identifies a peer, such as its channel
+ */
+public final class HeartbeatMonitor<P> implements Closeable {
+
+    private final Listener<P> listener;
+    private final long intervalNanos;
+    private final double phiThreshold;
+    private final int maxSampleSize;
+    private final long minStdDeviationNanos;
+    private final long acceptablePauseNanos;
+    private final ByteBuffer heartbeatFrame;
+    private final TimingWheel timingWheel;
+    private final ConcurrentMap<P, Peer> peers = new ConcurrentHashMap<>();
+
+    /**
+     * @param messenger the Messenger used to serialize the heartbeat frame
+     * @param listener the Listener to send heartbeats with and notify of suspected peers
+     * @return a new {@link HeartbeatMonitor.Builder} to be used to build a new HeartbeatMonitor instance
+     */
+    public static <P> Builder<P> builder(Messenger messenger, Listener<P> listener) {
+        return new Builder<>(messenger, listener);
+    }
+
+    /**
+     * Sends heartbeats and receives the failure detection events of a {@link HeartbeatMonitor}.
+     * Every method is called on the worker thread of the timing wheel, except for {@link #peerRecovered(Object)}
+     * which is called on the thread that reported the heartbeat. Implementations should not block.
+     * @param <P> the type that identifies a peer
+     */
+    public interface Listener<P> {
+
+        /**
+         * @param peer the peer to send the heartbeat to
+         * @param frame the length-prefixed heartbeat frame. This is a read-only view of the shared frame.
+         */
+        void sendHeartbeat(P peer, ByteBuffer frame);
+
+        /**
+         * Called once when the phi of the peer reaches the threshold
+         * @param peer the suspected peer
+         * @param phi the phi of the peer
+         */
+        void peerSuspected(P peer, double phi);
+
+        /**
+         * Called once when a heartbeat is received from a peer that was suspected
+         * @param peer the recovered peer
+         */
+        void peerRecovered(P peer);
+
+    }
+
+    /**
+     * The Builder class for a {@link HeartbeatMonitor} instance
+     * @param <P> the type that identifies a peer
+     */
+    public static final class Builder<P> {
+
+        private final Messenger messenger;
+        private final Listener<P> listener;
+        private long intervalNanos = TimeUnit.SECONDS.toNanos(1);
+        private double phiThreshold = 8;
+        private int maxSampleSize = 200;
+        private long minStdDeviationNanos = -1;
+        private long acceptablePauseNanos = -1;
+        private long tickNanos = -1;
+        private String data = "ping";
+
+        private Builder(Messenger messenger, Listener<P> listener) {
+            if (messenger == null || listener == null) {
+                throw new IllegalArgumentException("messenger and listener cannot be null");
+            }
+            this.messenger = messenger;
+            this.listener = listener;
+        }
+
+        /**
+         * @param interval the interval at which heartbeats are sent to each peer. The default is 1 second
+         * @param unit the unit of interval
+         * @return this Builder instance
+         */
+        public Builder<P> interval(long interval, TimeUnit unit) {
+            if (interval <= 0) {
+                throw new IllegalArgumentException("interval must be greater than 0");
+            }
+            intervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        /**
+         * @param phiThreshold the phi at which a peer is suspected. The default is 8
+         * @return this Builder instance
+         */
+        public Builder<P> phiThreshold(double phiThreshold) {
+            if (phiThreshold <= 0) {
+                throw new IllegalArgumentException("phiThreshold must be greater than 0");
+            }
+            this.phiThreshold = phiThreshold;
+            return this;
+        }
+
+        /**
+         * @param maxSampleSize the number of heartbeat inter-arrival times kept per peer. The default is 200
+         * @return this Builder instance
+         */
+        public Builder<P> maxSampleSize(int maxSampleSize) {
+            if (maxSampleSize <= 0) {
+                throw new IllegalArgumentException("maxSampleSize must be greater than 0");
+            }
+            this.maxSampleSize = maxSampleSize;
+            return this;
+        }
+
+        /**
+         * @param minStdDeviation the minimum standard deviation of heartbeat inter-arrival times.
+         * The default is a tenth of the interval
+         * @param unit the unit of minStdDeviation
+         * @return this Builder instance
+         */
+        public Builder<P> minStdDeviation(long minStdDeviation, TimeUnit unit) {
+            if (minStdDeviation <= 0) {
+                throw new IllegalArgumentException("minStdDeviation must be greater than 0");
+            }
+            minStdDeviationNanos = unit.toNanos(minStdDeviation);
+            return this;
+        }
+
+        /**
+         * @param acceptablePause the duration of missed heartbeats tolerated before a peer is suspected.
+         * The default is twice the interval
+         * @param unit the unit of acceptablePause
+         * @return this Builder instance
+         */
+        public Builder<P> acceptablePause(long acceptablePause, TimeUnit unit) {
+            if (acceptablePause < 0) {
+                throw new IllegalArgumentException("acceptablePause cannot be negative");
+            }
+            acceptablePauseNanos = unit.toNanos(acceptablePause);
+            return this;
+        }
+
+        /**
+         * @param tickDuration the resolution of the timing wheel. The default is a sixteenth of the interval
+         * @param unit the unit of tickDuration
+         * @return this Builder instance
+         */
+        public Builder<P> tickDuration(long tickDuration, TimeUnit unit) {
+            if (tickDuration <= 0) {
+                throw new IllegalArgumentException("tickDuration must be greater than 0");
+            }
+            tickNanos = unit.toNanos(tickDuration);
+            return this;
+        }
+
+        /**
+         * @param data the data of the sent {@link HeartbeatMessage}. The default is "ping"
+         * @return this Builder instance
+         */
+        public Builder<P> data(String data) {
+            if (data == null) {
+                throw new IllegalArgumentException("data cannot be null");
+            }
+            this.data = data;
+            return this;
+        }
+
+        /**
+         * Build the HeartbeatMonitor and start its timing wheel
+         * @return the built HeartbeatMonitor instance
+         */
+        public HeartbeatMonitor<P> build() {
+            return new HeartbeatMonitor<>(this);
+        }
+
+    }
+
+    private HeartbeatMonitor(Builder<P> builder) {
+        listener = builder.listener;
+        intervalNanos = builder.intervalNanos;
+        phiThreshold = builder.phiThreshold;
+        maxSampleSize = builder.maxSampleSize;
+        minStdDeviationNanos = (builder.minStdDeviationNanos > 0 ? builder.minStdDeviationNanos : Math.max(1, intervalNanos / 10));
+        acceptablePauseNanos = (builder.acceptablePauseNanos >= 0 ? builder.acceptablePauseNanos : intervalNanos * 2);
+
+        byte[] payload = builder.messenger.serializeToBytes(new HeartbeatMessage(builder.data));
+        ByteBuffer frame = ByteBuffer.allocate(FrameEncoder.HEADER_LENGTH + payload.length);
+        frame.putInt(payload.length).put(payload).flip();
+        heartbeatFrame = frame.asReadOnlyBuffer();
+
+        long tickNanos = (builder.tickNanos > 0 ? builder.tickNanos : Math.max(TimeUnit.MILLISECONDS.toNanos(1), intervalNanos / 16));
+        ThreadFactoryBuilder threadFactory = new ThreadFactoryBuilder().setNameFormat("HeartbeatMonitor-%d").setDaemon(true);
+        timingWheel = new TimingWheel(tickNanos, TimeUnit.NANOSECONDS, 512, threadFactory.build());
+    }
+
+
+    /**
+     * Start sending heartbeats to the given peer. The first heartbeat is sent after a random delay of up to one
+     * interval so that the heartbeats of peers added at the same time are spread out.
+     * @param peer the peer to monitor
+     * @return true if the peer was added, or false if it was already being monitored
+     */
+    public boolean addPeer(P peer) {
+        long now = System.nanoTime();
+        PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(maxSampleSize, intervalNanos,
+                minStdDeviationNanos, acceptablePauseNanos, TimeUnit.NANOSECONDS, now);
+        Peer state = new Peer(peer, detector);
+        if (peers.containsKey(peer) || peers.putIfAbsent(peer, state) != null) {
+            return false;
+        }
+        state.schedule(ThreadLocalRandom.current().nextLong(intervalNanos));
+        return true;
+    }
+
+    /**
+     * Stop sending heartbeats to the given peer
+     * @param peer the peer to stop monitoring
+     * @return true if the peer was being monitored
+     */
+    public boolean removePeer(P peer) {
+        Peer state = peers.remove(peer);
+        if (state == null) {
+            return false;
+        }
+        state.cancel();
+        return true;
+    }
+
+    /**
+     * Record that a heartbeat, or any other message, was received from the given peer
+     * @param peer the peer that the message was received from
+     */
+    public void heartbeatReceived(P peer) {
+        Peer state = peers.get(peer);
+        if (state != null) {
+            state.detector.heartbeat(System.nanoTime());
+            if (state.suspected.compareAndSet(true, false)) {
+                listener.peerRecovered(peer);
+            }
+        }
+    }
+
+    /**
+     * @param peer the monitored peer
+     * @return the current phi of the given peer, or -1 if the peer is not being monitored
+     */
+    public double phi(P peer) {
+        Peer state = peers.get(peer);
+        return (state != null ? state.detector.phi(System.nanoTime()) : -1);
+    }
+
+    /**
+     * @param peer the monitored peer
+     * @return true if the given peer is currently suspected to have failed
+     */
+    public boolean isSuspected(P peer) {
+        Peer state = peers.get(peer);
+        return state != null && state.suspected.get();
+    }
+
+    /**
+     * Stop sending heartbeats to every peer and stop the timing wheel
+     */
+    @Override
+    public void close() {
+        timingWheel.close();
+        peers.clear();
+    }
+
+
+    private final class Peer implements Runnable {
+
+        private final P peer;
+        private final PhiAccrualFailureDetector detector;
+        private final AtomicBoolean suspected = new AtomicBoolean();
+        private volatile TimingWheel.Timeout timeout;
+        private volatile boolean cancelled;
+
+        private Peer(P peer, PhiAccrualFailureDetector detector) {
+            this.peer = peer;
+            this.detector = detector;
+        }
+
+        private void schedule(long delayNanos) {
+            if (!cancelled) {
+                try {
+                    timeout = timingWheel.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+                } catch (IllegalStateException e) {
+                    // the monitor has been closed
+                    cancelled = true;
+                }
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            TimingWheel.Timeout timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            try {
+                listener.sendHeartbeat(peer, heartbeatFrame.duplicate());
+
+                double phi = detector.phi(System.nanoTime());
+                if (phi >= phiThreshold && suspected.compareAndSet(false, true)) {
+                    listener.peerSuspected(peer, phi);
+                }
+            } finally {
+                // a failing listener must not leave the peer unmonitored
+                schedule(intervalNanos);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.deadmandungeons.connect.commons.messenger.heartbeat;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An adaptive failure detector for a single peer based on the phi accrual failure detector by Hayashibara et al.
+ * Rather than a fixed timeout, it keeps a sliding window of heartbeat inter-arrival times, and expresses the suspicion
+ * that the peer has failed as phi = -log10(P(a heartbeat arrives later than now)), assuming normally distributed
+ * inter-arrival times. A phi of 1 means a 10% chance of a false positive, a phi of 8 means a 0.000001% chance.
+ * <p>Since the window adapts to the observed jitter, a peer on a jittery network is given more time before it is
+ * suspected than a peer on a stable network. This class is thread safe.</p>
+ */
+public final class PhiAccrualFailureDetector {
+
+    private final long minStdDeviationNanos;
+    private final long acceptablePauseNanos;
+    private final long[] intervals;
+    private int intervalCount;
+    private int nextIntervalIndex;
+    private double intervalSum;
+    private double intervalSquaredSum;
+    private long lastHeartbeat;
+
+    /**
+     * @param maxSampleSize the number of inter-arrival times to keep in the sliding window
+     * @param firstHeartbeatEstimate the expected interval of heartbeats, used until intervals have been observed
+     * @param minStdDeviation the minimum standard deviation, which prevents a perfectly stable peer from being
+     * suspected as soon as a single heartbeat is slightly late
+     * @param acceptablePause the duration of missed heartbeats that is tolerated before the peer is suspected,
+     * such as the duration of garbage collection pauses
+     * @param unit the unit of firstHeartbeatEstimate, minStdDeviation and acceptablePause
+     * @param now the current {@link System#nanoTime()}, which is treated as the first heartbeat
+     */
+    public PhiAccrualFailureDetector(int maxSampleSize, long firstHeartbeatEstimate, long minStdDeviation,
+                                     long acceptablePause, TimeUnit unit, long now) {
+        if (maxSampleSize <= 0 || firstHeartbeatEstimate <= 0 || minStdDeviation <= 0 || acceptablePause < 0) {
+            throw new IllegalArgumentException("maxSampleSize, firstHeartbeatEstimate and minStdDeviation must be "
+                    + "greater than 0, and acceptablePause cannot be negative");
+        }
+        intervals = new long[Math.max(2, maxSampleSize)];
+        minStdDeviationNanos = unit.toNanos(minStdDeviation);
+        acceptablePauseNanos = unit.toNanos(acceptablePause);
+        lastHeartbeat = now;
+
+        // bootstrap with 2 intervals that have the estimated mean and a standard deviation of a quarter of the mean
+        long mean = unit.toNanos(firstHeartbeatEstimate);
+        long stdDeviation = mean / 4;
+        addInterval(mean - stdDeviation);
+        addInterval(mean + stdDeviation);
+    }
+
+    /**
+     * Record a heartbeat from the peer
+     * @param now the current {@link System#nanoTime()}
+     */
+    public synchronized void heartbeat(long now) {
+        long interval = now - lastHeartbeat;
+        lastHeartbeat = now;
+        if (interval > 0) {
+            addInterval(interval);
+        }
+    }
+
+    /**
+     * @param now the current {@link System#nanoTime()}
+     * @return the suspicion level that the peer has failed
+     */
+    public synchronized double phi(long now) {
+        double mean = intervalSum / intervalCount;
+        double variance = intervalSquaredSum / intervalCount - mean * mean;
+        double stdDeviation = Math.max(Math.sqrt(Math.max(variance, 0)), minStdDeviationNanos);
+        return phi(now - lastHeartbeat, mean + acceptablePauseNanos, stdDeviation);
+    }
+
+    /**
+     * @param now the current {@link System#nanoTime()}
+     * @param threshold the phi threshold
+     * @return true if the phi of the peer is below the given threshold
+     */
+    public boolean isAvailable(long now, double threshold) {
+        return phi(now) < threshold;
+    }
+
+    private void addInterval(long interval) {
+        if (intervalCount == intervals.length) {
+            long evicted = intervals[nextIntervalIndex];
+            intervalSum -= evicted;
+            intervalSquaredSum -= (double) evicted * evicted;
+        } else {
+            intervalCount++;
+        }
+        intervals[nextIntervalIndex] = interval;
+        nextIntervalIndex = (nextIntervalIndex + 1) % intervals.length;
+        intervalSum += interval;
+        intervalSquaredSum += (double) interval * interval;
+    }
+
+    // uses the logistic approximation of the cumulative normal distribution
+    private static double phi(long timeDiff, double mean, double stdDeviation) {
+        double y = (timeDiff - mean) / stdDeviation;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        if (timeDiff > mean) {
+            return -Math.log10(e / (1.0 + e));
+        }
+        return -Math.log10(1.0 - 1.0 / (1.0 + e));
+    }
+
+}
@@ -0,0 +1,253 @@
+package com.deadmandungeons.connect.commons.messenger.heartbeat;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hashed timing wheel that runs a large number of short, approximately timed tasks on a single worker thread.
+ * Scheduling and cancelling a task is O(1), and each tick only visits the tasks in one bucket of the wheel,
+ * so thousands of recurring timers cost no more than one thread sleeping for one tick at a time.
+ * Tasks may run up to one tick later than their deadline, and should be quick since they all run on the worker thread.
+ */
+public final class TimingWheel implements Closeable {
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private final long startTime;
+    private volatile boolean closed;
+    // only accessed by the worker thread
+    private long tick;
+
+    /**
+     * @param tickDuration the duration of a single tick, which is the resolution of the wheel
+     * @param unit the unit of tickDuration
+     * @param ticksPerWheel the number of buckets in the wheel, which is rounded up to a power of 2
+     * @param threadFactory the factory of the worker thread
+     */
+    public TimingWheel(long tickDuration, TimeUnit unit, int ticksPerWheel, ThreadFactory threadFactory) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("tickDuration and ticksPerWheel must be greater than 0");
+        }
+        tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        wheel = new Bucket[Math.max(1, size)];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        mask = wheel.length - 1;
+
+        startTime = System.nanoTime();
+        worker = threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                runWorker();
+            }
+        });
+        worker.start();
+    }
+
+    /**
+     * @param task the task to run on the worker thread once the delay has elapsed
+     * @param delay the delay before the task is run
+     * @param unit the unit of delay
+     * @return the Timeout that can be used to cancel the task
+     * @throws IllegalStateException if this TimingWheel has been closed
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) throws IllegalStateException {
+        if (closed) {
+            throw new IllegalStateException("TimingWheel has been closed");
+        }
+        long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay));
+        Timeout timeout = new Timeout(this, task, deadline);
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stop the worker thread. Tasks that have not run yet never will.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        worker.interrupt();
+    }
+
+    private void runWorker() {
+        while (!closed) {
+            long deadline = tickNanos * (tick + 1);
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    // closed
+                    continue;
+                }
+            }
+
+            removeCancelled();
+            transferScheduled();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferScheduled() {
+        // bound the transfer so a flood of new timeouts cannot stall the wheel
+        for (int i = 0; i < 100000; i++) {
+            Timeout timeout = scheduled.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (timeout.state != Timeout.PENDING) {
+                continue;
+            }
+            long deadlineTick = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.remainingRounds = (deadlineTick - tick) / wheel.length;
+            wheel[(int) (deadlineTick & mask)].add(timeout);
+        }
+    }
+
+
+    /**
+     * A handle for a task scheduled on a {@link TimingWheel}
+     */
+    public static final class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final TimingWheel timingWheel;
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = PENDING;
+
+        // only accessed by the worker thread
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(TimingWheel timingWheel, Runnable task, long deadline) {
+            this.timingWheel = timingWheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel the task if it has not run yet
+         * @return true if the task was cancelled, or false if it has already run or been cancelled
+         */
+        public boolean cancel() {
+            synchronized (this) {
+                if (state != PENDING) {
+                    return false;
+                }
+                state = CANCELLED;
+            }
+            timingWheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        private boolean expire() {
+            synchronized (this) {
+                if (state != PENDING) {
+                    return false;
+                }
+                state = EXPIRED;
+            }
+            return true;
+        }
+
+    }
+
+    // a doubly linked list of timeouts that is only accessed by the worker thread
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.next = null;
+            timeout.prev = null;
+            timeout.bucket = null;
+        }
+
+        private void report(Throwable t) {
+            Thread thread = Thread.currentThread();
+            try {
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+            } catch (Throwable ignored) {
+                // a failing exception handler must not stop the worker either
+            }
+        }
+
+        private void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    if (timeout.expire()) {
+                        try {
+                            timeout.task.run();
+                        } catch (Throwable t) {
+                            // the worker must outlive any task, or no other timeout would ever expire
+                            report(t);
+                        }
+                    }
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,328 @@
+package com.deadmandungeons.connect.commons.messenger.io;
+
+import com.deadmandungeons.connect.commons.messenger.Messenger;
+import com.deadmandungeons.connect.commons.messenger.codecs.EnumCodec;
+import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses the payloads of frames with a {@link Deflater} primed with a preset dictionary, for links where bandwidth
+ * is scarcer than CPU. Message payloads are small, so generic compression has little history to find repetitions in.
+ * The preset dictionary holds the type names, property names and enum constants of the registered Message types
+ * as they appear in JSON, so even the first occurrence of each is compressed.
+ * <p>A compressed payload is a zlib stream, so it starts with the byte <code>0x78</code> which a JSON or binary
+ * payload never does, and it records the checksum of its dictionary so a peer with a different dictionary fails fast.
+ * Payloads shorter than the threshold, and payloads that compression would not make smaller, are left as they are.</p>
+ * <p>A FrameCompressor is thread safe. Each thread reuses its own Deflater, Inflater and buffers, so a single
+ * instance should be shared by every connection. The native memory of the Deflaters and Inflaters is released
+ * by {@link #close()}.</p>
+ * @see FrameEncoder#FrameEncoder(Messenger, int, boolean, FrameCompressor)
+ * @see FrameDecoder#FrameDecoder(Messenger, int, FrameCompressor)
+ */
+public final class FrameCompressor implements Closeable {
+
+    public static final int DEFAULT_THRESHOLD = 128;
+
+    private static final int ZLIB_HEADER = 0x78;
+    private static final int ZLIB_PRESET_DICTIONARY = 0x20;
+    private static final int INITIAL_CAPACITY = 1024;
+    // larger buffers are not kept by the threads to avoid holding on to the memory of a single large payload
+    private static final int MAX_POOLED_CAPACITY = 256 * 1024;
+
+    private final byte[] dictionary;
+    private final int dictionaryChecksum;
+    private final int threshold;
+    private final int level;
+    // every Codec of every thread, so that they can all be ended by close
+    private final Queue<Codec> allCodecs = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+    private final ThreadLocal<Codec> codecs = new ThreadLocal<Codec>() {
+        @Override
+        protected Codec initialValue() {
+            Codec codec = new Codec();
+            allCodecs.add(codec);
+            if (closed) {
+                // close may have missed the codec while it was being added
+                codec.end();
+            }
+            return codec;
+        }
+    };
+
+    /**
+     * Create a FrameCompressor with a dictionary built from the Message types registered with the given Messenger.
+     * Both ends must register the same Message types, in any order.
+     * @param messenger the Messenger to build the dictionary from
+     */
+    public FrameCompressor(Messenger messenger) {
+        this(buildDictionary(messenger.getMessageTypes()), DEFAULT_THRESHOLD, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param dictionary the preset dictionary, which must be the same at both ends
+     * @param threshold the minimum length of a payload to compress
+     * @param level the compression level from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public FrameCompressor(byte[] dictionary, int threshold, int level) {
+        if (dictionary == null) {
+            throw new IllegalArgumentException("dictionary cannot be null");
+        }
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold cannot be negative");
+        }
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("level must be between -1 and 9");
+        }
+        this.dictionary = dictionary.clone();
+        Adler32 checksum = new Adler32();
+        checksum.update(dictionary);
+        dictionaryChecksum = (int) checksum.getValue();
+        this.threshold = threshold;
+        this.level = level;
+    }
+
+    /**
+     * Build a preset dictionary of the JSON fragments that the given Message types are serialized with.
+     * Deflate finds matches closer to the end of the dictionary more cheaply, so the fragments that every
+     * message shares are placed last.
+     * <p>The types are ordered by their type names and the properties of each type by their names, so the dictionary
+     * only depends on the set of types. It does not depend on their registration order or on the unspecified order of
+     * {@link Class#getDeclaredFields()}, which may differ between the JVMs of the two ends.</p>
+     * @param messageTypes the Message types to build the dictionary from
+     * @return the UTF-8 encoded dictionary
+     */
+    public static byte[] buildDictionary(Collection<Class<? extends Message>> messageTypes) {
+        SortedMap<String, Class<? extends Message>> sortedTypes = new TreeMap<>();
+        for (Class<? extends Message> messageType : messageTypes) {
+            sortedTypes.put(Message.getType(messageType), messageType);
+        }
+
+        StringBuilder dictionary = new StringBuilder();
+        for (Map.Entry<String, Class<? extends Message>> entry : sortedTypes.entrySet()) {
+            for (Field field : getSortedFields(entry.getValue()).values()) {
+                dictionary.append(",\"").append(field.getName()).append("\":");
+                if (field.getType().isEnum()) {
+                    appendEnumConstants(dictionary, field.getType());
+                }
+            }
+            dictionary.append("{\"type\":\"").append(entry.getKey()).append('"');
+        }
+        dictionary.append("\"},{\"type\":\"");
+        return dictionary.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static SortedMap<String, Field> getSortedFields(Class<? extends Message> messageType) {
+        SortedMap<String, Field> fields = new TreeMap<>();
+        for (Class<?> raw = messageType; raw != Message.class && raw != null; raw = raw.getSuperclass()) {
+            for (Field field : raw.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                // a field of a subclass shadows a field of the same name in its superclass
+                if (!fields.containsKey(field.getName())) {
+                    fields.put(field.getName(), field);
+                }
+            }
+        }
+        return fields;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void appendEnumConstants(StringBuilder dictionary, Class<?> enumClass) {
+        EnumCodec codec = EnumCodec.of((Class) enumClass);
+        for (Object constant : enumClass.getEnumConstants()) {
+            dictionary.append('"').append(codec.nameOf((Enum) constant)).append('"');
+        }
+    }
+
+    /**
+     * @param payload the payload to check. The position of the buffer is not changed.
+     * @return true if the given payload was compressed by a FrameCompressor
+     */
+    public static boolean isCompressed(ByteBuffer payload) {
+        int position = payload.position();
+        return payload.remaining() >= 2 && (payload.get(position) & 0xFF) == ZLIB_HEADER
+                && (payload.get(position + 1) & ZLIB_PRESET_DICTIONARY) != 0;
+    }
+
+    /**
+     * @return the minimum length of a payload to compress
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Compress the given payload if it is at least as long as the threshold and compression makes it smaller
+     * @param payload the array of the payload
+     * @param offset the index of the first byte of the payload
+     * @param length the length of the payload
+     * @return a buffer of the compressed payload, or null if the payload was not compressed. The buffer belongs to
+     * the calling thread, and is only valid until the thread compresses or decompresses another payload.
+     * @throws IllegalStateException if this FrameCompressor has been closed
+     */
+    public ByteBuffer compress(byte[] payload, int offset, int length) throws IllegalStateException {
+        if (length < threshold) {
+            return null;
+        }
+        Codec codec = codecs.get();
+        // only contended if close is called concurrently
+        synchronized (codec) {
+            codec.checkOpen();
+            Deflater deflater = codec.deflater;
+            deflater.reset();
+            deflater.setDictionary(dictionary);
+            deflater.setInput(payload, offset, length);
+            deflater.finish();
+
+            byte[] out = codec.output(length);
+            int compressed = 0;
+            while (!deflater.finished() && compressed < length) {
+                compressed += deflater.deflate(out, compressed, length - compressed);
+            }
+            if (!deflater.finished() || compressed >= length) {
+                return null;
+            }
+            return ByteBuffer.wrap(out, 0, compressed);
+        }
+    }
+
+    /**
+     * @param payload the compressed payload from its position to its limit. The position is advanced to its limit.
+     * @param maxLength the maximum length of the decompressed payload
+     * @return a buffer of the decompressed payload. The buffer belongs to the calling thread,
+     * and is only valid until the thread compresses or decompresses another payload.
+     * @throws MessageParseException if the payload is not a valid compressed payload, was compressed with a different
+     * dictionary, or is longer than maxLength when decompressed
+     * @throws IllegalStateException if this FrameCompressor has been closed
+     */
+    public ByteBuffer decompress(ByteBuffer payload, int maxLength) throws MessageParseException, IllegalStateException {
+        Codec codec = codecs.get();
+        // only contended if close is called concurrently
+        synchronized (codec) {
+            codec.checkOpen();
+            Inflater inflater = codec.inflater;
+            inflater.reset();
+            if (payload.hasArray()) {
+                inflater.setInput(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+            } else {
+                byte[] input = new byte[payload.remaining()];
+                payload.duplicate().get(input);
+                inflater.setInput(input);
+            }
+            payload.position(payload.limit());
+
+            // one byte more than the maximum to tell a payload of exactly the maximum length from a longer one
+            int limit = (maxLength < Integer.MAX_VALUE ? maxLength + 1 : maxLength);
+            byte[] out = codec.output(Math.min(INITIAL_CAPACITY, limit));
+            int decompressed = 0;
+            try {
+                while (true) {
+                    if (decompressed == out.length) {
+                        if (out.length >= limit) {
+                            throw new MessageParseException("Decompressed frame length exceeds the maximum of " + maxLength);
+                        }
+                        out = codec.grow(out, (int) Math.min((long) out.length * 2, limit));
+                    }
+                    int inflated = inflater.inflate(out, decompressed, out.length - decompressed);
+                    decompressed += inflated;
+                    if (inflater.finished()) {
+                        break;
+                    }
+                    if (inflated == 0) {
+                        if (inflater.needsDictionary()) {
+                            if (inflater.getAdler() != dictionaryChecksum) {
+                                throw new MessageParseException("Frame was compressed with a different dictionary");
+                            }
+                            inflater.setDictionary(dictionary);
+                        } else if (inflater.needsInput()) {
+                            throw new MessageParseException("Compressed frame is truncated");
+                        }
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new MessageParseException(e);
+            }
+            if (decompressed > maxLength) {
+                throw new MessageParseException("Decompressed frame length exceeds the maximum of " + maxLength);
+            }
+            return ByteBuffer.wrap(out, 0, decompressed);
+        }
+    }
+
+    /**
+     * Release the native memory of the Deflater and Inflater of every thread.
+     * The FrameCompressor cannot be used once it is closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Codec codec;
+        while ((codec = allCodecs.poll()) != null) {
+            codec.end();
+        }
+    }
+
+
+    private final class Codec {
+
+        private final Deflater deflater = new Deflater(level);
+        private final Inflater inflater = new Inflater();
+        private byte[] buf = new byte[INITIAL_CAPACITY];
+        private boolean ended;
+
+        private synchronized void end() {
+            if (!ended) {
+                ended = true;
+                deflater.end();
+                inflater.end();
+            }
+        }
+
+        // must hold the lock of this Codec
+        private void checkOpen() throws IllegalStateException {
+            if (ended) {
+                throw new IllegalStateException("FrameCompressor has been closed");
+            }
+        }
+
+        private byte[] output(int capacity) {
+            if (buf.length >= capacity) {
+                return buf;
+            }
+            byte[] output = new byte[capacity];
+            if (capacity <= MAX_POOLED_CAPACITY) {
+                buf = output;
+            }
+            return output;
+        }
+
+        private byte[] grow(byte[] output, int capacity) {
+            byte[] grown = new byte[capacity];
+            System.arraycopy(output, 0, grown, 0, output.length);
+            if (capacity <= MAX_POOLED_CAPACITY) {
+                buf = grown;
+            }
+            return grown;
+        }
+
+    }
+
+}
@@ -0,0 +1,182 @@
+package com.deadmandungeons.connect.commons.messenger.io;
+
+import com.deadmandungeons.connect.commons.messenger.Messenger;
+import com.deadmandungeons.connect.commons.messenger.exceptions.FrameTooLargeException;
+import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Decodes the length-prefixed frames written by a {@link FrameEncoder} from a non-blocking channel.
+ * Bytes are accumulated with {@link #read(ReadableByteChannel)} or {@link #feed(ByteBuffer)}, which may contain
+ * partial frames or several frames at once, and each complete frame is deserialized directly from the accumulation
+ * buffer by {@link #poll()}. JSON and binary payloads are both accepted, as are payloads compressed by a
+ * {@link FrameCompressor} if the decoder has one.
+ * <p>A FrameDecoder is not thread safe, and is meant to be owned by a single connection. Once a
+ * {@link FrameTooLargeException} is thrown the stream cannot be resynchronized and the connection should be closed.</p>
+ */
+public class FrameDecoder {
+
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+    private static final int MAX_FRAME_LENGTH = Integer.MAX_VALUE - FrameEncoder.HEADER_LENGTH;
+
+    private final Messenger messenger;
+    private final int maxFrameLength;
+    private final FrameCompressor compressor;
+    // in write mode; the unconsumed bytes are between readIndex and the position
+    private ByteBuffer buffer;
+    private int readIndex;
+
+    /**
+     * @param messenger the Messenger used to deserialize the Messages of each frame
+     */
+    public FrameDecoder(Messenger messenger) {
+        this(messenger, FrameEncoder.DEFAULT_MAX_FRAME_LENGTH);
+    }
+
+    /**
+     * @param messenger the Messenger used to deserialize the Messages of each frame
+     * @param maxFrameLength the maximum payload length of a single frame. Longer frames are rejected
+     * before they are buffered. It cannot be greater than {@code Integer.MAX_VALUE - FrameEncoder.HEADER_LENGTH}.
+     */
+    public FrameDecoder(Messenger messenger, int maxFrameLength) {
+        this(messenger, maxFrameLength, null);
+    }
+
+    /**
+     * @param messenger the Messenger used to deserialize the Messages of each frame
+     * @param maxFrameLength the maximum payload length of a single frame. Longer frames are rejected
+     * before they are buffered, and compressed payloads that are longer once decompressed are rejected as well.
+     * It cannot be greater than {@code Integer.MAX_VALUE - FrameEncoder.HEADER_LENGTH}.
+     * @param compressor the FrameCompressor to decompress compressed frame payloads with, or null if they are not expected
+     */
+    public FrameDecoder(Messenger messenger, int maxFrameLength, FrameCompressor compressor) {
+        if (messenger == null) {
+            throw new IllegalArgumentException("messenger cannot be null");
+        }
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("maxFrameLength must be greater than 0");
+        }
+        if (maxFrameLength > MAX_FRAME_LENGTH) {
+            // a whole frame including its header must still fit in a ByteBuffer
+            throw new IllegalArgumentException("maxFrameLength cannot be greater than " + MAX_FRAME_LENGTH);
+        }
+        this.messenger = messenger;
+        this.maxFrameLength = maxFrameLength;
+        this.compressor = compressor;
+        buffer = ByteBuffer.allocate(Math.min(INITIAL_CAPACITY, maxFrameLength + FrameEncoder.HEADER_LENGTH));
+    }
+
+    /**
+     * Read as many bytes as are available from the given channel without blocking
+     * @param channel the channel to read from
+     * @return the number of bytes read, or -1 if the channel has reached end-of-stream
+     * @throws IOException if the channel could not be read
+     * @throws FrameTooLargeException if the next frame is longer than the maximum frame length
+     */
+    public int read(ReadableByteChannel channel) throws IOException, FrameTooLargeException {
+        int total = 0;
+        while (true) {
+            ensureWritable();
+            int read = channel.read(buffer);
+            if (read < 0) {
+                return (total > 0 ? total : -1);
+            }
+            total += read;
+            if (read == 0 || buffer.hasRemaining()) {
+                return total;
+            }
+        }
+    }
+
+    /**
+     * Append the remaining bytes of the given buffer
+     * @param src the bytes to append. The position of src is advanced to its limit.
+     * @throws FrameTooLargeException if the next frame is longer than the maximum frame length
+     */
+    public void feed(ByteBuffer src) throws FrameTooLargeException {
+        while (src.hasRemaining()) {
+            ensureWritable();
+            int length = Math.min(src.remaining(), buffer.remaining());
+            ByteBuffer chunk = src.duplicate();
+            chunk.limit(chunk.position() + length);
+            buffer.put(chunk);
+            src.position(src.position() + length);
+        }
+    }
+
+    /**
+     * Deserialize the next complete frame
+     * @return the deserialized Messages of the next frame, or null if a complete frame has not been received yet
+     * @throws FrameTooLargeException if the next frame is longer than the maximum frame length
+     * @throws MessageParseException if the next frame is not a valid representation of one or more Messages.
+     * The frame is skipped in this case, so the following frames can still be polled.
+     */
+    public Message[] poll() throws MessageParseException {
+        int available = buffer.position() - readIndex;
+        if (available < FrameEncoder.HEADER_LENGTH) {
+            return null;
+        }
+        int length = checkLength(buffer.getInt(readIndex));
+        if (available < FrameEncoder.HEADER_LENGTH + length) {
+            return null;
+        }
+
+        ByteBuffer frame = buffer.duplicate();
+        frame.limit(readIndex + FrameEncoder.HEADER_LENGTH + length);
+        frame.position(readIndex + FrameEncoder.HEADER_LENGTH);
+        readIndex += FrameEncoder.HEADER_LENGTH + length;
+        if (readIndex == buffer.position()) {
+            buffer.clear();
+            readIndex = 0;
+        }
+        ByteBuffer payload = frame.slice();
+        if (compressor != null && FrameCompressor.isCompressed(payload)) {
+            payload = compressor.decompress(payload, maxFrameLength);
+        }
+        return messenger.deserialize(payload);
+    }
+
+    /**
+     * @return the number of buffered bytes that have not been polled yet
+     */
+    public int bufferedBytes() {
+        return buffer.position() - readIndex;
+    }
+
+    private int checkLength(int length) throws FrameTooLargeException {
+        if (length < 0 || length > maxFrameLength) {
+            throw new FrameTooLargeException("Frame length " + (length & 0xFFFFFFFFL) + " exceeds the maximum of " + maxFrameLength);
+        }
+        return length;
+    }
+
+    private void ensureWritable() throws FrameTooLargeException {
+        if (buffer.hasRemaining()) {
+            return;
+        }
+        if (readIndex > 0) {
+            // move the unconsumed bytes to the front
+            buffer.flip();
+            buffer.position(readIndex);
+            buffer.compact();
+            readIndex = 0;
+            return;
+        }
+
+        int required = FrameEncoder.HEADER_LENGTH + checkLength(buffer.getInt(0));
+        int capacity = buffer.capacity() * 2;
+        if (required > buffer.capacity()) {
+            // the buffer is full of a single partial frame, so grow only as much as a frame can need
+            capacity = Math.max(required, Math.min(capacity, maxFrameLength + FrameEncoder.HEADER_LENGTH));
+        }
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.deadmandungeons.connect.commons.messenger.io;
+
+import com.deadmandungeons.connect.commons.messenger.Messenger;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Encodes Messages into length-prefixed frames for a non-blocking channel. Each frame is a 4 byte big-endian
+ * payload length followed by the payload, which is either a UTF-8 encoded JSON array or a binary payload
+ * of the serialized Messages, optionally compressed by a {@link FrameCompressor}. Encoded frames are queued in a single growable buffer and written with
+ * {@link #flush(WritableByteChannel)}, which writes as much as the channel will accept without blocking.
+ * <p>A FrameEncoder is not thread safe, and is meant to be owned by a single connection.</p>
+ * @see FrameDecoder
+ */
+public class FrameEncoder {
+
+    public static final int HEADER_LENGTH = 4;
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 1024 * 1024;
+
+    private final Messenger messenger;
+    private final int maxFrameLength;
+    private final boolean binary;
+    private final FrameCompressor compressor;
+    private final Utf8Writer pending = new Utf8Writer();
+    private int flushed;
+
+    /**
+     * @param messenger the Messenger used to serialize the Messages of each frame
+     */
+    public FrameEncoder(Messenger messenger) {
+        this(messenger, DEFAULT_MAX_FRAME_LENGTH, false);
+    }
+
+    /**
+     * @param messenger the Messenger used to serialize the Messages of each frame
+     * @param maxFrameLength the maximum payload length of a single frame
+     * @param binary true to encode frame payloads with {@link Messenger#serializeBinary(Message...)}, or false for JSON
+     */
+    public FrameEncoder(Messenger messenger, int maxFrameLength, boolean binary) {
+        this(messenger, maxFrameLength, binary, null);
+    }
+
+    /**
+     * @param messenger the Messenger used to serialize the Messages of each frame
+     * @param maxFrameLength the maximum payload length of a single frame before it is compressed
+     * @param binary true to encode frame payloads with {@link Messenger#serializeBinary(Message...)}, or false for JSON
+     * @param compressor the FrameCompressor to compress frame payloads with, or null to not compress them
+     */
+    public FrameEncoder(Messenger messenger, int maxFrameLength, boolean binary, FrameCompressor compressor) {
+        if (messenger == null) {
+            throw new IllegalArgumentException("messenger cannot be null");
+        }
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("maxFrameLength must be greater than 0");
+        }
+        this.messenger = messenger;
+        this.maxFrameLength = maxFrameLength;
+        this.binary = binary;
+        this.compressor = compressor;
+    }
+
+    /**
+     * Encode the given messages as a single frame and queue it to be written by the next {@link #flush(WritableByteChannel)}
+     * @param messages the messages to encode
+     * @throws IllegalArgumentException if any message is invalid ({@link Message#validate()}),
+     * or the encoded frame would be longer than the maximum frame length
+     */
+    public void offer(Message... messages) throws IllegalArgumentException {
+        int start = pending.size();
+        pending.writeInt(0);
+        try {
+            if (binary) {
+                byte[] payload = messenger.serializeBinary(messages);
+                pending.writeBytes(payload, 0, payload.length);
+            } else {
+                messenger.serialize(messages, pending);
+            }
+        } catch (IOException e) {
+            // Utf8Writer does not throw IOException
+            throw new AssertionError(e);
+        } catch (RuntimeException e) {
+            pending.truncate(start);
+            throw e;
+        }
+
+        int length = pending.size() - start - HEADER_LENGTH;
+        if (length > maxFrameLength) {
+            pending.truncate(start);
+            throw new IllegalArgumentException("Frame length " + length + " exceeds the maximum of " + maxFrameLength);
+        }
+        if (compressor != null) {
+            ByteBuffer compressed = compressor.compress(pending.array(), start + HEADER_LENGTH, length);
+            if (compressed != null) {
+                pending.truncate(start + HEADER_LENGTH);
+                pending.writeBytes(compressed.array(), compressed.arrayOffset() + compressed.position(), compressed.remaining());
+                length = compressed.remaining();
+            }
+        }
+        pending.setInt(start, length);
+    }
+
+    /**
+     * Write as many of the queued frames to the given channel as it will accept
+     * @param channel the channel to write to
+     * @return true if every queued frame has been written, or false if the channel could not accept everything
+     * and flush should be called again once the channel is writable
+     * @throws IOException if the channel could not be written to
+     */
+    public boolean flush(WritableByteChannel channel) throws IOException {
+        int size = pending.size();
+        if (flushed < size) {
+            ByteBuffer buffer = ByteBuffer.wrap(pending.array(), flushed, size - flushed);
+            while (buffer.hasRemaining() && channel.write(buffer) > 0) {
+                // keep writing until the channel stops accepting bytes
+            }
+            flushed = buffer.position();
+        }
+
+        if (flushed == size) {
+            pending.reset();
+            flushed = 0;
+            return true;
+        }
+        // reclaim the space of written frames once it is more than the unwritten remainder
+        if (flushed > size - flushed) {
+            byte[] array = pending.array();
+            System.arraycopy(array, flushed, array, 0, size - flushed);
+            pending.truncate(size - flushed);
+            flushed = 0;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of queued bytes that have not been written yet
+     */
+    public int pendingBytes() {
+        return pending.size() - flushed;
+    }
+
+    /**
+     * @return true if there are queued bytes that have not been written yet
+     */
+    public boolean hasPending() {
+        return pendingBytes() > 0;
+    }
+
+}
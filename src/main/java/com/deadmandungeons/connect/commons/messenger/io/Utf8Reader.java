@@ -0,0 +1,108 @@
+package com.deadmandungeons.connect.commons.messenger.io;
+
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+/**
+ * A Reader that decodes UTF-8 directly from a ByteBuffer without copying it to an intermediate String.
+ * The position of the buffer is advanced as characters are read. Malformed input is replaced with U+FFFD
+ * just like the String constructor does.
+ */
+public final class Utf8Reader extends Reader {
+
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private final ByteBuffer in;
+    private char pendingLowSurrogate;
+
+    /**
+     * @param in the buffer to read UTF-8 from, starting at its position and ending at its limit
+     */
+    public Utf8Reader(ByteBuffer in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        int i = off;
+        int end = off + len;
+        if (pendingLowSurrogate != 0) {
+            cbuf[i++] = pendingLowSurrogate;
+            pendingLowSurrogate = 0;
+        }
+
+        ByteBuffer in = this.in;
+        if (in.hasArray()) {
+            // ASCII fast path
+            byte[] array = in.array();
+            int pos = in.arrayOffset() + in.position();
+            int limit = in.arrayOffset() + in.limit();
+            int start = pos;
+            while (i < end && pos < limit && array[pos] >= 0) {
+                cbuf[i++] = (char) array[pos++];
+            }
+            in.position(in.position() + (pos - start));
+        }
+
+        while (i < end && in.hasRemaining()) {
+            int b = in.get();
+            if (b >= 0) {
+                cbuf[i++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                int codePoint = decode(b & 0x1F, 1, 0x80);
+                cbuf[i++] = (codePoint < 0 ? REPLACEMENT : (char) codePoint);
+            } else if ((b & 0xF0) == 0xE0) {
+                int codePoint = decode(b & 0x0F, 2, 0x800);
+                cbuf[i++] = (codePoint < 0 || Character.isSurrogate((char) codePoint) ? REPLACEMENT : (char) codePoint);
+            } else if ((b & 0xF8) == 0xF0) {
+                int codePoint = decode(b & 0x07, 3, 0x10000);
+                if (codePoint < 0 || codePoint > Character.MAX_CODE_POINT) {
+                    cbuf[i++] = REPLACEMENT;
+                } else {
+                    cbuf[i++] = Character.highSurrogate(codePoint);
+                    char low = Character.lowSurrogate(codePoint);
+                    if (i < end) {
+                        cbuf[i++] = low;
+                    } else {
+                        pendingLowSurrogate = low;
+                    }
+                }
+            } else {
+                cbuf[i++] = REPLACEMENT;
+            }
+        }
+
+        int read = i - off;
+        return (read == 0 ? -1 : read);
+    }
+
+    // returns -1 if the continuation bytes are missing or malformed, or the sequence is overlong
+    private int decode(int codePoint, int continuations, int min) {
+        for (int n = 0; n < continuations; n++) {
+            if (!in.hasRemaining()) {
+                return -1;
+            }
+            int b = in.get(in.position());
+            if ((b & 0xC0) != 0x80) {
+                // leave the unexpected byte to be decoded on its own
+                return -1;
+            }
+            in.get();
+            codePoint = (codePoint << 6) | (b & 0x3F);
+        }
+        return (codePoint < min ? -1 : codePoint);
+    }
+
+    @Override
+    public boolean ready() {
+        return pendingLowSurrogate != 0 || in.hasRemaining();
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
@@ -0,0 +1,268 @@
+package com.deadmandungeons.connect.commons.messenger.io;
+
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A Writer that encodes characters directly to UTF-8 in a growable byte array, avoiding the intermediate String and
+ * CharsetEncoder of the standard library. Instances are not thread safe, but can be reused after {@link #reset()}.
+ * A pooled instance per thread is available with {@link #acquire()} and {@link #release()}.
+ */
+public final class Utf8Writer extends Writer {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    // larger buffers are not kept by the pool to avoid holding on to the memory of a single large payload
+    private static final int MAX_POOLED_CAPACITY = 256 * 1024;
+
+    private static final ThreadLocal<Utf8Writer> POOL = new ThreadLocal<Utf8Writer>() {
+        @Override
+        protected Utf8Writer initialValue() {
+            return new Utf8Writer(INITIAL_CAPACITY);
+        }
+    };
+
+    private byte[] buf;
+    private int count;
+    private char pendingHighSurrogate;
+    private boolean pooled;
+    private boolean inUse;
+
+    public Utf8Writer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public Utf8Writer(int initialCapacity) {
+        buf = new byte[initialCapacity];
+    }
+
+    /**
+     * Acquire the pooled Utf8Writer of the current thread. The returned writer is empty and must be released with
+     * {@link #release()} once its content has been consumed. A new unpooled writer is returned if the pooled writer
+     * of the current thread is already in use.
+     * @return an empty Utf8Writer
+     */
+    public static Utf8Writer acquire() {
+        Utf8Writer writer = POOL.get();
+        if (writer.inUse) {
+            return new Utf8Writer(INITIAL_CAPACITY);
+        }
+        writer.pooled = true;
+        writer.inUse = true;
+        return writer;
+    }
+
+    /**
+     * Return this writer to the pool of the current thread if it was acquired with {@link #acquire()}.
+     * This writer must not be used after it is released.
+     */
+    public void release() {
+        reset();
+        if (pooled) {
+            inUse = false;
+            if (buf.length > MAX_POOLED_CAPACITY) {
+                buf = new byte[INITIAL_CAPACITY];
+            }
+        }
+    }
+
+    /**
+     * Discard the written content so this writer can be reused
+     */
+    public void reset() {
+        count = 0;
+        pendingHighSurrogate = 0;
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return a copy of the written bytes
+     */
+    public byte[] toByteArray() {
+        flushPendingSurrogate();
+        return Arrays.copyOf(buf, count);
+    }
+
+    /**
+     * @param out the buffer to put the written bytes into
+     * @throws BufferOverflowException if out does not have enough space remaining.
+     * Nothing is put into out in this case.
+     */
+    public void writeTo(ByteBuffer out) throws BufferOverflowException {
+        flushPendingSurrogate();
+        if (out.remaining() < count) {
+            throw new BufferOverflowException();
+        }
+        out.put(buf, 0, count);
+    }
+
+    // direct buffer access for the FrameEncoder
+    byte[] array() {
+        flushPendingSurrogate();
+        return buf;
+    }
+
+    void truncate(int size) {
+        count = size;
+        pendingHighSurrogate = 0;
+    }
+
+    void writeInt(int value) {
+        ensureCapacity(4);
+        setInt(count, value);
+        count += 4;
+    }
+
+    void setInt(int index, int value) {
+        buf[index] = (byte) (value >>> 24);
+        buf[index + 1] = (byte) (value >>> 16);
+        buf[index + 2] = (byte) (value >>> 8);
+        buf[index + 3] = (byte) value;
+    }
+
+    void writeBytes(byte[] bytes, int off, int len) {
+        ensureCapacity(len);
+        System.arraycopy(bytes, off, buf, count, len);
+        count += len;
+    }
+
+    private void ensureCapacity(int length) {
+        if (count + length > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + length));
+        }
+    }
+
+    private void flushPendingSurrogate() {
+        if (pendingHighSurrogate != 0) {
+            // an unpaired surrogate is replaced just like String.getBytes does
+            pendingHighSurrogate = 0;
+            ensureCapacity(1);
+            buf[count++] = '?';
+        }
+    }
+
+    @Override
+    public void write(int c) {
+        char ch = (char) c;
+        if (ch < 0x80 && pendingHighSurrogate == 0) {
+            ensureCapacity(1);
+            buf[count++] = (byte) ch;
+        } else {
+            writeChar(ch);
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        ensureCapacity(len);
+        int end = off + len;
+        int i = off;
+        if (pendingHighSurrogate == 0) {
+            // ASCII fast path
+            byte[] buf = this.buf;
+            int count = this.count;
+            while (i < end && cbuf[i] < 0x80) {
+                buf[count++] = (byte) cbuf[i++];
+            }
+            this.count = count;
+        }
+        while (i < end) {
+            writeChar(cbuf[i++]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        ensureCapacity(len);
+        int end = off + len;
+        int i = off;
+        if (pendingHighSurrogate == 0) {
+            // ASCII fast path
+            byte[] buf = this.buf;
+            int count = this.count;
+            char c;
+            while (i < end && (c = str.charAt(i)) < 0x80) {
+                buf[count++] = (byte) c;
+                i++;
+            }
+            this.count = count;
+        }
+        while (i < end) {
+            writeChar(str.charAt(i++));
+        }
+    }
+
+    @Override
+    public Utf8Writer append(CharSequence csq) {
+        String str = String.valueOf(csq);
+        write(str, 0, str.length());
+        return this;
+    }
+
+    @Override
+    public Utf8Writer append(CharSequence csq, int start, int end) {
+        String str = String.valueOf(csq);
+        write(str, start, end - start);
+        return this;
+    }
+
+    @Override
+    public Utf8Writer append(char c) {
+        write(c);
+        return this;
+    }
+
+    private void writeChar(char c) {
+        if (pendingHighSurrogate != 0) {
+            char high = pendingHighSurrogate;
+            pendingHighSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                ensureCapacity(4);
+                buf[count++] = (byte) (0xF0 | (codePoint >> 18));
+                buf[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buf[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (codePoint & 0x3F));
+                return;
+            }
+            ensureCapacity(1);
+            buf[count++] = '?';
+        }
+
+        if (c < 0x80) {
+            ensureCapacity(1);
+            buf[count++] = (byte) c;
+        } else if (c < 0x800) {
+            ensureCapacity(2);
+            buf[count++] = (byte) (0xC0 | (c >> 6));
+            buf[count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            pendingHighSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            ensureCapacity(1);
+            buf[count++] = '?';
+        } else {
+            ensureCapacity(3);
+            buf[count++] = (byte) (0xE0 | (c >> 12));
+            buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buf[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        flushPendingSurrogate();
+    }
+
+}
@@ -2,7 +2,7 @@ package com.deadmandungeons.connect.commons.messenger.messages;
 
 import com.deadmandungeons.connect.commons.messenger.exceptions.InvalidMessageException;
 
-@MessageType("heartbeat")
+@MessageType(value = "heartbeat", binaryId = 2)
 public class HeartbeatMessage extends Message {
 
     private String data;
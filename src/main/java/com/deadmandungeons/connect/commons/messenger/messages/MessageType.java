@@ -11,4 +11,10 @@ public @interface MessageType {
 
     String value();
 
+    /**
+     * The compact id used to identify this Message type in the binary format. Ids must be unique among the registered
+     * Message types, and must not change once in use. The default of 0 means the type name is written instead.
+     */
+    int binaryId() default 0;
+
 }
@@ -0,0 +1,16 @@
+package com.deadmandungeons.connect.commons.messenger.messages;
+
+/**
+ * A {@link Message} type that holds state other than its serialized properties, such as a cached or derived value,
+ * implements this interface to have that state cleared when a pooled instance is released.
+ * The serialized properties of a released instance are reset to their default values before {@link #recycle()} is called.
+ * @see com.deadmandungeons.connect.commons.messenger.Messenger.Builder#pooledDecoding(int)
+ */
+public interface Recyclable {
+
+    /**
+     * Clear any state of this message that is not a serialized property, before this instance is reused
+     */
+    void recycle();
+
+}
@@ -8,7 +8,7 @@ import java.util.UUID;
  * A Message type that is used to update the {@link Status} of the subject identified by {@link #getId()}
  * @author Jon
  */
-@MessageType("status")
+@MessageType(value = "status", binaryId = 1)
 public class StatusMessage extends IdentifiableMessage {
 
     private final Status status;
@@ -0,0 +1,77 @@
+package com.deadmandungeons.connect.commons.messenger.metrics;
+
+/**
+ * An immutable histogram of latencies in nanoseconds with power of two buckets. Bucket 0 counts latencies of 0,
+ * and bucket {@code i} counts latencies of at least {@code 2^(i-1)} and less than {@code 2^i} nanoseconds,
+ * so every recorded latency is known to within a factor of two.
+ */
+public final class LatencyHistogram {
+
+    static final int BUCKETS = 64;
+
+    private final long[] counts;
+    private final long count;
+
+    LatencyHistogram(long[] counts) {
+        this.counts = counts;
+        long count = 0;
+        for (long bucketCount : counts) {
+            count += bucketCount;
+        }
+        this.count = count;
+    }
+
+    static int bucketOf(long nanos) {
+        return (nanos <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    /**
+     * @param bucket the index of the bucket
+     * @return the greatest latency in nanoseconds counted by the given bucket
+     */
+    public static long getUpperBound(int bucket) {
+        return (bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1);
+    }
+
+    /**
+     * @return the number of buckets of this histogram
+     */
+    public int getBucketCount() {
+        return counts.length;
+    }
+
+    /**
+     * @param bucket the index of the bucket
+     * @return the number of latencies counted by the given bucket
+     */
+    public long getCount(int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * @return the total number of latencies in this histogram
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @param percentile the percentile between 0 and 100
+     * @return the upper bound in nanoseconds of the bucket that contains the given percentile, or 0 if this histogram is empty
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank && seen > 0) {
+                return getUpperBound(bucket);
+            }
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.deadmandungeons.connect.commons.messenger.metrics;
+
+import com.deadmandungeons.connect.commons.messenger.exceptions.InvalidMessageException;
+import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
+
+/**
+ * A listener that is notified of the work done by a {@link com.deadmandungeons.connect.commons.messenger.Messenger}
+ * for each {@link com.deadmandungeons.connect.commons.messenger.messages.MessageType}. Every call to serialize or
+ * deserialize is reported once for each Message type it contains. When a call contains more than one Message type,
+ * its bytes and time are attributed to each type in proportion to the number of messages of that type.
+ * <p>Implementations must be thread safe, and should return quickly since they are called on the thread that
+ * serialized or deserialized the messages.</p>
+ * @see StripedMessengerMetrics
+ */
+public interface MessengerMetrics {
+
+    /**
+     * @param messageType the type of the encoded messages
+     * @param messageCount the number of encoded messages of the type
+     * @param bytes the encoded size of the messages, or 0 if it is unknown because the messages were written to an Appendable.
+     * The size of a JSON String is its number of chars.
+     * @param nanos the time spent encoding the messages, including their validation
+     */
+    void messagesEncoded(String messageType, int messageCount, long bytes, long nanos);
+
+    /**
+     * @param messageType the type of the decoded messages
+     * @param messageCount the number of decoded messages of the type
+     * @param bytes the encoded size of the messages, or 0 if it is unknown because the messages were read from a Reader.
+     * The size of a JSON String is its number of chars.
+     * @param nanos the time spent decoding the messages, including their validation
+     */
+    void messagesDecoded(String messageType, int messageCount, long bytes, long nanos);
+
+    /**
+     * @param messageType the type of the message that could not be encoded, or null if it is unknown
+     * @param cause the {@link InvalidMessageException} if a message was invalid, otherwise the cause of the failure
+     */
+    void encodeFailed(String messageType, Exception cause);
+
+    /**
+     * @param messageType the type of the message that could not be decoded, or null if it is unknown
+     * @param cause the {@link InvalidMessageException} if a decoded message was invalid, the {@link MessageParseException}
+     * if the input was malformed, otherwise the cause of the failure
+     */
+    void decodeFailed(String messageType, Exception cause);
+
+}
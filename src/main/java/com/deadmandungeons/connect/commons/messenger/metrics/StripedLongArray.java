@@ -0,0 +1,49 @@
+package com.deadmandungeons.connect.commons.messenger.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An array of counters that are each striped across a number of cells, so that threads which add to the same
+ * counter concurrently mostly update different cells. Each thread always adds to the same stripe, and the stripes
+ * are padded apart so that they do not share a cache line. A sum is not an atomic snapshot of concurrent additions.
+ */
+final class StripedLongArray {
+
+    private static final int STRIPES = Math.min(32, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+    // 64 bytes between stripes
+    private static final int PADDING = 8;
+
+    private final int length;
+    private final int stride;
+    private final AtomicLongArray cells;
+
+    StripedLongArray(int length) {
+        this.length = length;
+        stride = length + PADDING;
+        cells = new AtomicLongArray(STRIPES * stride);
+    }
+
+    int length() {
+        return length;
+    }
+
+    void add(int index, long delta) {
+        cells.getAndAdd(stripe() * stride + index, delta);
+    }
+
+    long sum(int index) {
+        long sum = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            sum += cells.get(stripe * stride + index);
+        }
+        return sum;
+    }
+
+    private static int stripe() {
+        long id = Thread.currentThread().getId();
+        // spread the sequential thread ids
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+}
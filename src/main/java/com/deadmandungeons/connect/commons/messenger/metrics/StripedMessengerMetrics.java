@@ -0,0 +1,206 @@
+package com.deadmandungeons.connect.commons.messenger.metrics;
+
+import com.deadmandungeons.connect.commons.messenger.exceptions.InvalidMessageException;
+import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The default {@link MessengerMetrics} which accumulates the metrics of each Message type in striped counters,
+ * so that recording from many threads at once does not contend on a single counter. A {@link #snapshot()} sums
+ * the counters without blocking the recording threads, so it is not an atomic view of concurrent recordings.
+ * <p>Failures of an unknown Message type, such as input that could not be parsed, are recorded under
+ * {@link #UNKNOWN_TYPE}.</p>
+ */
+public class StripedMessengerMetrics implements MessengerMetrics {
+
+    /**
+     * The type that failures are recorded under when the Message type is unknown.
+     * It is empty, so it never equals the type of a Message.
+     */
+    public static final String UNKNOWN_TYPE = "";
+
+    private static final int ENCODED_MESSAGES = 0;
+    private static final int ENCODED_BYTES = 1;
+    private static final int DECODED_MESSAGES = 2;
+    private static final int DECODED_BYTES = 3;
+    private static final int INVALID_ENCODES = 4;
+    private static final int INVALID_DECODES = 5;
+    private static final int PARSE_FAILURES = 6;
+    private static final int OTHER_FAILURES = 7;
+    private static final int ENCODE_LATENCY = 8;
+    private static final int DECODE_LATENCY = ENCODE_LATENCY + LatencyHistogram.BUCKETS;
+    private static final int LENGTH = DECODE_LATENCY + LatencyHistogram.BUCKETS;
+
+    private final ConcurrentMap<String, StripedLongArray> types = new ConcurrentHashMap<>();
+
+    @Override
+    public void messagesEncoded(String messageType, int messageCount, long bytes, long nanos) {
+        StripedLongArray counters = getCounters(messageType);
+        counters.add(ENCODED_MESSAGES, messageCount);
+        counters.add(ENCODED_BYTES, bytes);
+        counters.add(ENCODE_LATENCY + LatencyHistogram.bucketOf(nanos / Math.max(1, messageCount)), messageCount);
+    }
+
+    @Override
+    public void messagesDecoded(String messageType, int messageCount, long bytes, long nanos) {
+        StripedLongArray counters = getCounters(messageType);
+        counters.add(DECODED_MESSAGES, messageCount);
+        counters.add(DECODED_BYTES, bytes);
+        counters.add(DECODE_LATENCY + LatencyHistogram.bucketOf(nanos / Math.max(1, messageCount)), messageCount);
+    }
+
+    @Override
+    public void encodeFailed(String messageType, Exception cause) {
+        getCounters(messageType).add(cause instanceof InvalidMessageException ? INVALID_ENCODES : OTHER_FAILURES, 1);
+    }
+
+    @Override
+    public void decodeFailed(String messageType, Exception cause) {
+        int index;
+        if (cause instanceof InvalidMessageException) {
+            index = INVALID_DECODES;
+        } else if (cause instanceof MessageParseException) {
+            index = PARSE_FAILURES;
+        } else {
+            index = OTHER_FAILURES;
+        }
+        getCounters(messageType).add(index, 1);
+    }
+
+    /**
+     * @return the current metrics of every Message type that has been recorded, keyed by type
+     */
+    public Map<String, TypeMetrics> snapshot() {
+        ImmutableMap.Builder<String, TypeMetrics> snapshot = ImmutableMap.builder();
+        for (Map.Entry<String, StripedLongArray> entry : types.entrySet()) {
+            snapshot.put(entry.getKey(), new TypeMetrics(entry.getValue()));
+        }
+        return snapshot.build();
+    }
+
+    /**
+     * @param messageType the Message type to get the metrics of
+     * @return the current metrics of the given Message type, or null if none have been recorded
+     */
+    public TypeMetrics snapshot(String messageType) {
+        StripedLongArray counters = types.get(messageType);
+        return (counters != null ? new TypeMetrics(counters) : null);
+    }
+
+    private StripedLongArray getCounters(String messageType) {
+        if (messageType == null) {
+            messageType = UNKNOWN_TYPE;
+        }
+        StripedLongArray counters = types.get(messageType);
+        if (counters == null) {
+            counters = new StripedLongArray(LENGTH);
+            StripedLongArray existing = types.putIfAbsent(messageType, counters);
+            if (existing != null) {
+                counters = existing;
+            }
+        }
+        return counters;
+    }
+
+
+    /**
+     * An immutable snapshot of the metrics of a single Message type
+     */
+    public static final class TypeMetrics {
+
+        private final long[] values;
+        private final LatencyHistogram encodeLatency;
+        private final LatencyHistogram decodeLatency;
+
+        private TypeMetrics(StripedLongArray counters) {
+            values = new long[counters.length()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = counters.sum(i);
+            }
+            encodeLatency = new LatencyHistogram(copyOfRange(values, ENCODE_LATENCY));
+            decodeLatency = new LatencyHistogram(copyOfRange(values, DECODE_LATENCY));
+        }
+
+        private static long[] copyOfRange(long[] values, int start) {
+            long[] range = new long[LatencyHistogram.BUCKETS];
+            System.arraycopy(values, start, range, 0, range.length);
+            return range;
+        }
+
+        /**
+         * @return the number of encoded messages
+         */
+        public long getEncodedMessages() {
+            return values[ENCODED_MESSAGES];
+        }
+
+        /**
+         * @return the total encoded size of the encoded messages, where it is known
+         */
+        public long getEncodedBytes() {
+            return values[ENCODED_BYTES];
+        }
+
+        /**
+         * @return the histogram of the time spent encoding each message
+         */
+        public LatencyHistogram getEncodeLatency() {
+            return encodeLatency;
+        }
+
+        /**
+         * @return the number of decoded messages
+         */
+        public long getDecodedMessages() {
+            return values[DECODED_MESSAGES];
+        }
+
+        /**
+         * @return the total encoded size of the decoded messages, where it is known
+         */
+        public long getDecodedBytes() {
+            return values[DECODED_BYTES];
+        }
+
+        /**
+         * @return the histogram of the time spent decoding each message
+         */
+        public LatencyHistogram getDecodeLatency() {
+            return decodeLatency;
+        }
+
+        /**
+         * @return the number of messages that could not be encoded because they were invalid
+         */
+        public long getInvalidEncodes() {
+            return values[INVALID_ENCODES];
+        }
+
+        /**
+         * @return the number of decoded messages that were invalid
+         */
+        public long getInvalidDecodes() {
+            return values[INVALID_DECODES];
+        }
+
+        /**
+         * @return the number of inputs that could not be decoded because they were malformed
+         */
+        public long getParseFailures() {
+            return values[PARSE_FAILURES];
+        }
+
+        /**
+         * @return the number of failures for any other cause, such as an I/O error
+         */
+        public long getOtherFailures() {
+            return values[OTHER_FAILURES];
+        }
+
+    }
+
+}
@@ -0,0 +1,564 @@
+package com.deadmandungeons.connect.commons.messenger.serializers;
+
+import com.deadmandungeons.connect.commons.messenger.codecs.EnumCodec;
+import com.deadmandungeons.connect.commons.messenger.codecs.MessageCodec;
+import com.deadmandungeons.connect.commons.messenger.codecs.MessageReader;
+import com.deadmandungeons.connect.commons.messenger.codecs.MessageWriter;
+import com.deadmandungeons.connect.commons.messenger.codecs.ReflectiveMessageCodec;
+import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.deadmandungeons.connect.commons.messenger.messages.MessageType;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compact binary alternative to the JSON serializers. Messages are written with the same {@link MessageCodec}s
+ * as JSON, but the Message type is written as its {@link MessageType#binaryId()}, and each property is identified by
+ * its index in {@link MessageCodec#getFieldNames()}. Both ends must therefore share the same Message type definitions.
+ * <pre>
+ * payload := MAGIC VERSION varint(count) message{count}
+ * message := varint(binaryId) [string(type) if binaryId is 0] field* 0x00
+ * field   := varint((fieldIndex + 1) &lt;&lt; 3 | wireType) value
+ * </pre>
+ * Wire types are {@link #WIRE_VARINT} for booleans, zigzag encoded integers and enum ordinals,
+ * {@link #WIRE_FIXED64} for doubles, {@link #WIRE_BYTES} for length prefixed UTF-8 strings,
+ * {@link #WIRE_FIXED32} for floats, and {@link #WIRE_UUID} for UUIDs as two big-endian longs.
+ * Null properties are omitted, and properties with an unknown index are skipped using their wire type.
+ * Properties that have no dedicated {@link MessageWriter} method are not supported.
+ */
+public class BinaryMessageSerializer {
+
+    /**
+     * The leading byte of every binary payload. This can never be the leading byte of UTF-8 encoded JSON.
+     */
+    public static final byte MAGIC = (byte) 0xC1;
+    public static final byte VERSION = 1;
+
+    static final int WIRE_VARINT = 0;
+    static final int WIRE_FIXED64 = 1;
+    static final int WIRE_BYTES = 2;
+    static final int WIRE_FIXED32 = 5;
+    static final int WIRE_UUID = 6;
+
+    private final Map<String, Schema<?>> schemasByType = new ConcurrentHashMap<>();
+    private final Map<Integer, Schema<?>> schemasById = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Schema<?>> schemasByClass = new ConcurrentHashMap<>();
+
+    /**
+     * @param payload the raw payload to check
+     * @return true if the given payload starts with the binary {@link #MAGIC} byte
+     */
+    public static boolean isBinary(byte[] payload) {
+        return payload.length > 0 && payload[0] == MAGIC;
+    }
+
+    /**
+     * @param payload the raw payload to check. The position of the buffer is not changed.
+     * @return true if the given payload starts with the binary {@link #MAGIC} byte
+     */
+    public static boolean isBinary(ByteBuffer payload) {
+        return payload.hasRemaining() && payload.get(payload.position()) == MAGIC;
+    }
+
+    /**
+     * @param messageType the name of the Message type
+     * @param messageClass the Message type class token
+     * @param messageCodec the codec for the Message type
+     * @throws IllegalStateException if the type name or binary id is already registered to a different Message type
+     */
+    public <T extends Message> void registerMessageType(String messageType, Class<T> messageClass, MessageCodec<T> messageCodec) {
+        MessageType annotation = messageClass.getAnnotation(MessageType.class);
+        int binaryId = (annotation != null ? annotation.binaryId() : 0);
+        if (binaryId < 0) {
+            throw new IllegalArgumentException("The binaryId of Message type '" + messageType + "' cannot be negative");
+        }
+
+        String typeName = normalizeType(messageType);
+        Schema<?> existing = schemasByType.get(typeName);
+        if (existing != null && existing.messageClass != messageClass) {
+            throw new IllegalStateException("A Message type named '" + messageType + "' has already been registered");
+        }
+        existing = (binaryId != 0 ? schemasById.get(binaryId) : null);
+        if (existing != null && existing.messageClass != messageClass) {
+            throw new IllegalStateException("A Message type with binaryId " + binaryId + " has already been registered");
+        }
+
+        Schema<T> schema = new Schema<>(messageClass, typeName, binaryId, messageCodec);
+        schemasByClass.put(messageClass, schema);
+        schemasByType.put(typeName, schema);
+        if (binaryId != 0) {
+            schemasById.put(binaryId, schema);
+        }
+    }
+
+    /**
+     * @param messages the messages to serialize
+     * @return the binary payload of the given messages
+     * @throws IOException if any message has a property that is not supported by the binary format
+     */
+    public byte[] toBinary(Message[] messages) throws IOException {
+        BinaryMessageWriter writer = new BinaryMessageWriter(64 + messages.length * 32);
+        writer.writeByte(MAGIC);
+        writer.writeByte(VERSION);
+        writer.writeVarint(messages.length);
+        for (Message message : messages) {
+            writeMessage(writer, message, getSchema(message.getClass()));
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * @param payload the binary payload to deserialize. The buffer position is advanced to the end of the payload.
+     * @return an Array of the deserialized Message objects
+     * @throws MessageParseException if the payload is not a valid binary representation of the registered Message types
+     */
+    public Message[] fromBinary(ByteBuffer payload) throws MessageParseException {
+        try {
+            if (payload.get() != MAGIC) {
+                throw new MessageParseException("Payload is not in the binary format");
+            }
+            byte version = payload.get();
+            if (version != VERSION) {
+                throw new MessageParseException("Unsupported binary format version " + version);
+            }
+            int count = (int) readVarint(payload);
+            // every message is at least 2 bytes
+            if (count <= 0 || count > payload.remaining() / 2) {
+                throw new MessageParseException("Invalid message count " + count);
+            }
+
+            BinaryMessageReader reader = new BinaryMessageReader(payload);
+            Message[] messages = new Message[count];
+            for (int i = 0; i < count; i++) {
+                messages[i] = readMessage(reader);
+            }
+            if (payload.hasRemaining()) {
+                throw new MessageParseException("Unexpected data after the last message");
+            }
+            return messages;
+        } catch (BufferUnderflowException e) {
+            throw new MessageParseException("Unexpected end of binary payload");
+        } catch (IOException | RuntimeException e) {
+            // a corrupt payload must never surface as an unchecked exception
+            throw new MessageParseException(e);
+        }
+    }
+
+    private <T extends Message> void writeMessage(BinaryMessageWriter writer, Message message, Schema<T> schema) throws IOException {
+        writer.writeVarint(schema.binaryId);
+        if (schema.binaryId == 0) {
+            writer.writeUtf8(schema.typeName);
+        }
+        writer.schema = schema;
+        @SuppressWarnings("unchecked")
+        T typedMessage = (T) message;
+        schema.codec.write(typedMessage, writer);
+        writer.writeByte((byte) 0);
+    }
+
+    private Message readMessage(BinaryMessageReader reader) throws IOException {
+        ByteBuffer in = reader.in;
+        int binaryId = (int) readVarint(in);
+        Schema<?> schema;
+        if (binaryId != 0) {
+            schema = schemasById.get(binaryId);
+            if (schema == null) {
+                throw new IOException("Cannot deserialize binary Message of unknown binaryId " + binaryId);
+            }
+        } else {
+            String messageType = readUtf8(in);
+            schema = schemasByType.get(normalizeType(messageType));
+            if (schema == null) {
+                throw new IOException("Cannot deserialize binary Message of unknown type '" + messageType + "'");
+            }
+        }
+        reader.begin(schema);
+        return schema.codec.read(reader);
+    }
+
+    // Messages of a type that has not been registered can still be serialized
+    private <T extends Message> Schema<T> getSchema(Class<T> messageClass) {
+        @SuppressWarnings("unchecked")
+        Schema<T> schema = (Schema<T>) schemasByClass.get(messageClass);
+        if (schema == null) {
+            MessageType annotation = messageClass.getAnnotation(MessageType.class);
+            int binaryId = (annotation != null ? annotation.binaryId() : 0);
+            String typeName = normalizeType(Message.getType(messageClass));
+            schema = new Schema<>(messageClass, typeName, binaryId, new ReflectiveMessageCodec<>(messageClass, null));
+            schemasByClass.put(messageClass, schema);
+        }
+        return schema;
+    }
+
+    // type names are matched the same way on the write and read paths, independent of the default locale
+    private static String normalizeType(String messageType) {
+        return messageType.trim().toLowerCase(Locale.ROOT);
+    }
+
+
+    static long readVarint(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static String readUtf8(ByteBuffer in) throws IOException {
+        int length = (int) readVarint(in);
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("Invalid string length " + length);
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+
+    private static class Schema<T extends Message> {
+
+        private final Class<T> messageClass;
+        private final String typeName;
+        private final int binaryId;
+        private final MessageCodec<T> codec;
+        private final String[] fieldNames;
+        private final Map<String, Integer> fieldIndexes = new HashMap<>();
+
+        private Schema(Class<T> messageClass, String typeName, int binaryId, MessageCodec<T> codec) {
+            this.messageClass = messageClass;
+            this.typeName = typeName;
+            this.binaryId = binaryId;
+            this.codec = codec;
+
+            List<String> names = codec.getFieldNames();
+            fieldNames = names.toArray(new String[names.size()]);
+            for (int i = 0; i < fieldNames.length; i++) {
+                fieldIndexes.put(fieldNames[i], i);
+            }
+        }
+
+    }
+
+    private static class BinaryMessageReader implements MessageReader {
+
+        private final ByteBuffer in;
+        private Schema<?> schema;
+        private int tag = -1;
+
+        private BinaryMessageReader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        private void begin(Schema<?> schema) {
+            this.schema = schema;
+            tag = -1;
+        }
+
+        @Override
+        public boolean hasNextField() throws IOException {
+            if (tag < 0) {
+                long value = readVarint(in);
+                if (value < 0 || value > Integer.MAX_VALUE) {
+                    throw new IOException("Invalid field tag " + value);
+                }
+                tag = (int) value;
+            }
+            if (tag == 0) {
+                // end of message
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String nextFieldName() throws IOException {
+            if (!hasNextField()) {
+                throw new IOException("No more fields in the current message");
+            }
+            int index = (tag >>> 3) - 1;
+            if (index < 0) {
+                throw new IOException("Invalid field tag " + tag);
+            }
+            // unknown fields must be skipped by the codec
+            return (index < schema.fieldNames.length ? schema.fieldNames[index] : "");
+        }
+
+        @Override
+        public boolean readNull() throws IOException {
+            // null properties are omitted
+            return false;
+        }
+
+        private int consumeTag(int expectedWireType) throws IOException {
+            int wireType = tag & 0x7;
+            if (tag <= 0 || wireType != expectedWireType) {
+                throw new IOException("Unexpected wire type " + wireType + " for field " + nextFieldName());
+            }
+            tag = -1;
+            return wireType;
+        }
+
+        @Override
+        public String readString() throws IOException {
+            consumeTag(WIRE_BYTES);
+            return readUtf8(in);
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            consumeTag(WIRE_VARINT);
+            return readVarint(in) != 0;
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            long value = readLong();
+            if ((int) value != value) {
+                throw new IOException("Value " + value + " is out of the range of an int");
+            }
+            return (int) value;
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            consumeTag(WIRE_VARINT);
+            long value = readVarint(in);
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        @Override
+        public float readFloat() throws IOException {
+            consumeTag(WIRE_FIXED32);
+            return in.getFloat();
+        }
+
+        @Override
+        public double readDouble() throws IOException {
+            consumeTag(WIRE_FIXED64);
+            return in.getDouble();
+        }
+
+        @Override
+        public UUID readUuid() throws IOException {
+            consumeTag(WIRE_UUID);
+            return new UUID(in.getLong(), in.getLong());
+        }
+
+        @Override
+        public <E extends Enum<E>> E readEnum(EnumCodec<E> codec) throws IOException {
+            consumeTag(WIRE_VARINT);
+            return codec.valueOf((int) readVarint(in));
+        }
+
+        @Override
+        public Object readValue(Type type) throws IOException {
+            throw new IOException("The binary format does not support values of type " + type);
+        }
+
+        @Override
+        public void skipValue() throws IOException {
+            int wireType = tag & 0x7;
+            tag = -1;
+            switch (wireType) {
+                case WIRE_VARINT:
+                    readVarint(in);
+                    break;
+                case WIRE_FIXED64:
+                    in.position(in.position() + 8);
+                    break;
+                case WIRE_BYTES:
+                    int length = (int) readVarint(in);
+                    if (length < 0 || length > in.remaining()) {
+                        throw new IOException("Invalid field length " + length);
+                    }
+                    in.position(in.position() + length);
+                    break;
+                case WIRE_FIXED32:
+                    in.position(in.position() + 4);
+                    break;
+                case WIRE_UUID:
+                    in.position(in.position() + 16);
+                    break;
+                default:
+                    throw new IOException("Unknown wire type " + wireType);
+            }
+        }
+
+    }
+
+    private static class BinaryMessageWriter implements MessageWriter {
+
+        private byte[] buf;
+        private int pos;
+        private Schema<?> schema;
+        private int fieldIndex;
+
+        private BinaryMessageWriter(int initialCapacity) {
+            buf = new byte[initialCapacity];
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+        private void ensureCapacity(int length) {
+            if (pos + length > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + length));
+            }
+        }
+
+        private void writeByte(byte value) {
+            ensureCapacity(1);
+            buf[pos++] = value;
+        }
+
+        private void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        private void writeFixed64(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[pos++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeFixed32(int value) {
+            ensureCapacity(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buf[pos++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeUtf8(String value) {
+            int length = value.length();
+            int utf8Length = 0;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    utf8Length++;
+                } else if (c < 0x800) {
+                    utf8Length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    utf8Length += 4;
+                    i++;
+                } else {
+                    utf8Length += 3;
+                }
+            }
+
+            writeVarint(utf8Length);
+            ensureCapacity(utf8Length);
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    buf[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    buf[pos++] = (byte) (0xC0 | (c >> 6));
+                    buf[pos++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    buf[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                    buf[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    // unpaired surrogates are encoded as is, consistent with the length computed above
+                    buf[pos++] = (byte) (0xE0 | (c >> 12));
+                    buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        private void writeTag(int wireType) {
+            writeVarint((fieldIndex + 1) << 3 | wireType);
+        }
+
+        @Override
+        public void writeName(String name) throws IOException {
+            Integer index = schema.fieldIndexes.get(name);
+            if (index == null) {
+                throw new IOException("Field " + name + " is not one of the field names of Message type '" + schema.typeName + "'");
+            }
+            fieldIndex = index;
+        }
+
+        @Override
+        public void writeString(String value) throws IOException {
+            writeTag(WIRE_BYTES);
+            writeUtf8(value);
+        }
+
+        @Override
+        public void writeBoolean(boolean value) throws IOException {
+            writeTag(WIRE_VARINT);
+            writeVarint(value ? 1 : 0);
+        }
+
+        @Override
+        public void writeLong(long value) throws IOException {
+            writeTag(WIRE_VARINT);
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        @Override
+        public void writeFloat(float value) throws IOException {
+            writeTag(WIRE_FIXED32);
+            writeFixed32(Float.floatToIntBits(value));
+        }
+
+        @Override
+        public void writeDouble(double value) throws IOException {
+            writeTag(WIRE_FIXED64);
+            writeFixed64(Double.doubleToLongBits(value));
+        }
+
+        @Override
+        public void writeUuid(UUID value) throws IOException {
+            writeTag(WIRE_UUID);
+            writeFixed64(value.getMostSignificantBits());
+            writeFixed64(value.getLeastSignificantBits());
+        }
+
+        @Override
+        public <E extends Enum<E>> void writeEnum(EnumCodec<E> codec, E value) throws IOException {
+            writeTag(WIRE_VARINT);
+            writeVarint(value.ordinal());
+        }
+
+        @Override
+        public void writeValue(Type type, Object value) throws IOException {
+            throw new IOException("The binary format does not support values of type " + type);
+        }
+
+    }
+
+}
@@ -1,48 +1,56 @@
 package com.deadmandungeons.connect.commons.messenger.serializers;
 
+import com.deadmandungeons.connect.commons.ConnectUtils;
+import com.deadmandungeons.connect.commons.messenger.MessageCursor;
+import com.deadmandungeons.connect.commons.messenger.codecs.EnumCodec;
+import com.deadmandungeons.connect.commons.messenger.codecs.MessageCodec;
+import com.deadmandungeons.connect.commons.messenger.codecs.MessageReader;
+import com.deadmandungeons.connect.commons.messenger.codecs.MessageWriter;
+import com.deadmandungeons.connect.commons.messenger.codecs.ReflectiveMessageCodec;
 import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
 import com.deadmandungeons.connect.commons.messenger.messages.Message;
 import com.google.common.base.Supplier;
 import org.bukkit.craftbukkit.libs.com.google.gson.Gson;
 import org.bukkit.craftbukkit.libs.com.google.gson.GsonBuilder;
-import org.bukkit.craftbukkit.libs.com.google.gson.InstanceCreator;
-import org.bukkit.craftbukkit.libs.com.google.gson.JsonDeserializationContext;
-import org.bukkit.craftbukkit.libs.com.google.gson.JsonDeserializer;
 import org.bukkit.craftbukkit.libs.com.google.gson.JsonElement;
+import org.bukkit.craftbukkit.libs.com.google.gson.JsonIOException;
+import org.bukkit.craftbukkit.libs.com.google.gson.JsonObject;
 import org.bukkit.craftbukkit.libs.com.google.gson.JsonParseException;
-import org.bukkit.craftbukkit.libs.com.google.gson.JsonSerializationContext;
-import org.bukkit.craftbukkit.libs.com.google.gson.JsonSerializer;
+import org.bukkit.craftbukkit.libs.com.google.gson.JsonParser;
+import org.bukkit.craftbukkit.libs.com.google.gson.JsonSyntaxException;
 import org.bukkit.craftbukkit.libs.com.google.gson.TypeAdapter;
 import org.bukkit.craftbukkit.libs.com.google.gson.TypeAdapterFactory;
 import org.bukkit.craftbukkit.libs.com.google.gson.reflect.TypeToken;
 import org.bukkit.craftbukkit.libs.com.google.gson.stream.JsonReader;
 import org.bukkit.craftbukkit.libs.com.google.gson.stream.JsonToken;
 import org.bukkit.craftbukkit.libs.com.google.gson.stream.JsonWriter;
+import org.bukkit.craftbukkit.libs.com.google.gson.stream.MalformedJsonException;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.Reader;
 import java.lang.reflect.Type;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
 
 public class CraftbukkitGsonMessageSerializer extends MessageSerializer {
 
-    private final GsonBuilder builder = new GsonBuilder();
-    private volatile Gson gson;
+    private final Gson gson;
 
     public CraftbukkitGsonMessageSerializer() {
-        builder.registerTypeAdapter(Message.class, new MessageDeserializer());
-        builder.registerTypeAdapterFactory(new EnumTypeAdapterFactory());
+        // Message types are resolved by the MessageTypeAdapterFactory when needed,
+        // so there is no need to rebuild the Gson instance for every registered type
+        gson = new GsonBuilder()
+                .registerTypeAdapterFactory(new MessageTypeAdapterFactory())
+                .registerTypeAdapterFactory(new EnumTypeAdapterFactory())
+                .create();
     }
 
     @Override
-    public <T extends Message> void registerMessageType(String messageType, Class<T> messageClass, final Supplier<T> messageSupplier) {
-        addNewMessageType(messageType, messageClass);
-        builder.registerTypeAdapter(messageClass, new InstanceCreator<T>() {
-            @Override
-            public T createInstance(Type type) {
-                return messageSupplier.get();
-            }
-        });
-        gson = builder.create();
+    public <T extends Message> void registerMessageType(String messageType, Class<T> messageClass, Supplier<T> messageSupplier) {
+        addNewMessageType(messageType, messageClass, new ReflectiveMessageCodec<>(messageClass, messageSupplier));
     }
 
     @Override
@@ -50,6 +58,15 @@ public class CraftbukkitGsonMessageSerializer extends MessageSerializer {
         return gson.toJson(messages);
     }
 
+    @Override
+    public void toJson(Message[] messages, Appendable out) throws IOException {
+        try {
+            gson.toJson(messages, out);
+        } catch (JsonIOException e) {
+            throw (e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e));
+        }
+    }
+
     @Override
     public <T> T fromJson(String json, Class<T> messageType) throws MessageParseException {
         try {
@@ -59,57 +76,404 @@ public class CraftbukkitGsonMessageSerializer extends MessageSerializer {
         }
     }
 
-    private class MessageDeserializer implements JsonDeserializer<Message>, JsonSerializer<Message> {
+    @Override
+    public MessageCursor openCursor(Reader json) {
+        return new GsonMessageCursor(json);
+    }
+
+    private class MessageTypeAdapterFactory implements TypeAdapterFactory {
 
         @Override
-        public Message deserialize(JsonElement json, Type type, JsonDeserializationContext context) throws JsonParseException {
-            JsonElement messageTypeElem = json.getAsJsonObject().get("type");
-            String messageType = (messageTypeElem != null ? messageTypeElem.getAsString() : null);
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (!Message.class.isAssignableFrom(type.getRawType())) {
+                return null;
+            }
+            @SuppressWarnings("unchecked")
+            TypeAdapter<T> adapter = (TypeAdapter<T>) new MessageTypeAdapter(gson, type.getRawType());
+            return adapter;
+        }
+
+    }
 
-            return context.deserialize(json, getExistingMessageType(messageType));
+    // Streams a Message in a single pass by dispatching to the MessageCodec of the Message type
+    // as soon as the 'type' property has been read. Any properties preceding the 'type' property
+    // are buffered until the type is known. Messages are always written with the 'type' property first.
+    private class MessageTypeAdapter extends TypeAdapter<Message> {
+
+        private final Gson gson;
+        private final Class<?> requestedType;
+        private final JsonParser parser = new JsonParser();
+
+        private MessageTypeAdapter(Gson gson, Class<?> requestedType) {
+            this.gson = gson;
+            this.requestedType = requestedType;
         }
 
-        // This serializer is also required due to a strange gson bug where Message subclass properties wont be serialized
-        // if a deserializer for the base class (Message) is present and the subclass is represented as the base class
         @Override
-        public JsonElement serialize(Message message, Type type, JsonSerializationContext context) {
-            return context.serialize(message, message.getClass());
+        public void write(JsonWriter out, Message message) throws IOException {
+            if (message == null) {
+                out.nullValue();
+                return;
+            }
+            write(out, message, getMessageCodec(message.getClass()));
         }
 
-    }
-
-    // Ignore case of enum constants
-    private class EnumTypeAdapterFactory implements TypeAdapterFactory {
+        private <T extends Message> void write(JsonWriter out, Message message, MessageCodec<T> codec) throws IOException {
+            out.beginObject();
+            out.name(TYPE_PROPERTY).value(message.getType());
+            @SuppressWarnings("unchecked")
+            T typedMessage = (T) message;
+            codec.write(typedMessage, new GsonMessageWriter(gson, out, isCompactUuids()));
+            out.endObject();
+        }
 
         @Override
-        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
-            final Map<String, T> enumConstants = getEnumConstants(type.getRawType());
-            if (enumConstants.isEmpty()) {
+        public Message read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
                 return null;
             }
-            // Backwards compatibility hack
-            final boolean writeLower = type.getRawType().getSimpleName().equals("Status");
 
-            return new TypeAdapter<T>() {
-                @Override
-                public void write(JsonWriter out, T value) throws IOException {
-                    if (value == null) {
-                        out.nullValue();
+            in.beginObject();
+            JsonObject buffered = null;
+            String messageType = null;
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (name.equals(TYPE_PROPERTY)) {
+                    if (in.peek() != JsonToken.NULL) {
+                        messageType = in.nextString();
                     } else {
-                        String enumName = ((Enum<?>) value).name();
-                        out.value(writeLower ? enumName.toLowerCase() : enumName);
+                        in.nextNull();
                     }
+                    break;
+                }
+                if (buffered == null) {
+                    buffered = new JsonObject();
                 }
+                buffered.add(name, parser.parse(in));
+            }
 
-                @Override
-                public T read(JsonReader in) throws IOException {
-                    if (in.peek() == JsonToken.NULL) {
-                        in.nextNull();
-                        return null;
+            Class<? extends Message> messageClass;
+            try {
+                messageClass = getExistingMessageType(messageType);
+            } catch (IllegalArgumentException e) {
+                throw new JsonParseException(e.getMessage());
+            }
+            if (!requestedType.isAssignableFrom(messageClass)) {
+                throw new JsonParseException("Expected a Message of type " + requestedType.getName() + " but was '" + messageType + "'");
+            }
+
+            GsonMessageReader reader = new GsonMessageReader(gson, in, buffered);
+            Message message = getMessageCodec(messageClass).read(reader);
+            in.endObject();
+            return message;
+        }
+
+    }
+
+    private class GsonMessageCursor implements MessageCursor {
+
+        private final JsonReader in;
+        private final TypeAdapter<Message> adapter = gson.getAdapter(Message.class);
+        private CursorState state = CursorState.START;
+
+        private GsonMessageCursor(Reader json) {
+            in = new JsonReader(json);
+            // consistent with Gson#fromJson
+            in.setLenient(true);
+        }
+
+        @Override
+        public boolean hasNext() throws IOException, MessageParseException {
+            try {
+                if (state == CursorState.START) {
+                    if (in.peek() == JsonToken.BEGIN_ARRAY) {
+                        in.beginArray();
+                        if (!in.hasNext()) {
+                            throw new MessageParseException("Empty json array with no message to parse");
+                        }
+                        state = CursorState.ARRAY;
+                    } else {
+                        state = CursorState.SINGLE;
+                    }
+                    return true;
+                }
+                if (state == CursorState.ARRAY) {
+                    if (in.hasNext()) {
+                        return true;
+                    }
+                    in.endArray();
+                    state = CursorState.END;
+                }
+                if (state == CursorState.END) {
+                    if (in.peek() != JsonToken.END_DOCUMENT) {
+                        throw new MessageParseException("Unexpected json after the last message");
                     }
-                    return enumConstants.get(in.nextString().toUpperCase());
+                    state = CursorState.DONE;
                 }
-            };
+                return state == CursorState.SINGLE;
+            } catch (MalformedJsonException | EOFException | IllegalStateException e) {
+                throw new MessageParseException(e);
+            }
+        }
+
+        @Override
+        public Message next() throws IOException, MessageParseException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                Message message = adapter.read(in);
+                if (message == null) {
+                    throw new MessageParseException("Unexpected null message");
+                }
+                if (state == CursorState.SINGLE) {
+                    state = CursorState.END;
+                }
+                return message;
+            } catch (MalformedJsonException | EOFException | IllegalStateException | JsonParseException e) {
+                throw new MessageParseException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+    }
+
+    private enum CursorState {
+        START,
+        SINGLE,
+        ARRAY,
+        END,
+        DONE
+    }
+
+    private static class GsonMessageReader implements MessageReader {
+
+        private final Gson gson;
+        private final JsonReader in;
+        private final Iterator<Map.Entry<String, JsonElement>> buffered;
+        // the value of the current field if it was buffered, or null if it is read from the stream
+        private JsonElement current;
+
+        private GsonMessageReader(Gson gson, JsonReader in, JsonObject buffered) {
+            this.gson = gson;
+            this.in = in;
+            this.buffered = (buffered != null ? buffered.entrySet().iterator() : null);
+        }
+
+        @Override
+        public boolean hasNextField() throws IOException {
+            return (buffered != null && buffered.hasNext()) || in.hasNext();
+        }
+
+        @Override
+        public String nextFieldName() throws IOException {
+            if (buffered != null && buffered.hasNext()) {
+                Map.Entry<String, JsonElement> field = buffered.next();
+                current = field.getValue();
+                return field.getKey();
+            }
+            current = null;
+            return in.nextName();
+        }
+
+        @Override
+        public boolean readNull() throws IOException {
+            if (current != null) {
+                return current.isJsonNull();
+            }
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public String readString() throws IOException {
+            return (current != null ? readBuffered(String.class) : in.nextString());
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            return (current != null ? readBuffered(Boolean.class) : in.nextBoolean());
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            return (current != null ? readBuffered(Integer.class) : in.nextInt());
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            return (current != null ? readBuffered(Long.class) : in.nextLong());
+        }
+
+        @Override
+        public float readFloat() throws IOException {
+            return (float) readDouble();
+        }
+
+        @Override
+        public double readDouble() throws IOException {
+            return (current != null ? readBuffered(Double.class) : in.nextDouble());
+        }
+
+        @Override
+        public UUID readUuid() throws IOException {
+            try {
+                String value = readString();
+                UUID uuid = ConnectUtils.parseId(value);
+                if (uuid == null) {
+                    throw new IllegalArgumentException("Invalid UUID string: " + value);
+                }
+                return uuid;
+            } catch (IllegalArgumentException e) {
+                throw new JsonSyntaxException(e);
+            }
+        }
+
+        @Override
+        public <E extends Enum<E>> E readEnum(EnumCodec<E> codec) throws IOException {
+            return codec.valueOf(readString());
+        }
+
+        @Override
+        public Object readValue(Type type) throws IOException {
+            if (current != null) {
+                return gson.fromJson(current, type);
+            }
+            return gson.getAdapter(TypeToken.get(type)).read(in);
+        }
+
+        @Override
+        public void skipValue() throws IOException {
+            if (current == null) {
+                in.skipValue();
+            }
+        }
+
+        // converted by the same type adapters that read the streamed values
+        private <T> T readBuffered(Class<T> type) {
+            T value = gson.fromJson(current, type);
+            if (value == null) {
+                throw new JsonSyntaxException("Expected a " + type.getSimpleName() + " but was null");
+            }
+            return value;
+        }
+
+    }
+
+    private static class GsonMessageWriter implements MessageWriter {
+
+        private final Gson gson;
+        private final JsonWriter out;
+        private final boolean compactUuids;
+
+        private GsonMessageWriter(Gson gson, JsonWriter out, boolean compactUuids) {
+            this.gson = gson;
+            this.out = out;
+            this.compactUuids = compactUuids;
+        }
+
+        @Override
+        public void writeName(String name) throws IOException {
+            out.name(name);
+        }
+
+        @Override
+        public void writeString(String value) throws IOException {
+            out.value(value);
+        }
+
+        @Override
+        public void writeBoolean(boolean value) throws IOException {
+            out.value(value);
+        }
+
+        @Override
+        public void writeLong(long value) throws IOException {
+            out.value(value);
+        }
+
+        @Override
+        public void writeFloat(float value) throws IOException {
+            out.value(Float.valueOf(value));
+        }
+
+        @Override
+        public void writeDouble(double value) throws IOException {
+            out.value(value);
+        }
+
+        @Override
+        public void writeUuid(UUID value) throws IOException {
+            out.value(compactUuids ? ConnectUtils.encodeUuidBase64(value) : value.toString());
+        }
+
+        @Override
+        public <E extends Enum<E>> void writeEnum(EnumCodec<E> codec, E value) throws IOException {
+            out.value(codec.nameOf(value));
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public void writeValue(Type type, Object value) throws IOException {
+            TypeAdapter adapter = gson.getAdapter(TypeToken.get(type));
+            adapter.write(out, value);
+        }
+
+    }
+
+    // Ignore case of enum constants
+    private class EnumTypeAdapterFactory implements TypeAdapterFactory {
+
+        @Override
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (!type.getRawType().isEnum()) {
+                return null;
+            }
+            @SuppressWarnings("unchecked")
+            TypeAdapter<T> adapter = (TypeAdapter<T>) newEnumTypeAdapter(type.getRawType());
+            return adapter;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private TypeAdapter<?> newEnumTypeAdapter(Class<?> enumClass) {
+            return new EnumTypeAdapter(EnumCodec.of((Class) enumClass));
+        }
+
+    }
+
+    private static class EnumTypeAdapter<E extends Enum<E>> extends TypeAdapter<E> {
+
+        private final EnumCodec<E> codec;
+
+        private EnumTypeAdapter(EnumCodec<E> codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public void write(JsonWriter out, E value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+            } else {
+                out.value(codec.nameOf(value));
+            }
+        }
+
+        @Override
+        public E read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            } else {
+                return codec.valueOf(in.nextString());
+            }
         }
 
     }
@@ -0,0 +1,676 @@
+package com.deadmandungeons.connect.commons.messenger.serializers;
+
+import com.deadmandungeons.connect.commons.ConnectUtils;
+import com.deadmandungeons.connect.commons.messenger.MessageCursor;
+import com.deadmandungeons.connect.commons.messenger.codecs.EnumCodec;
+import com.deadmandungeons.connect.commons.messenger.codecs.MessageCodec;
+import com.deadmandungeons.connect.commons.messenger.codecs.MessageReader;
+import com.deadmandungeons.connect.commons.messenger.codecs.MessageWriter;
+import com.deadmandungeons.connect.commons.messenger.codecs.ReflectiveMessageCodec;
+import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.google.common.base.Supplier;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A MessageSerializer with its own JSON tokenizer and writer, so it does not depend on any copy of Gson.
+ * It is specialized for the flat shapes of Message types: strings, UUIDs, enums, primitives and their wrappers,
+ * nested Messages, and arrays, Lists and Sets of any of these. Use {@link #supports(Class)} to check whether every
+ * property of a Message type can be bound before choosing this serializer.
+ * <p>Like the Gson serializers, the <code>type</code> property may appear anywhere in a Message object, names of
+ * Message types and enum constants are matched ignoring case, and numbers may be quoted. Unlike the lenient Gson
+ * serializers, only strict JSON is accepted: names and strings must be double quoted, literals such as
+ * <code>NaN</code> and unknown escape sequences are rejected, and a leading byte order mark is not skipped.</p>
+ */
+public class JsonMessageSerializer extends MessageSerializer {
+
+    // field names are shared by every message of a type, so recently read names are reused rather than copied
+    private final String[] nameCache = new String[256];
+    private final ConcurrentMap<Class<?>, EnumCodec<?>> enumCodecs = new ConcurrentHashMap<>();
+
+    /**
+     * @param messageClass the Message type to check
+     * @return true if every property of the given Message type is of a type that can be read and written by a
+     * JsonMessageSerializer
+     */
+    public static boolean supports(Class<?> messageClass) {
+        for (Class<?> raw = messageClass; raw != Message.class && raw != null; raw = raw.getSuperclass()) {
+            for (Field field : raw.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                if (!supportsValue(field.getGenericType())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean supportsValue(Type type) {
+        if (type instanceof GenericArrayType) {
+            return supportsValue(((GenericArrayType) type).getGenericComponentType());
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Class<?> raw = (Class<?>) parameterized.getRawType();
+            return (raw == List.class || raw == Collection.class || raw == Set.class)
+                    && supportsValue(parameterized.getActualTypeArguments()[0]);
+        }
+        if (!(type instanceof Class)) {
+            return false;
+        }
+        Class<?> raw = (Class<?>) type;
+        if (raw.isArray()) {
+            return supportsValue(raw.getComponentType());
+        }
+        return ValueKind.of(raw) != null;
+    }
+
+    @Override
+    public <T extends Message> void registerMessageType(String messageType, Class<T> messageClass, Supplier<T> messageSupplier) {
+        addNewMessageType(messageType, messageClass, new ReflectiveMessageCodec<>(messageClass, messageSupplier));
+    }
+
+    @Override
+    public String toJson(Message[] messages) {
+        StringBuilder json = new StringBuilder(64 * messages.length);
+        try {
+            toJson(messages, json);
+        } catch (IOException e) {
+            // StringBuilder does not throw IOException, so this is an unsupported property value
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        return json.toString();
+    }
+
+    @Override
+    public void toJson(Message[] messages, Appendable out) throws IOException {
+        JsonOutput output = new JsonOutput(out);
+        JsonMessageWriter writer = new JsonMessageWriter(output);
+        output.beginArray();
+        for (Message message : messages) {
+            writeMessage(message, writer);
+        }
+        output.endArray();
+        output.flush();
+    }
+
+    @Override
+    public <T> T fromJson(String json, Class<T> type) throws MessageParseException {
+        if (!supportsValue(type)) {
+            throw new MessageParseException("Values of type " + type.getName() + " cannot be deserialized");
+        }
+        try {
+            JsonTokenizer in = new JsonTokenizer(json.toCharArray());
+            @SuppressWarnings("unchecked")
+            T value = (T) readValue(in, type);
+            if (in.peek() != JsonTokenizer.END_DOCUMENT) {
+                throw new MessageParseException("Unexpected json after the value");
+            }
+            return value;
+        } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            throw new MessageParseException(e);
+        }
+    }
+
+    @Override
+    public MessageCursor openCursor(Reader json) {
+        return new JsonMessageCursor(json);
+    }
+
+
+    private <T extends Message> void writeMessage(Message message, JsonMessageWriter writer) throws IOException {
+        if (message == null) {
+            writer.out.nullValue();
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        T typedMessage = (T) message;
+        @SuppressWarnings("unchecked")
+        MessageCodec<T> codec = getMessageCodec((Class<T>) message.getClass());
+        writer.out.beginObject();
+        writer.out.name(TYPE_PROPERTY);
+        writer.out.value(message.getType());
+        codec.write(typedMessage, writer);
+        writer.out.endObject();
+    }
+
+    // Reads a Message in a single pass by dispatching to the MessageCodec of the Message type as soon as
+    // the 'type' property has been read. Any properties preceding the 'type' property are copied aside
+    // until the type is known. Messages are always written with the 'type' property first.
+    private Message readMessage(JsonTokenizer in, Class<?> requestedType) throws IOException {
+        if (in.peek() == JsonTokenizer.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        in.beginObject();
+        List<String> buffered = null;
+        Class<? extends Message> messageClass = null;
+        String messageType = null;
+        while (in.hasNext()) {
+            in.nextName();
+            if (in.valueEquals(TYPE_PROPERTY)) {
+                if (in.peek() != JsonTokenizer.NULL) {
+                    in.nextString();
+                    messageClass = getMessageType(in.charSequence(), in.start(), in.end());
+                    if (messageClass == null) {
+                        messageType = in.stringValue();
+                    }
+                } else {
+                    in.nextNull();
+                }
+                break;
+            }
+            if (buffered == null) {
+                buffered = new ArrayList<>();
+            }
+            buffered.add(in.stringValue());
+            StringBuilder value = new StringBuilder();
+            JsonOutput copy = new JsonOutput(value);
+            in.copyValue(copy);
+            copy.flush();
+            buffered.add(value.toString());
+        }
+
+        if (messageClass == null) {
+            // throws IllegalArgumentException for a missing or unknown type
+            messageClass = getExistingMessageType(messageType);
+        }
+        if (!requestedType.isAssignableFrom(messageClass)) {
+            throw new IllegalArgumentException("Expected a Message of type " + requestedType.getName() + " but was '" + Message.getType(messageClass) + "'");
+        }
+
+        Message message = getMessageCodec(messageClass).read(new JsonMessageReader(in, buffered));
+        in.endObject();
+        return message;
+    }
+
+    private Object readValue(JsonTokenizer in, Type type) throws IOException {
+        if (in.peek() == JsonTokenizer.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (type instanceof GenericArrayType) {
+            Type componentType = ((GenericArrayType) type).getGenericComponentType();
+            return readArray(in, componentType, rawType(componentType));
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Type elementType = parameterized.getActualTypeArguments()[0];
+            Collection<Object> values = (parameterized.getRawType() == Set.class ? new LinkedHashSet<>() : new ArrayList<>());
+            in.beginArray();
+            while (in.hasNext()) {
+                values.add(readValue(in, elementType));
+            }
+            in.endArray();
+            return values;
+        }
+
+        Class<?> raw = (Class<?>) type;
+        if (raw.isArray()) {
+            return readArray(in, raw.getComponentType(), raw.getComponentType());
+        }
+        ValueKind kind = ValueKind.of(raw);
+        if (kind == null) {
+            throw new IOException("Values of type " + raw.getName() + " are not supported");
+        }
+        switch (kind) {
+            case BOOLEAN:
+                return in.nextBoolean();
+            case BYTE:
+                return (byte) readInt(in);
+            case SHORT:
+                return (short) readInt(in);
+            case INT:
+                return readInt(in);
+            case LONG:
+                return in.nextLong();
+            case FLOAT:
+                return (float) in.nextDouble();
+            case DOUBLE:
+                return in.nextDouble();
+            case CHAR:
+                in.nextString();
+                if (in.end() - in.start() != 1) {
+                    throw in.syntaxError("Expected a char but was " + in.stringValue());
+                }
+                return in.chars()[in.start()];
+            case STRING:
+                in.nextString();
+                return in.stringValue();
+            case UUID:
+                return readUuid(in);
+            case ENUM:
+                in.nextString();
+                return getEnumCodec(raw).valueOf(in.chars(), in.start(), in.end());
+            default:
+                return readMessage(in, raw);
+        }
+    }
+
+    private Object readArray(JsonTokenizer in, Type componentType, Class<?> rawComponentType) throws IOException {
+        List<Object> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            Object value = readValue(in, componentType);
+            if (value == null && rawComponentType.isPrimitive()) {
+                throw in.syntaxError("Expected a " + rawComponentType.getName() + " but was null");
+            }
+            values.add(value);
+        }
+        in.endArray();
+
+        Object array = Array.newInstance(rawComponentType, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            Array.set(array, i, values.get(i));
+        }
+        return array;
+    }
+
+    private void writeValue(JsonMessageWriter writer, Type type, Object value) throws IOException {
+        JsonOutput out = writer.out;
+        if (value == null) {
+            out.nullValue();
+        } else if (value instanceof String) {
+            out.value((String) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            out.value(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            out.value(((Boolean) value).booleanValue());
+        } else if (value instanceof Double) {
+            out.value(((Double) value).doubleValue());
+        } else if (value instanceof Float) {
+            out.value(((Float) value).floatValue());
+        } else if (value instanceof Character) {
+            out.value(value.toString());
+        } else if (value instanceof UUID) {
+            out.value((UUID) value, isCompactUuids());
+        } else if (value instanceof Enum) {
+            out.value(nameOf((Enum<?>) value));
+        } else if (value instanceof Message) {
+            writeMessage((Message) value, writer);
+        } else if (value.getClass().isArray()) {
+            Type componentType = (type instanceof GenericArrayType ? ((GenericArrayType) type).getGenericComponentType()
+                    : value.getClass().getComponentType());
+            out.beginArray();
+            for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                writeValue(writer, componentType, Array.get(value, i));
+            }
+            out.endArray();
+        } else if (value instanceof Collection) {
+            Type elementType = (type instanceof ParameterizedType ? ((ParameterizedType) type).getActualTypeArguments()[0]
+                    : Object.class);
+            out.beginArray();
+            for (Object element : (Collection<?>) value) {
+                writeValue(writer, elementType, element);
+            }
+            out.endArray();
+        } else {
+            throw new IOException("Values of type " + value.getClass().getName() + " are not supported");
+        }
+    }
+
+    private static int readInt(JsonTokenizer in) throws IOException {
+        long value = in.nextLong();
+        if ((int) value != value) {
+            throw in.syntaxError("Expected an int but was " + value);
+        }
+        return (int) value;
+    }
+
+    private static UUID readUuid(JsonTokenizer in) throws IOException {
+        in.nextString();
+        long[] bits = new long[2];
+        if (!ConnectUtils.parseId(in.charSequence(), in.start(), in.end(), bits)) {
+            throw in.syntaxError("Invalid UUID string: " + in.stringValue());
+        }
+        return new UUID(bits[0], bits[1]);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private EnumCodec<?> getEnumCodec(Class<?> enumClass) {
+        EnumCodec<?> codec = enumCodecs.get(enumClass);
+        if (codec == null) {
+            codec = EnumCodec.of((Class) enumClass);
+            enumCodecs.put(enumClass, codec);
+        }
+        return codec;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private String nameOf(Enum<?> value) {
+        EnumCodec codec = getEnumCodec(value.getDeclaringClass());
+        return codec.nameOf(value);
+    }
+
+    private String readName(JsonTokenizer in) {
+        char[] chars = in.chars();
+        int start = in.start();
+        int length = in.end() - start;
+        int hash = 0;
+        for (int i = start, end = in.end(); i < end; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int index = (hash ^ (hash >>> 16)) & (nameCache.length - 1);
+
+        // racy reads and writes are safe since Strings are immutable
+        String cached = nameCache[index];
+        if (cached != null && cached.length() == length) {
+            int i = 0;
+            while (i < length && cached.charAt(i) == chars[start + i]) {
+                i++;
+            }
+            if (i == length) {
+                return cached;
+            }
+        }
+        String name = new String(chars, start, length);
+        nameCache[index] = name;
+        return name;
+    }
+
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        } else if (type instanceof GenericArrayType) {
+            return Array.newInstance(rawType(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        }
+        throw new IllegalArgumentException("Values of type " + type + " are not supported");
+    }
+
+
+    private enum ValueKind {
+        BOOLEAN,
+        BYTE,
+        SHORT,
+        INT,
+        LONG,
+        FLOAT,
+        DOUBLE,
+        CHAR,
+        STRING,
+        UUID,
+        ENUM,
+        MESSAGE;
+
+        private static ValueKind of(Class<?> type) {
+            if (type == boolean.class || type == Boolean.class) {
+                return BOOLEAN;
+            } else if (type == byte.class || type == Byte.class) {
+                return BYTE;
+            } else if (type == short.class || type == Short.class) {
+                return SHORT;
+            } else if (type == int.class || type == Integer.class) {
+                return INT;
+            } else if (type == long.class || type == Long.class) {
+                return LONG;
+            } else if (type == float.class || type == Float.class) {
+                return FLOAT;
+            } else if (type == double.class || type == Double.class) {
+                return DOUBLE;
+            } else if (type == char.class || type == Character.class) {
+                return CHAR;
+            } else if (type == String.class) {
+                return STRING;
+            } else if (type == java.util.UUID.class) {
+                return UUID;
+            } else if (type.isEnum()) {
+                return ENUM;
+            } else if (Message.class.isAssignableFrom(type)) {
+                return MESSAGE;
+            }
+            return null;
+        }
+    }
+
+    private class JsonMessageCursor implements MessageCursor {
+
+        private final Reader reader;
+        private final JsonTokenizer in;
+        private CursorState state = CursorState.START;
+
+        private JsonMessageCursor(Reader json) {
+            reader = json;
+            in = new JsonTokenizer(json);
+        }
+
+        @Override
+        public boolean hasNext() throws IOException, MessageParseException {
+            try {
+                if (state == CursorState.START) {
+                    if (in.peek() == JsonTokenizer.BEGIN_ARRAY) {
+                        in.beginArray();
+                        if (!in.hasNext()) {
+                            throw new MessageParseException("Empty json array with no message to parse");
+                        }
+                        state = CursorState.ARRAY;
+                    } else {
+                        state = CursorState.SINGLE;
+                    }
+                    return true;
+                }
+                if (state == CursorState.ARRAY) {
+                    if (in.hasNext()) {
+                        return true;
+                    }
+                    in.endArray();
+                    state = CursorState.END;
+                }
+                if (state == CursorState.END) {
+                    if (in.peek() != JsonTokenizer.END_DOCUMENT) {
+                        throw new MessageParseException("Unexpected json after the last message");
+                    }
+                    state = CursorState.DONE;
+                }
+                return state == CursorState.SINGLE;
+            } catch (JsonTokenizer.SyntaxException e) {
+                throw new MessageParseException(e);
+            }
+        }
+
+        @Override
+        public Message next() throws IOException, MessageParseException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                Message message = readMessage(in, Message.class);
+                if (message == null) {
+                    throw new MessageParseException("Unexpected null message");
+                }
+                if (state == CursorState.SINGLE) {
+                    state = CursorState.END;
+                }
+                return message;
+            } catch (JsonTokenizer.SyntaxException | IllegalArgumentException | IllegalStateException e) {
+                throw new MessageParseException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+
+    }
+
+    private enum CursorState {
+        START,
+        SINGLE,
+        ARRAY,
+        END,
+        DONE
+    }
+
+    private class JsonMessageReader implements MessageReader {
+
+        private final JsonTokenizer in;
+        // alternating names and JSON values of the properties that preceded the type property
+        private final List<String> buffered;
+        private int bufferedIndex;
+        private JsonTokenizer current;
+
+        private JsonMessageReader(JsonTokenizer in, List<String> buffered) {
+            this.in = in;
+            this.buffered = buffered;
+            current = in;
+        }
+
+        @Override
+        public boolean hasNextField() throws IOException {
+            return (buffered != null && bufferedIndex < buffered.size()) || in.hasNext();
+        }
+
+        @Override
+        public String nextFieldName() throws IOException {
+            if (buffered != null && bufferedIndex < buffered.size()) {
+                String name = buffered.get(bufferedIndex++);
+                current = new JsonTokenizer(buffered.get(bufferedIndex++).toCharArray());
+                return name;
+            }
+            current = in;
+            in.nextName();
+            return readName(in);
+        }
+
+        @Override
+        public boolean readNull() throws IOException {
+            if (current.peek() == JsonTokenizer.NULL) {
+                current.nextNull();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public String readString() throws IOException {
+            current.nextString();
+            return current.stringValue();
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            return current.nextBoolean();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            return JsonMessageSerializer.readInt(current);
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            return current.nextLong();
+        }
+
+        @Override
+        public float readFloat() throws IOException {
+            return (float) current.nextDouble();
+        }
+
+        @Override
+        public double readDouble() throws IOException {
+            return current.nextDouble();
+        }
+
+        @Override
+        public UUID readUuid() throws IOException {
+            return JsonMessageSerializer.readUuid(current);
+        }
+
+        @Override
+        public <E extends Enum<E>> E readEnum(EnumCodec<E> codec) throws IOException {
+            current.nextString();
+            return codec.valueOf(current.chars(), current.start(), current.end());
+        }
+
+        @Override
+        public Object readValue(Type type) throws IOException {
+            return JsonMessageSerializer.this.readValue(current, type);
+        }
+
+        @Override
+        public void skipValue() throws IOException {
+            current.skipValue();
+        }
+
+    }
+
+    private class JsonMessageWriter implements MessageWriter {
+
+        private final JsonOutput out;
+
+        private JsonMessageWriter(JsonOutput out) {
+            this.out = out;
+        }
+
+        @Override
+        public void writeName(String name) throws IOException {
+            out.name(name);
+        }
+
+        @Override
+        public void writeString(String value) throws IOException {
+            out.value(value);
+        }
+
+        @Override
+        public void writeBoolean(boolean value) throws IOException {
+            out.value(value);
+        }
+
+        @Override
+        public void writeLong(long value) throws IOException {
+            out.value(value);
+        }
+
+        @Override
+        public void writeFloat(float value) throws IOException {
+            out.value(value);
+        }
+
+        @Override
+        public void writeDouble(double value) throws IOException {
+            out.value(value);
+        }
+
+        @Override
+        public void writeUuid(UUID value) throws IOException {
+            out.value(value, isCompactUuids());
+        }
+
+        @Override
+        public <E extends Enum<E>> void writeEnum(EnumCodec<E> codec, E value) throws IOException {
+            out.value(codec.nameOf(value));
+        }
+
+        @Override
+        public void writeValue(Type type, Object value) throws IOException {
+            JsonMessageSerializer.this.writeValue(this, type, value);
+        }
+
+    }
+
+}
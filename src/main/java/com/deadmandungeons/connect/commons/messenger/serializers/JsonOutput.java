@@ -0,0 +1,296 @@
+package com.deadmandungeons.connect.commons.messenger.serializers;
+
+import com.deadmandungeons.connect.commons.ConnectUtils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * A JSON writer for the {@link JsonMessageSerializer} that buffers characters in a char array and hands them to
+ * the underlying Appendable in chunks. Separators are tracked per nesting level, so callers only ever write names
+ * and values. {@link #flush()} must be called once the document is complete.
+ * <p>Strings are escaped as required by JSON. Unlike Gson, HTML characters are not escaped.</p>
+ */
+final class JsonOutput implements Appendable {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final int SCOPE_EMPTY = 0;
+    private static final int SCOPE_NONEMPTY = 1;
+    private static final int SCOPE_DANGLING_NAME = 2;
+
+    private final Appendable out;
+    private final char[] buf = new char[512];
+    private int count;
+
+    private int[] scopes = new int[16];
+    private int depth = 1;
+
+    /**
+     * @param out the Appendable to write the JSON to
+     */
+    JsonOutput(Appendable out) {
+        this.out = out;
+    }
+
+    void beginObject() throws IOException {
+        beforeValue();
+        put('{');
+        push();
+    }
+
+    void endObject() throws IOException {
+        depth--;
+        put('}');
+    }
+
+    void beginArray() throws IOException {
+        beforeValue();
+        put('[');
+        push();
+    }
+
+    void endArray() throws IOException {
+        depth--;
+        put(']');
+    }
+
+    void name(String name) throws IOException {
+        beforeName();
+        putString(name);
+        put(':');
+    }
+
+    void name(char[] chars, int start, int end) throws IOException {
+        beforeName();
+        putString(chars, start, end);
+        put(':');
+    }
+
+    void value(String value) throws IOException {
+        beforeValue();
+        putString(value);
+    }
+
+    void value(char[] chars, int start, int end) throws IOException {
+        beforeValue();
+        putString(chars, start, end);
+    }
+
+    /**
+     * @param chars the characters of a value that is already valid JSON, such as a number token that was validated
+     * by the {@link JsonTokenizer}
+     */
+    void rawValue(char[] chars, int start, int end) throws IOException {
+        beforeValue();
+        for (int i = start; i < end; i++) {
+            put(chars[i]);
+        }
+    }
+
+    void value(boolean value) throws IOException {
+        beforeValue();
+        putRaw(value ? "true" : "false");
+    }
+
+    void value(long value) throws IOException {
+        beforeValue();
+        if (value == Long.MIN_VALUE) {
+            putRaw("-9223372036854775808");
+            return;
+        }
+        if (buf.length - count < 20) {
+            flushBuffer();
+        }
+        if (value < 0) {
+            buf[count++] = '-';
+            value = -value;
+        }
+        int end = count + stringSize(value);
+        for (int i = end - 1; i >= count; i--) {
+            buf[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        count = end;
+    }
+
+    void value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        beforeValue();
+        putRaw(Double.toString(value));
+    }
+
+    void value(float value) throws IOException {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        beforeValue();
+        putRaw(Float.toString(value));
+    }
+
+    void value(UUID value, boolean compact) throws IOException {
+        beforeValue();
+        put('"');
+        if (compact) {
+            ConnectUtils.appendUuidBase64(value.getMostSignificantBits(), value.getLeastSignificantBits(), this);
+        } else {
+            ConnectUtils.appendUuid(value.getMostSignificantBits(), value.getLeastSignificantBits(), this);
+        }
+        put('"');
+    }
+
+    void nullValue() throws IOException {
+        beforeValue();
+        putRaw("null");
+    }
+
+    /**
+     * Write every buffered character to the underlying Appendable
+     */
+    void flush() throws IOException {
+        flushBuffer();
+    }
+
+    // raw appends for ConnectUtils, which only ever writes characters that need no escaping
+
+    @Override
+    public JsonOutput append(CharSequence csq) throws IOException {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public JsonOutput append(CharSequence csq, int start, int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            put(csq.charAt(i));
+        }
+        return this;
+    }
+
+    @Override
+    public JsonOutput append(char c) throws IOException {
+        put(c);
+        return this;
+    }
+
+
+    private void beforeName() throws IOException {
+        int scope = scopes[depth - 1];
+        if (scope == SCOPE_NONEMPTY) {
+            put(',');
+        } else if (scope != SCOPE_EMPTY) {
+            throw new IllegalStateException("A value must be written after a name");
+        }
+        scopes[depth - 1] = SCOPE_DANGLING_NAME;
+    }
+
+    private void beforeValue() throws IOException {
+        int scope = scopes[depth - 1];
+        if (scope == SCOPE_NONEMPTY && depth > 1) {
+            put(',');
+        }
+        // a dangling name, an array, or the document becomes nonempty
+        scopes[depth - 1] = SCOPE_NONEMPTY;
+    }
+
+    private void push() {
+        if (depth == scopes.length) {
+            scopes = Arrays.copyOf(scopes, depth * 2);
+        }
+        scopes[depth++] = SCOPE_EMPTY;
+    }
+
+    private void putString(String value) throws IOException {
+        put('"');
+        for (int i = 0, length = value.length(); i < length; i++) {
+            putEscaped(value.charAt(i));
+        }
+        put('"');
+    }
+
+    private void putString(char[] chars, int start, int end) throws IOException {
+        put('"');
+        for (int i = start; i < end; i++) {
+            putEscaped(chars[i]);
+        }
+        put('"');
+    }
+
+    private void putEscaped(char c) throws IOException {
+        if (c >= ' ' && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+            put(c);
+            return;
+        }
+        put('\\');
+        switch (c) {
+            case '"':
+            case '\\':
+                put(c);
+                break;
+            case '\n':
+                put('n');
+                break;
+            case '\r':
+                put('r');
+                break;
+            case '\t':
+                put('t');
+                break;
+            case '\b':
+                put('b');
+                break;
+            case '\f':
+                put('f');
+                break;
+            default:
+                put('u');
+                put(HEX[(c >> 12) & 0xF]);
+                put(HEX[(c >> 8) & 0xF]);
+                put(HEX[(c >> 4) & 0xF]);
+                put(HEX[c & 0xF]);
+        }
+    }
+
+    private void putRaw(String value) throws IOException {
+        for (int i = 0, length = value.length(); i < length; i++) {
+            put(value.charAt(i));
+        }
+    }
+
+    private void put(char c) throws IOException {
+        if (count == buf.length) {
+            flushBuffer();
+        }
+        buf[count++] = c;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        if (out instanceof Writer) {
+            ((Writer) out).write(buf, 0, count);
+        } else if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(buf, 0, count);
+        } else {
+            out.append(CharBuffer.wrap(buf, 0, count));
+        }
+        count = 0;
+    }
+
+    private static int stringSize(long value) {
+        long bound = 10;
+        for (int size = 1; size < 19; size++) {
+            if (value < bound) {
+                return size;
+            }
+            bound *= 10;
+        }
+        return 19;
+    }
+
+}
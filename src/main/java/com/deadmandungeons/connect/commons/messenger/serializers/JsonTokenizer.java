@@ -0,0 +1,712 @@
+package com.deadmandungeons.connect.commons.messenger.serializers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * A pull tokenizer of JSON text for the {@link JsonMessageSerializer}. Every token is read directly from a char
+ * buffer, and the value of a string, name or number token is exposed as a range of characters
+ * ({@link #chars()}, {@link #start()} and {@link #end()}) that stays valid until the next token is read,
+ * so a value is only copied into a String when the caller asks for one.
+ */
+final class JsonTokenizer {
+
+    static final int BEGIN_OBJECT = 1;
+    static final int END_OBJECT = 2;
+    static final int BEGIN_ARRAY = 3;
+    static final int END_ARRAY = 4;
+    static final int NAME = 5;
+    static final int STRING = 6;
+    static final int NUMBER = 7;
+    static final int TRUE = 8;
+    static final int FALSE = 9;
+    static final int NULL = 10;
+    static final int END_DOCUMENT = 11;
+
+    private static final int SCOPE_EMPTY_DOCUMENT = 0;
+    private static final int SCOPE_NONEMPTY_DOCUMENT = 1;
+    private static final int SCOPE_EMPTY_ARRAY = 2;
+    private static final int SCOPE_NONEMPTY_ARRAY = 3;
+    private static final int SCOPE_EMPTY_OBJECT = 4;
+    private static final int SCOPE_DANGLING_NAME = 5;
+    private static final int SCOPE_NONEMPTY_OBJECT = 6;
+
+    private final Reader in;
+    private char[] buf;
+    private int pos;
+    private int limit;
+
+    private int[] scopes = new int[16];
+    private int depth = 1;
+    private int peeked;
+
+    // the range of the value of the last read string, name or number token
+    private char[] valueChars;
+    private int valueStart;
+    private int valueEnd;
+    private CharBuffer bufView;
+    // holds the unescaped value of strings that contain escape sequences
+    private char[] scratch = new char[64];
+    private CharBuffer scratchView;
+
+    /**
+     * @param in the Reader of the JSON text. It is read in chunks as needed
+     */
+    JsonTokenizer(Reader in) {
+        this.in = in;
+        buf = new char[1024];
+    }
+
+    /**
+     * @param json the complete JSON text
+     */
+    JsonTokenizer(char[] json) {
+        in = null;
+        buf = json;
+        limit = json.length;
+    }
+
+    /**
+     * @return the kind of the next token without consuming it
+     */
+    int peek() throws IOException {
+        return (peeked != 0 ? peeked : doPeek());
+    }
+
+    boolean hasNext() throws IOException {
+        int p = peek();
+        return p != END_OBJECT && p != END_ARRAY && p != END_DOCUMENT;
+    }
+
+    void beginObject() throws IOException {
+        expect(BEGIN_OBJECT);
+        push(SCOPE_EMPTY_OBJECT);
+        peeked = 0;
+    }
+
+    void endObject() throws IOException {
+        expect(END_OBJECT);
+        depth--;
+        peeked = 0;
+    }
+
+    void beginArray() throws IOException {
+        expect(BEGIN_ARRAY);
+        push(SCOPE_EMPTY_ARRAY);
+        peeked = 0;
+    }
+
+    void endArray() throws IOException {
+        expect(END_ARRAY);
+        depth--;
+        peeked = 0;
+    }
+
+    /**
+     * Consume the next name. Its characters are then available from {@link #chars()}
+     */
+    void nextName() throws IOException {
+        expect(NAME);
+        readString();
+        peeked = 0;
+    }
+
+    /**
+     * Consume the next string value, or a number value as a string.
+     * Its characters are then available from {@link #chars()}
+     */
+    void nextString() throws IOException {
+        int p = peek();
+        if (p == STRING) {
+            readString();
+        } else if (p != NUMBER) {
+            throw syntaxError("Expected a string but was " + describe(p));
+        }
+        peeked = 0;
+    }
+
+    void nextNull() throws IOException {
+        expect(NULL);
+        peeked = 0;
+    }
+
+    boolean nextBoolean() throws IOException {
+        int p = peek();
+        if (p != TRUE && p != FALSE) {
+            throw syntaxError("Expected a boolean but was " + describe(p));
+        }
+        peeked = 0;
+        return p == TRUE;
+    }
+
+    /**
+     * @return the next number value, or string value that is a number, as a long
+     */
+    long nextLong() throws IOException {
+        nextString();
+        long value = 0;
+        boolean negative = false;
+        int i = valueStart;
+        if (i < valueEnd && valueChars[i] == '-') {
+            negative = true;
+            i++;
+        }
+        if (i == valueEnd || valueEnd - i > 18) {
+            return nextLongSlow();
+        }
+        for (; i < valueEnd; i++) {
+            int digit = valueChars[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return nextLongSlow();
+            }
+            value = value * 10 + digit;
+        }
+        return (negative ? -value : value);
+    }
+
+    // numbers with a fraction, an exponent, or too many digits to accumulate without overflow
+    private long nextLongSlow() throws IOException {
+        String value = stringValue();
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            double asDouble = parseDouble(value);
+            long asLong = (long) asDouble;
+            if (asLong != asDouble) {
+                throw syntaxError("Expected a long but was " + value);
+            }
+            return asLong;
+        }
+    }
+
+    /**
+     * @return the next number value, or string value that is a number, as a double
+     */
+    double nextDouble() throws IOException {
+        nextString();
+        return parseDouble(stringValue());
+    }
+
+    private double parseDouble(String value) throws IOException {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected a number but was " + value);
+        }
+    }
+
+    /**
+     * Skip the next value, including every nested value of an object or array
+     */
+    void skipValue() throws IOException {
+        int count = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    count++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    count++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    count--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    count--;
+                    break;
+                case NAME:
+                    nextName();
+                    break;
+                case STRING:
+                    readString();
+                    peeked = 0;
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Unexpected end of input");
+                default:
+                    peeked = 0;
+            }
+        } while (count > 0);
+    }
+
+    /**
+     * Copy the next value, including every nested value of an object or array, to the given output
+     * @param out the JsonOutput to copy the value to
+     */
+    void copyValue(JsonOutput out) throws IOException {
+        int count = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    out.beginObject();
+                    count++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    out.beginArray();
+                    count++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    out.endObject();
+                    count--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    out.endArray();
+                    count--;
+                    break;
+                case NAME:
+                    nextName();
+                    out.name(valueChars, valueStart, valueEnd);
+                    break;
+                case STRING:
+                    nextString();
+                    out.value(valueChars, valueStart, valueEnd);
+                    break;
+                case NUMBER:
+                    nextString();
+                    out.rawValue(valueChars, valueStart, valueEnd);
+                    break;
+                case TRUE:
+                case FALSE:
+                    out.value(nextBoolean());
+                    break;
+                case NULL:
+                    nextNull();
+                    out.nullValue();
+                    break;
+                default:
+                    throw syntaxError("Unexpected end of input");
+            }
+        } while (count > 0);
+    }
+
+    /**
+     * @return the characters that contain the value of the last read string, name or number
+     */
+    char[] chars() {
+        return valueChars;
+    }
+
+    int start() {
+        return valueStart;
+    }
+
+    int end() {
+        return valueEnd;
+    }
+
+    /**
+     * @return a CharSequence view of {@link #chars()}, indexed the same way
+     */
+    CharSequence charSequence() {
+        if (valueChars == buf) {
+            if (bufView == null || bufView.array() != buf) {
+                bufView = CharBuffer.wrap(buf);
+            }
+            return bufView;
+        }
+        if (scratchView == null || scratchView.array() != scratch) {
+            scratchView = CharBuffer.wrap(scratch);
+        }
+        return scratchView;
+    }
+
+    String stringValue() {
+        return new String(valueChars, valueStart, valueEnd - valueStart);
+    }
+
+    boolean valueEquals(String value) {
+        int length = valueEnd - valueStart;
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (valueChars[valueStart + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    IOException syntaxError(String message) {
+        return new SyntaxException(message + " at character " + pos);
+    }
+
+
+    private int doPeek() throws IOException {
+        int scope = scopes[depth - 1];
+        switch (scope) {
+            case SCOPE_EMPTY_ARRAY:
+            case SCOPE_NONEMPTY_ARRAY: {
+                scopes[depth - 1] = SCOPE_NONEMPTY_ARRAY;
+                int c = nextNonWhitespace();
+                if (c == ']') {
+                    return peeked = END_ARRAY;
+                }
+                if (scope == SCOPE_NONEMPTY_ARRAY) {
+                    if (c != ',') {
+                        throw syntaxError("Unterminated array");
+                    }
+                } else if (c != -1) {
+                    pos--;
+                }
+                return peeked = peekValue();
+            }
+            case SCOPE_EMPTY_OBJECT:
+            case SCOPE_NONEMPTY_OBJECT: {
+                scopes[depth - 1] = SCOPE_DANGLING_NAME;
+                int c = nextNonWhitespace();
+                if (c == '}') {
+                    return peeked = END_OBJECT;
+                }
+                if (scope == SCOPE_NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError("Unterminated object");
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected a name");
+                }
+                return peeked = NAME;
+            }
+            case SCOPE_DANGLING_NAME:
+                scopes[depth - 1] = SCOPE_NONEMPTY_OBJECT;
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                return peeked = peekValue();
+            case SCOPE_EMPTY_DOCUMENT:
+                scopes[depth - 1] = SCOPE_NONEMPTY_DOCUMENT;
+                return peeked = peekValue();
+            default:
+                if (nextNonWhitespace() != -1) {
+                    throw syntaxError("Expected the end of the document");
+                }
+                return peeked = END_DOCUMENT;
+        }
+    }
+
+    private int peekValue() throws IOException {
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                return BEGIN_OBJECT;
+            case '[':
+                return BEGIN_ARRAY;
+            case '"':
+                return STRING;
+            case 't':
+                return peekLiteral("rue", TRUE);
+            case 'f':
+                return peekLiteral("alse", FALSE);
+            case 'n':
+                return peekLiteral("ull", NULL);
+            case -1:
+                throw syntaxError("Unexpected end of input");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    pos--;
+                    readNumber();
+                    return NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private int peekLiteral(String rest, int token) throws IOException {
+        int length = rest.length();
+        if (!ensure(length)) {
+            throw syntaxError("Unexpected end of input");
+        }
+        for (int i = 0; i < length; i++) {
+            if (buf[pos + i] != rest.charAt(i)) {
+                throw syntaxError("Unexpected literal");
+            }
+        }
+        pos += length;
+        return token;
+    }
+
+    // the number is left in the buffer from pos until the first character that cannot be part of a number
+    private void readNumber() throws IOException {
+        int i = 0;
+        while (true) {
+            if (pos + i == limit && !fill()) {
+                break;
+            }
+            char c = buf[pos + i];
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                i++;
+            } else {
+                break;
+            }
+        }
+        if (!isNumber(buf, pos, pos + i)) {
+            throw syntaxError("Malformed number " + new String(buf, pos, i));
+        }
+        setValue(buf, pos, pos + i);
+        pos += i;
+    }
+
+    // validates the JSON number grammar, so that a number token can be copied as a raw value
+    private static boolean isNumber(char[] chars, int start, int end) {
+        int i = start;
+        if (i < end && chars[i] == '-') {
+            i++;
+        }
+        // a leading zero must be the only digit of the integer part
+        if (i < end && chars[i] == '0') {
+            i++;
+        } else {
+            int digits = i;
+            i = skipDigits(chars, i, end);
+            if (i == digits) {
+                return false;
+            }
+        }
+        if (i < end && chars[i] == '.') {
+            int digits = ++i;
+            i = skipDigits(chars, i, end);
+            if (i == digits) {
+                return false;
+            }
+        }
+        if (i < end && (chars[i] == 'e' || chars[i] == 'E')) {
+            i++;
+            if (i < end && (chars[i] == '+' || chars[i] == '-')) {
+                i++;
+            }
+            int digits = i;
+            i = skipDigits(chars, i, end);
+            if (i == digits) {
+                return false;
+            }
+        }
+        return i == end;
+    }
+
+    private static int skipDigits(char[] chars, int i, int end) {
+        while (i < end && chars[i] >= '0' && chars[i] <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    // reads the string that starts at pos, after its opening quote
+    private void readString() throws IOException {
+        int i = 0;
+        while (true) {
+            if (pos + i == limit && !fill()) {
+                throw syntaxError("Unterminated string");
+            }
+            char c = buf[pos + i];
+            if (c == '"') {
+                setValue(buf, pos, pos + i);
+                pos += i + 1;
+                return;
+            }
+            if (c == '\\') {
+                break;
+            }
+            i++;
+        }
+
+        // unescape the rest of the string into the scratch buffer
+        scratch = ensureCapacity(scratch, i + 16);
+        System.arraycopy(buf, pos, scratch, 0, i);
+        int length = i;
+        pos += i;
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw syntaxError("Unterminated string");
+            }
+            char c = buf[pos++];
+            if (c == '"') {
+                setValue(scratch, 0, length);
+                return;
+            }
+            if (c == '\\') {
+                c = readEscapeCharacter();
+            }
+            if (length == scratch.length) {
+                scratch = ensureCapacity(scratch, length + 1);
+            }
+            scratch[length++] = c;
+        }
+    }
+
+    private char readEscapeCharacter() throws IOException {
+        if (pos == limit && !fill()) {
+            throw syntaxError("Unterminated escape sequence");
+        }
+        char escaped = buf[pos++];
+        switch (escaped) {
+            case 'u':
+                if (!ensure(4)) {
+                    throw syntaxError("Unterminated escape sequence");
+                }
+                int result = 0;
+                for (int i = pos, end = pos + 4; i < end; i++) {
+                    int digit = hexDigit(buf[i]);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid escape sequence");
+                    }
+                    result = (result << 4) | digit;
+                }
+                pos += 4;
+                return (char) result;
+            case 't':
+                return '\t';
+            case 'b':
+                return '\b';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 'f':
+                return '\f';
+            case '"':
+            case '\\':
+            case '/':
+                return escaped;
+            default:
+                throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    // only ASCII hex digits, unlike Character#digit which also accepts the digits of other scripts
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (pos < limit || fill()) {
+            char c = buf[pos++];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    // make at least the given number of characters available from pos
+    private boolean ensure(int count) throws IOException {
+        while (limit - pos < count) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // read more characters into the buffer, keeping every character from pos. Returns false at the end of input
+    private boolean fill() throws IOException {
+        if (in == null) {
+            return false;
+        }
+        if (pos > 0) {
+            limit -= pos;
+            System.arraycopy(buf, pos, buf, 0, limit);
+            if (valueChars == buf) {
+                valueStart -= pos;
+                valueEnd -= pos;
+            }
+            pos = 0;
+        }
+        if (limit == buf.length) {
+            char[] grown = Arrays.copyOf(buf, buf.length * 2);
+            if (valueChars == buf) {
+                valueChars = grown;
+            }
+            buf = grown;
+        }
+        int read = in.read(buf, limit, buf.length - limit);
+        if (read <= 0) {
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    private void setValue(char[] chars, int start, int end) {
+        valueChars = chars;
+        valueStart = start;
+        valueEnd = end;
+    }
+
+    private void expect(int token) throws IOException {
+        int p = peek();
+        if (p != token) {
+            throw syntaxError("Expected " + describe(token) + " but was " + describe(p));
+        }
+    }
+
+    private void push(int scope) {
+        if (depth == scopes.length) {
+            scopes = Arrays.copyOf(scopes, depth * 2);
+        }
+        scopes[depth++] = scope;
+    }
+
+    private static char[] ensureCapacity(char[] chars, int capacity) {
+        return (capacity <= chars.length ? chars : Arrays.copyOf(chars, Math.max(capacity, chars.length * 2)));
+    }
+
+    private static String describe(int token) {
+        switch (token) {
+            case BEGIN_OBJECT:
+                return "BEGIN_OBJECT";
+            case END_OBJECT:
+                return "END_OBJECT";
+            case BEGIN_ARRAY:
+                return "BEGIN_ARRAY";
+            case END_ARRAY:
+                return "END_ARRAY";
+            case NAME:
+                return "NAME";
+            case STRING:
+                return "STRING";
+            case NUMBER:
+                return "NUMBER";
+            case TRUE:
+            case FALSE:
+                return "BOOLEAN";
+            case NULL:
+                return "NULL";
+            default:
+                return "END_DOCUMENT";
+        }
+    }
+
+
+    /**
+     * Thrown when the JSON text is malformed
+     */
+    static final class SyntaxException extends IOException {
+
+        private static final long serialVersionUID = 4518286466404744512L;
+
+        private SyntaxException(String message) {
+            super(message);
+        }
+
+    }
+
+}
@@ -1,26 +1,57 @@
 package com.deadmandungeons.connect.commons.messenger.serializers;
 
+import com.deadmandungeons.connect.commons.ConnectUtils;
+import com.deadmandungeons.connect.commons.messenger.MessageCursor;
+import com.deadmandungeons.connect.commons.messenger.codecs.MessageCodec;
+import com.deadmandungeons.connect.commons.messenger.codecs.ReflectiveMessageCodec;
+import com.deadmandungeons.connect.commons.messenger.codecs.SymbolTable;
 import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
 import com.deadmandungeons.connect.commons.messenger.messages.Message;
 import com.google.common.base.Supplier;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 
 public abstract class MessageSerializer {
 
-    private final Map<String, Class<? extends Message>> messageTypes = new ConcurrentHashMap<>();
+    /**
+     * The name of the property that identifies the {@link Message} type of a serialized message
+     */
+    protected static final String TYPE_PROPERTY = "type";
 
-    protected void addNewMessageType(String messageType, Class<? extends Message> messageClass) {
-        String typeName = normalizeTypeName(messageType);
+    // matched ignoring case and surrounding whitespace
+    private final SymbolTable<Class<? extends Message>> messageTypes = new SymbolTable<>();
+    private final Map<Class<? extends Message>, MessageCodec<?>> messageCodecs = new ConcurrentHashMap<>();
+    private volatile boolean compactUuids;
+
+    /**
+     * @param compactUuids true to write UUIDs in the 22 character base64 encoded form
+     * ({@link ConnectUtils#encodeUuidBase64(UUID)}) rather than the 36 character normal form.
+     * Every form accepted by {@link ConnectUtils#parseId(String)} is read regardless of this setting.
+     */
+    public void setCompactUuids(boolean compactUuids) {
+        this.compactUuids = compactUuids;
+    }
+
+    /**
+     * @return true if UUIDs are written in the 22 character base64 encoded form
+     */
+    public boolean isCompactUuids() {
+        return compactUuids;
+    }
+
+    protected <T extends Message> void addNewMessageType(String messageType, Class<T> messageClass, MessageCodec<T> messageCodec) {
+        String typeName = messageType.trim();
         Class<? extends Message> existingMessageType = messageTypes.get(typeName);
         if (existingMessageType != null && existingMessageType != messageClass) {
             throw new IllegalStateException("A Message type named '" + messageType + "' has already been registered");
         }
 
+        messageCodecs.put(messageClass, messageCodec);
         messageTypes.put(typeName, messageClass);
     }
 
@@ -28,35 +59,76 @@ public abstract class MessageSerializer {
         if (messageType == null) {
             throw new IllegalArgumentException("Missing 'type' property");
         }
-        Class<? extends Message> messageClass = messageTypes.get(normalizeTypeName(messageType));
+        Class<? extends Message> messageClass = getMessageType(messageType, 0, messageType.length());
         if (messageClass == null) {
             throw new IllegalArgumentException("Cannot deserialize json Message of unknown type '" + messageType + "'");
         }
         return messageClass;
     }
 
-    protected <T> Map<String, T> getEnumConstants(Class<? super T> enumType) {
-        if (enumType.isEnum()) {
-            Map<String, T> enumConstants = new HashMap<>();
-            for (Object enumValue : enumType.getEnumConstants()) {
-                @SuppressWarnings("unchecked")
-                T enumConstant = (T) enumValue;
-                enumConstants.put(((Enum<?>) enumConstant).name(), enumConstant);
-            }
-            return enumConstants;
+    /**
+     * Messages of a type that has not been registered can still be serialized,
+     * so a write-only codec is bound for such types the first time one is requested.
+     * @param messageClass the Message type to get the codec for
+     * @return the MessageCodec for the given Message type
+     */
+    protected <T extends Message> MessageCodec<T> getMessageCodec(Class<T> messageClass) {
+        @SuppressWarnings("unchecked")
+        MessageCodec<T> codec = (MessageCodec<T>) messageCodecs.get(messageClass);
+        if (codec == null) {
+            codec = new ReflectiveMessageCodec<>(messageClass, null);
+            messageCodecs.put(messageClass, codec);
         }
-        return Collections.emptyMap();
+        return codec;
     }
 
-    private static String normalizeTypeName(String str) {
-        return (str != null ? str.trim().toLowerCase() : null);
+    /**
+     * @param chars the characters that contain the name of the Message type
+     * @param start the index of the first character of the name
+     * @param end the index after the last character of the name
+     * @return the Message type class registered with the given name ignoring case and surrounding whitespace,
+     * or null if there is no such Message type
+     */
+    public Class<? extends Message> getMessageType(CharSequence chars, int start, int end) {
+        while (start < end && chars.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && chars.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return messageTypes.get(chars, start, end);
     }
 
 
     public abstract String toJson(Message[] messages);
 
+    /**
+     * Write the JSON array of the given messages directly to the given Appendable
+     * @param messages the messages to serialize
+     * @param out the Appendable to write the JSON to
+     * @throws IOException if out could not be written to
+     */
+    public abstract void toJson(Message[] messages, Appendable out) throws IOException;
+
     public abstract <T> T fromJson(String json, Class<T> messageType) throws MessageParseException;
 
+    /**
+     * @param json the Reader of a JSON Message object, or an array of JSON Message objects
+     * @return a new MessageCursor that lazily reads each Message from the given Reader
+     */
+    public abstract MessageCursor openCursor(Reader json);
+
     public abstract <T extends Message> void registerMessageType(String messageType, Class<T> messageClass, Supplier<T> messageSupplier);
 
+    /**
+     * Register a Message type that will be read and written with the given codec
+     * rather than a codec bound by this serializer.
+     * @param messageType the name of the Message type
+     * @param messageClass the Message type class token
+     * @param messageCodec the codec for the Message type
+     */
+    public <T extends Message> void registerMessageType(String messageType, Class<T> messageClass, MessageCodec<T> messageCodec) {
+        addNewMessageType(messageType, messageClass, messageCodec);
+    }
+
 }
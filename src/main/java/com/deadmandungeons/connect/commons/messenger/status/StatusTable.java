@@ -0,0 +1,137 @@
+package com.deadmandungeons.connect.commons.messenger.status;
+
+import com.deadmandungeons.connect.commons.messenger.messages.StatusMessage;
+import com.deadmandungeons.connect.commons.messenger.messages.StatusMessage.Status;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A concurrent table of the latest {@link Status} of every id, which coalesces bursts of {@link StatusMessage}s.
+ * Every update replaces the current status of its id, and the latest pending update of each id replaces any older
+ * pending update that has not been drained yet, so draining the pending updates yields at most one
+ * StatusMessage per id no matter how often its status flapped in between (last write wins).
+ * <p>Updates from any number of threads proceed concurrently. A {@link #snapshot()} briefly excludes updates so
+ * that it is a consistent point in time view of every id.</p>
+ */
+public class StatusTable {
+
+    private final ConcurrentMap<UUID, StatusMessage> current = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, StatusMessage> pending = new ConcurrentHashMap<>();
+    // updates share the read lock with each other, and a snapshot takes the write lock to exclude them all
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    /**
+     * Record the given StatusMessage as the current status of its id, and as its pending update
+     * @param message the StatusMessage to record
+     * @throws IllegalArgumentException if the given message has no id or status
+     */
+    public void update(StatusMessage message) throws IllegalArgumentException {
+        UUID id = message.getId();
+        if (id == null || message.getStatus() == null) {
+            throw new IllegalArgumentException("message must have an id and status");
+        }
+        Lock lock = snapshotLock.readLock();
+        lock.lock();
+        try {
+            current.put(id, message);
+            pending.put(id, message);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the given id from the table, including any pending update
+     * @param id the id to remove
+     * @return the last StatusMessage of the given id, or null if it was not in the table
+     */
+    public StatusMessage remove(UUID id) {
+        Lock lock = snapshotLock.readLock();
+        lock.lock();
+        try {
+            pending.remove(id);
+            return current.remove(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param id the id to get the status of
+     * @return the current status of the given id, or null if it is not in the table
+     */
+    public Status getStatus(UUID id) {
+        StatusMessage message = current.get(id);
+        return (message != null ? message.getStatus() : null);
+    }
+
+    /**
+     * @return the number of ids in the table
+     */
+    public int size() {
+        return current.size();
+    }
+
+    /**
+     * @return the number of ids with a pending update
+     */
+    public int pendingSize() {
+        return pending.size();
+    }
+
+    /**
+     * Remove every pending update and add it to the given collection. An update that is made concurrently is
+     * either drained by this call or left pending for the next one, so no update is ever lost.
+     * @param out the collection to add the latest pending StatusMessage of every id to
+     * @return the number of drained updates
+     */
+    public int drainPending(Collection<? super StatusMessage> out) {
+        int drained = 0;
+        for (Map.Entry<UUID, StatusMessage> entry : pending.entrySet()) {
+            // only remove the update if it has not been replaced since it was read
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                out.add(entry.getValue());
+                drained++;
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * @return the latest pending StatusMessage of every id
+     * @see #drainPending(Collection)
+     */
+    public StatusMessage[] drainPending() {
+        List<StatusMessage> drained = new ArrayList<>(pending.size());
+        drainPending(drained);
+        return drained.toArray(new StatusMessage[drained.size()]);
+    }
+
+    /**
+     * @return an immutable, consistent point in time copy of the current status of every id
+     */
+    public Map<UUID, Status> snapshot() {
+        ImmutableMap.Builder<UUID, Status> snapshot = ImmutableMap.builder();
+        Lock lock = snapshotLock.writeLock();
+        lock.lock();
+        try {
+            for (StatusMessage message : current.values()) {
+                snapshot.put(message.getId(), message.getStatus());
+            }
+        } finally {
+            lock.unlock();
+        }
+        return snapshot.build();
+    }
+
+}
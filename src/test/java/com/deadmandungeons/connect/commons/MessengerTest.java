@@ -1,15 +1,64 @@
 package com.deadmandungeons.connect.commons;
 
+import com.deadmandungeons.connect.commons.collect.UuidMap;
+import com.deadmandungeons.connect.commons.messenger.AsyncMessenger;
+import com.deadmandungeons.connect.commons.messenger.DefaultInstantiationStrategy;
+import com.deadmandungeons.connect.commons.messenger.MessageBatcher;
+import com.deadmandungeons.connect.commons.messenger.MessageCursor;
+import com.deadmandungeons.connect.commons.messenger.MessageEnvelope;
+import com.deadmandungeons.connect.commons.messenger.MessageRouter;
 import com.deadmandungeons.connect.commons.messenger.Messenger;
+import com.deadmandungeons.connect.commons.messenger.SerializerBackend;
+import com.deadmandungeons.connect.commons.messenger.ValidationPolicy;
+import com.deadmandungeons.connect.commons.messenger.codecs.EnumCodec;
+import com.deadmandungeons.connect.commons.messenger.codecs.GeneratedMessageCodecs;
+import com.deadmandungeons.connect.commons.messenger.exceptions.FrameTooLargeException;
 import com.deadmandungeons.connect.commons.messenger.exceptions.InvalidMessageException;
 import com.deadmandungeons.connect.commons.messenger.exceptions.MessageParseException;
+import com.deadmandungeons.connect.commons.messenger.heartbeat.HeartbeatMonitor;
+import com.deadmandungeons.connect.commons.messenger.io.FrameCompressor;
+import com.deadmandungeons.connect.commons.messenger.io.FrameDecoder;
+import com.deadmandungeons.connect.commons.messenger.io.FrameEncoder;
+import com.deadmandungeons.connect.commons.messenger.messages.HeartbeatMessage;
 import com.deadmandungeons.connect.commons.messenger.messages.Message;
 import com.deadmandungeons.connect.commons.messenger.messages.MessageType;
 import com.deadmandungeons.connect.commons.messenger.messages.StatusMessage;
+import com.deadmandungeons.connect.commons.messenger.metrics.StripedMessengerMetrics;
+import com.deadmandungeons.connect.commons.messenger.serializers.CraftbukkitGsonMessageSerializer;
+import com.deadmandungeons.connect.commons.messenger.serializers.JsonMessageSerializer;
+import com.deadmandungeons.connect.commons.messenger.serializers.MessageSerializer;
+import com.deadmandungeons.connect.commons.messenger.status.StatusTable;
+import com.google.common.base.Supplier;
+import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
 
 import static org.junit.Assert.assertTrue;
 
@@ -77,6 +126,1025 @@ public class MessengerTest {
         assertTrue(((StatusMessage) deserialized[0]).getStatus() == StatusMessage.Status.ONLINE);
     }
 
+    @Test
+    public void testMessengerDeserializationWithTypeNotFirst() throws MessageParseException {
+        String statusMessageJson = "{\"unknown\":{\"a\":[1,2]},\"id\":\"780e33be-1d57-4f15-9b8e-370e82c2378b\",\"type\":\"Status\",\"status\":\"offline\"}";
+
+        Messenger messenger = Messenger.builder().build();
+        Message[] deserialized = messenger.deserialize(statusMessageJson);
+
+        assertTrue(deserialized != null && deserialized.length == 1);
+        StatusMessage statusMessage = (StatusMessage) deserialized[0];
+        assertTrue(statusMessage.getType().equals("status"));
+        assertTrue(statusMessage.getId().equals(UUID.fromString("780e33be-1d57-4f15-9b8e-370e82c2378b")));
+        assertTrue(statusMessage.getStatus() == StatusMessage.Status.OFFLINE);
+    }
+
+    @Test
+    public void testCraftbukkitSerializerRoundTrip() throws MessageParseException {
+        StatusMessage statusMessage = new StatusMessage(UUID.randomUUID(), StatusMessage.Status.OFFLINE);
+
+        MessageSerializer serializer = new CraftbukkitGsonMessageSerializer();
+        serializer.registerMessageType(statusMessage.getType(), StatusMessage.class, new Supplier<StatusMessage>() {
+            @Override
+            public StatusMessage get() {
+                return new StatusMessage(null, null);
+            }
+        });
+        String json = serializer.toJson(new Message[]{statusMessage});
+        assertTrue(json.startsWith("[{\"type\":\"status\""));
+
+        Message[] deserialized = serializer.fromJson(json, Message[].class);
+        assertTrue(deserialized.length == 1);
+        assertTrue(((StatusMessage) deserialized[0]).getId().equals(statusMessage.getId()));
+        assertTrue(((StatusMessage) deserialized[0]).getStatus() == statusMessage.getStatus());
+
+        // the properties preceding the type are buffered, and read from the buffered tree
+        String reordered = "{\"status\":\"online\",\"id\":\"" + statusMessage.getId() + "\",\"unknown\":[1],\"type\":\"status\"}";
+        StatusMessage buffered = serializer.fromJson(reordered, StatusMessage.class);
+        assertTrue(buffered.getId().equals(statusMessage.getId()));
+        assertTrue(buffered.getStatus() == StatusMessage.Status.ONLINE);
+    }
+
+    @Test
+    public void testMessengerSerializerBackends() throws MessageParseException {
+        StatusMessage statusMessage = new StatusMessage(UUID.randomUUID(), StatusMessage.Status.ONLINE);
+        String expected = Messenger.builder().build().serialize(statusMessage);
+
+        for (SerializerBackend backend : SerializerBackend.values()) {
+            Messenger messenger = Messenger.builder().serializerBackend(backend).build();
+            String json = messenger.serialize(statusMessage);
+            assertTrue(json.equals(expected));
+            assertTrue(((StatusMessage) messenger.deserialize(json)[0]).getId().equals(statusMessage.getId()));
+        }
+    }
+
+    @Test(expected = MessageParseException.class)
+    public void testMessengerDeserializationWithUnknownType() throws MessageParseException {
+        Messenger.builder().build().deserialize("{\"type\":\"unknown\"}");
+    }
+
+    @Test
+    public void testMessengerDeserializationWithLenientJson() throws MessageParseException {
+        List<String> lenientJson = Arrays.asList(
+                "{'type':'status','status':'online'}",
+                "{type:\"status\",status:\"online\"}",
+                "{\"type\":\"status\",\"status\":\"online\",\"x\":NaN}",
+                "\uFEFF{\"type\":\"status\",\"status\":\"online\"}",
+                "{\"type\":\"status\",\"status\":\"online\",\"x\":truex}",
+                "{\"type\":\"status\",\"status\":\"online\",\"x\":\"\\x\"}");
+        for (SerializerBackend backend : SerializerBackend.values()) {
+            Messenger messenger = Messenger.builder().serializerBackend(backend).build();
+            for (String json : lenientJson) {
+                if (backend != SerializerBackend.JSON) {
+                    // the default backend accepts the same lenient JSON as Gson
+                    assertTrue(((StatusMessage) messenger.deserialize(json)[0]).getStatus() == StatusMessage.Status.ONLINE);
+                    continue;
+                }
+                try {
+                    messenger.deserialize(json);
+                    assertTrue(false);
+                } catch (MessageParseException e) {
+                    // expected
+                }
+            }
+        }
+    }
+
+    @Test(expected = MessageParseException.class)
+    public void testMessengerDeserializationWithNonAsciiHexEscape() throws MessageParseException {
+        // U+0661 is a digit, but not a hex digit of an escape sequence
+        Messenger messenger = Messenger.builder().serializerBackend(SerializerBackend.JSON).build();
+        messenger.deserialize("{\"type\":\"status\",\"status\":\"online\",\"x\":\"\\u0\u0661ab\"}");
+    }
+
+    @Test
+    public void testMessengerDeserializationWithMalformedNumber() {
+        Messenger messenger = Messenger.builder().serializerBackend(SerializerBackend.JSON).build();
+        for (String number : Arrays.asList("1-2", "01", "-", "1.", ".5", "1e", "1e+", "2.5E-3-")) {
+            // the properties preceding the type are copied, so a malformed number must not be copied as raw JSON
+            try {
+                messenger.deserialize("{\"unknown\":[" + number + "],\"type\":\"status\",\"status\":\"online\"}");
+                assertTrue(false);
+            } catch (MessageParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testMessengerStreamingSerialization() throws IOException, MessageParseException {
+        Message[] messages = new Message[100];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new StatusMessage(UUID.randomUUID(), StatusMessage.Status.values()[i % 2]);
+        }
+
+        Messenger messenger = Messenger.builder().build();
+        StringWriter writer = new StringWriter();
+        messenger.serialize(messages, writer);
+        assertTrue(writer.toString().equals(messenger.serialize(messages)));
+
+        MessageCursor cursor = messenger.openCursor(new StringReader(writer.toString()));
+        for (Message message : messages) {
+            assertTrue(cursor.hasNext());
+            StatusMessage deserialized = (StatusMessage) cursor.next();
+            assertTrue(deserialized.getId().equals(((StatusMessage) message).getId()));
+            assertTrue(deserialized.getStatus() == ((StatusMessage) message).getStatus());
+        }
+        assertTrue(!cursor.hasNext());
+        cursor.close();
+    }
+
+    @Test(expected = MessageParseException.class)
+    public void testMessengerDeserializationWithEmptyArray() throws MessageParseException {
+        Messenger.builder().build().deserialize(" [ ] ");
+    }
+
+    @Test
+    public void testMessengerSerializationWithGeneratedCodec() throws MessageParseException {
+        assertTrue(GeneratedMessageCodecs.find(GeneratedMessageType.class, null) != null);
+        assertTrue(GeneratedMessageCodecs.find(PrivateMessageType.class, null) == null);
+
+        GeneratedMessageType message = new GeneratedMessageType(42, true, "Generated Codecs Work", StatusMessage.Status.ONLINE);
+
+        Messenger messenger = Messenger.builder().registerMessageType(GeneratedMessageType.class).build();
+        String json = messenger.serialize(message);
+        assertTrue(json.equals("[{\"type\":\"generated\",\"count\":42,\"flag\":true,\"name\":\"Generated Codecs Work\",\"status\":\"online\"}]"));
+
+        GeneratedMessageType deserialized = (GeneratedMessageType) messenger.deserialize(json.replace("online", "ONLINE"))[0];
+        assertTrue(deserialized.count == message.count && deserialized.flag == message.flag);
+        assertTrue(deserialized.getName().equals(message.getName()));
+        assertTrue(deserialized.getStatus() == StatusMessage.Status.ONLINE);
+
+        // absent fields keep the defaults of the allocated instance, like the reflective codec
+        GeneratedMessageType partial = (GeneratedMessageType) messenger.deserialize("[{\"type\":\"generated\",\"count\":7}]")[0];
+        assertTrue(partial.count == 7 && !partial.flag && partial.getName() == null && partial.getStatus() == null);
+    }
+
+    @Test
+    public void testInstantiationStrategyReusesProbedInstance() {
+        int constructed = ConstructedMessageType.constructed.get();
+        Supplier<ConstructedMessageType> supplier = DefaultInstantiationStrategy.INSTANCE.resolve(ConstructedMessageType.class);
+        assertTrue(ConstructedMessageType.constructed.get() == constructed + 1);
+
+        // the instance created to probe the constructor is the first instance supplied
+        ConstructedMessageType first = supplier.get();
+        assertTrue(ConstructedMessageType.constructed.get() == constructed + 1);
+        assertTrue(supplier.get() != first && ConstructedMessageType.constructed.get() == constructed + 2);
+    }
+
+    @Test
+    public void testMessengerDeserializationWithoutEmptyConstructor() throws MessageParseException {
+        StrictMessageType strictMessage = new StrictMessageType("Allocation Works");
+
+        Messenger messenger = Messenger.builder().registerMessageType(StrictMessageType.class).build();
+        String json = messenger.serialize(strictMessage);
+        Message[] deserialized = messenger.deserialize(json);
+
+        assertTrue(deserialized != null && deserialized.length == 1);
+        assertTrue(deserialized[0].getType().equals(strictMessage.getType()));
+        assertTrue(((StrictMessageType) deserialized[0]).value.equals(strictMessage.value));
+    }
+
+    @Test
+    public void testMessengerBinarySerialization() throws MessageParseException {
+        UUID id = UUID.randomUUID();
+        StatusMessage statusMessage = new StatusMessage(id, StatusMessage.Status.ONLINE);
+        GeneratedMessageType generatedMessage = new GeneratedMessageType(-7, true, "Binary \u00e9 Works", StatusMessage.Status.OFFLINE);
+
+        Messenger messenger = Messenger.builder().registerMessageType(GeneratedMessageType.class).build();
+        byte[] binary = messenger.serializeBinary(statusMessage, generatedMessage);
+        Message[] deserialized = messenger.deserialize(binary);
+
+        assertTrue(deserialized != null && deserialized.length == 2);
+        assertTrue(((StatusMessage) deserialized[0]).getId().equals(id));
+        assertTrue(((StatusMessage) deserialized[0]).getStatus() == StatusMessage.Status.ONLINE);
+        GeneratedMessageType generated = (GeneratedMessageType) deserialized[1];
+        assertTrue(generated.count == -7 && generated.flag);
+        assertTrue(generated.getName().equals(generatedMessage.getName()));
+        assertTrue(generated.getStatus() == StatusMessage.Status.OFFLINE);
+
+        // JSON payloads are detected and still accepted
+        byte[] json = messenger.serialize(statusMessage).getBytes(StandardCharsets.UTF_8);
+        deserialized = messenger.deserialize(json);
+        assertTrue(deserialized.length == 1 && ((StatusMessage) deserialized[0]).getId().equals(id));
+    }
+
+    @Test(expected = MessageParseException.class)
+    public void testMessengerBinaryDeserializationWithInvalidFieldTag() throws MessageParseException {
+        Messenger.builder().build().deserialize(new byte[] {(byte) 0xC1, 1, 1, 1, 1, 0});
+    }
+
+    @Test
+    public void testMessengerBinaryDeserializationWithIntOverflow() throws MessageParseException {
+        Messenger longMessenger = Messenger.builder().registerMessageType(LongValueType.class).build();
+        Messenger intMessenger = Messenger.builder().registerMessageType(IntValueType.class).build();
+
+        byte[] inRange = longMessenger.serializeBinary(new LongValueType(-5));
+        assertTrue(((IntValueType) intMessenger.deserialize(inRange)[0]).value == -5);
+        try {
+            intMessenger.deserialize(longMessenger.serializeBinary(new LongValueType(1L << 40)));
+            assertTrue(false);
+        } catch (MessageParseException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMessengerUtf8Serialization() throws MessageParseException {
+        GeneratedMessageType message = new GeneratedMessageType(3, false, "UTF-8 \u00e9\u4e2d\ud83d\ude00 Works", StatusMessage.Status.ONLINE);
+
+        Messenger messenger = Messenger.builder().registerMessageType(GeneratedMessageType.class).build();
+        byte[] bytes = messenger.serializeToBytes(message);
+        assertTrue(Arrays.equals(bytes, messenger.serialize(message).getBytes(StandardCharsets.UTF_8)));
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        assertTrue(messenger.serializeTo(buffer, message) == bytes.length && !buffer.hasRemaining());
+        buffer.flip();
+
+        for (Message[] deserialized : Arrays.asList(messenger.deserialize(bytes), messenger.deserialize(buffer))) {
+            assertTrue(deserialized.length == 1);
+            assertTrue(((GeneratedMessageType) deserialized[0]).getName().equals(message.getName()));
+        }
+    }
+
+    @Test
+    public void testMessengerFrameCodec() throws IOException, MessageParseException {
+        Messenger messenger = Messenger.builder().build();
+        StatusMessage first = new StatusMessage(UUID.randomUUID(), StatusMessage.Status.ONLINE);
+        StatusMessage second = new StatusMessage(UUID.randomUUID(), StatusMessage.Status.OFFLINE);
+
+        FrameEncoder encoder = new FrameEncoder(messenger);
+        FrameEncoder binaryEncoder = new FrameEncoder(messenger, 1024, true);
+        encoder.offer(first);
+        binaryEncoder.offer(first, second);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(encoder.flush(Channels.newChannel(out)) && !encoder.hasPending());
+        assertTrue(binaryEncoder.flush(Channels.newChannel(out)) && !binaryEncoder.hasPending());
+
+        // feed the frames in chunks that split both the headers and the payloads
+        FrameDecoder decoder = new FrameDecoder(messenger);
+        ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+        List<Message[]> frames = new ArrayList<>();
+        while (in.hasRemaining()) {
+            ByteBuffer chunk = in.duplicate();
+            chunk.limit(Math.min(in.limit(), in.position() + 7));
+            in.position(chunk.limit());
+            decoder.feed(chunk);
+            for (Message[] frame = decoder.poll(); frame != null; frame = decoder.poll()) {
+                frames.add(frame);
+            }
+        }
+        assertTrue(frames.size() == 2 && decoder.bufferedBytes() == 0);
+        assertTrue(frames.get(0).length == 1 && ((StatusMessage) frames.get(0)[0]).getId().equals(first.getId()));
+        assertTrue(frames.get(1).length == 2 && ((StatusMessage) frames.get(1)[1]).getId().equals(second.getId()));
+
+        try {
+            decoder = new FrameDecoder(messenger, 16);
+            decoder.feed(ByteBuffer.wrap(new byte[] {0, 0, 0, 17, '['}));
+            decoder.poll();
+            assertTrue(false);
+        } catch (FrameTooLargeException e) {
+            // expected
+        }
+
+        try {
+            new FrameDecoder(messenger, Integer.MAX_VALUE);
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        new FrameDecoder(messenger, Integer.MAX_VALUE - FrameEncoder.HEADER_LENGTH);
+    }
+
+    @Test
+    public void testMessageBatcher() throws InterruptedException, MessageParseException {
+        final Messenger messenger = Messenger.builder().build();
+        final List<byte[]> batches = new ArrayList<>();
+        final MessageBatcher batcher = MessageBatcher.builder(messenger, new MessageBatcher.Handler() {
+            @Override
+            public void handle(byte[] batch, int messageCount) {
+                synchronized (batches) {
+                    batches.add(batch);
+                }
+            }
+        }).maxBatchSize(50).build();
+
+        Thread[] producers = new Thread[4];
+        for (int i = 0; i < producers.length; i++) {
+            producers[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        batcher.add(new StatusMessage(UUID.randomUUID(), StatusMessage.Status.ONLINE));
+                    }
+                }
+            };
+            producers[i].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        batcher.close();
+
+        int total = 0;
+        for (byte[] batch : batches) {
+            int count = messenger.deserialize(batch).length;
+            assertTrue(count > 0 && count <= 50);
+            total += count;
+        }
+        assertTrue(total == 4000);
+    }
+
+    @Test
+    public void testMessageBatcherFailure() throws InterruptedException {
+        final AtomicInteger handled = new AtomicInteger();
+        final AtomicReference<Message[]> failed = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(2);
+        MessageBatcher batcher = MessageBatcher.builder(Messenger.builder().build(), new MessageBatcher.Handler() {
+            @Override
+            public void handle(byte[] batch, int messageCount) {
+                if (handled.getAndIncrement() == 0) {
+                    throw new IllegalStateException("connection lost");
+                }
+                latch.countDown();
+            }
+        }).failureHandler(new MessageBatcher.FailureHandler() {
+            @Override
+            public void batchFailed(Message[] batch, RuntimeException cause) {
+                failed.set(batch);
+                latch.countDown();
+            }
+        }).maxBatchSize(1).build();
+
+        StatusMessage first = new StatusMessage(UUID.randomUUID(), StatusMessage.Status.ONLINE);
+        batcher.add(first);
+        batcher.add(new StatusMessage(UUID.randomUUID(), StatusMessage.Status.OFFLINE));
+
+        // the batcher keeps flushing after a failed batch
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(failed.get().length == 1 && failed.get()[0] == first);
+        batcher.close();
+    }
+
+    @Test
+    public void testMessageBatcherWithRejectingExecutor() {
+        final AtomicInteger handled = new AtomicInteger();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        executor.shutdown();
+        MessageBatcher batcher = MessageBatcher.builder(Messenger.builder().build(), new MessageBatcher.Handler() {
+            @Override
+            public void handle(byte[] batch, int messageCount) {
+                handled.addAndGet(messageCount);
+            }
+        }).maxBatchSize(1).executor(executor).build();
+
+        // every rejected flush runs on the calling thread, so the batcher never stops flushing
+        for (int i = 0; i < 3; i++) {
+            batcher.add(new StatusMessage(UUID.randomUUID(), StatusMessage.Status.ONLINE));
+            assertTrue(handled.get() == i + 1);
+        }
+        batcher.close();
+    }
+
+    @Test
+    public void testHeartbeatMonitor() throws InterruptedException, MessageParseException {
+        final Messenger messenger = Messenger.builder().build();
+        final List<String> suspected = new ArrayList<>();
+        final CountDownLatch deadSuspected = new CountDownLatch(1);
+        final AtomicReference<HeartbeatMonitor<String>> monitorRef = new AtomicReference<>();
+        final FrameDecoder decoder = new FrameDecoder(messenger);
+        HeartbeatMonitor<String> monitor = HeartbeatMonitor.builder(messenger, new HeartbeatMonitor.Listener<String>() {
+            @Override
+            public void sendHeartbeat(String peer, ByteBuffer frame) {
+                if (peer.equals("alive")) {
+                    try {
+                        decoder.feed(frame);
+                        assertTrue(decoder.poll()[0] instanceof HeartbeatMessage);
+                    } catch (MessageParseException e) {
+                        throw new AssertionError(e);
+                    }
+                    monitorRef.get().heartbeatReceived(peer);
+                }
+            }
+
+            @Override
+            public void peerSuspected(String peer, double phi) {
+                synchronized (suspected) {
+                    suspected.add(peer);
+                }
+                deadSuspected.countDown();
+            }
+
+            @Override
+            public void peerRecovered(String peer) {
+            }
+        }).interval(20, TimeUnit.MILLISECONDS).acceptablePause(200, TimeUnit.MILLISECONDS).build();
+        monitorRef.set(monitor);
+
+        monitor.addPeer("alive");
+        monitor.addPeer("dead");
+        assertTrue(deadSuspected.await(5, TimeUnit.SECONDS));
+        assertTrue(monitor.isSuspected("dead") && !monitor.isSuspected("alive"));
+        monitor.close();
+
+        synchronized (suspected) {
+            assertTrue(suspected.equals(Arrays.asList("dead")));
+        }
+    }
+
+    @Test
+    public void testHeartbeatMonitorSurvivesFailingListener() throws InterruptedException {
+        final CountDownLatch heartbeats = new CountDownLatch(3);
+        HeartbeatMonitor<String> monitor = HeartbeatMonitor.builder(Messenger.builder().build(), new HeartbeatMonitor.Listener<String>() {
+            @Override
+            public void sendHeartbeat(String peer, ByteBuffer frame) {
+                heartbeats.countDown();
+                if (heartbeats.getCount() == 2) {
+                    throw new IllegalStateException("connection lost");
+                } else if (heartbeats.getCount() == 1) {
+                    throw new AssertionError("listener failure");
+                }
+            }
+
+            @Override
+            public void peerSuspected(String peer, double phi) {
+            }
+
+            @Override
+            public void peerRecovered(String peer) {
+            }
+        }).interval(10, TimeUnit.MILLISECONDS).build();
+
+        // the peer is still monitored after the listener throws an exception and an error
+        monitor.addPeer("peer");
+        assertTrue(heartbeats.await(5, TimeUnit.SECONDS));
+        monitor.close();
+    }
+
+    @Test
+    public void testStatusTableCoalescing() {
+        UUID flapping = UUID.randomUUID();
+        UUID stable = UUID.randomUUID();
+        StatusTable table = new StatusTable();
+        for (int i = 0; i < 10; i++) {
+            table.update(new StatusMessage(flapping, i % 2 == 0 ? StatusMessage.Status.ONLINE : StatusMessage.Status.OFFLINE));
+        }
+        table.update(new StatusMessage(stable, StatusMessage.Status.ONLINE));
+
+        StatusMessage[] drained = table.drainPending();
+        assertTrue(drained.length == 2 && table.pendingSize() == 0 && table.drainPending().length == 0);
+        for (StatusMessage message : drained) {
+            assertTrue(message.getStatus() == (message.getId().equals(flapping) ? StatusMessage.Status.OFFLINE : StatusMessage.Status.ONLINE));
+        }
+
+        Map<UUID, StatusMessage.Status> snapshot = table.snapshot();
+        table.update(new StatusMessage(stable, StatusMessage.Status.OFFLINE));
+        assertTrue(snapshot.size() == 2 && snapshot.get(stable) == StatusMessage.Status.ONLINE);
+        assertTrue(table.getStatus(stable) == StatusMessage.Status.OFFLINE && table.pendingSize() == 1);
+    }
+
+    @Test
+    public void testUuidMap() {
+        Random random = new Random(42);
+        for (boolean offHeap : new boolean[] {false, true}) {
+            UuidMap<Integer> map = new UuidMap<>(0, offHeap);
+            Map<UUID, Integer> expected = new HashMap<>();
+            List<UUID> keys = new ArrayList<>();
+            for (int i = 0; i < 20000; i++) {
+                UUID key = (keys.isEmpty() || random.nextInt(3) > 0 ? new UUID(random.nextInt(64), random.nextLong()) : keys.get(random.nextInt(keys.size())));
+                keys.add(key);
+                if (random.nextInt(4) == 0) {
+                    assertTrue(Objects.equals(map.remove(key), expected.remove(key)));
+                } else {
+                    assertTrue(Objects.equals(map.put(key, i), expected.put(key, i)));
+                }
+            }
+            assertTrue(map.size() == expected.size());
+            for (UUID key : keys) {
+                assertTrue(Objects.equals(map.get(key.getMostSignificantBits(), key.getLeastSignificantBits()), expected.get(key)));
+            }
+        }
+    }
+
+    @Test
+    public void testUuidEncoding() throws IOException {
+        BaseEncoding base64 = BaseEncoding.base64Url().omitPadding();
+        Random random = new Random(7);
+        long[] bits = new long[2];
+        for (int i = 0; i < 1000; i++) {
+            UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            byte[] bytes = ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+            String encoded = ConnectUtils.encodeUuidBase64(uuid);
+            assertTrue(encoded.equals(base64.encode(bytes)));
+
+            StringBuilder builder = new StringBuilder("id=");
+            ConnectUtils.appendUuid(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), builder);
+            assertTrue(builder.toString().equals("id=" + uuid));
+            assertTrue(ConnectUtils.parseId(builder, 3, builder.length(), bits));
+            assertTrue(bits[0] == uuid.getMostSignificantBits() && bits[1] == uuid.getLeastSignificantBits());
+
+            assertTrue(uuid.equals(ConnectUtils.parseId(encoded)));
+            assertTrue(uuid.equals(ConnectUtils.parseId(uuid.toString().toUpperCase())));
+            assertTrue(uuid.equals(ConnectUtils.parseId(uuid.toString().replace("-", ""))));
+        }
+
+        assertTrue(ConnectUtils.parseId("c35a67c9-b797-469f-a893-cf81b410489g") == null);
+        assertTrue(ConnectUtils.parseId("c35a67c9b797-469f-a893-cf81b41048981") == null);
+        assertTrue(ConnectUtils.parseId("reBaGYgHQ8OoTqfamvtt+A") == null);
+        assertTrue(ConnectUtils.decodeUuidBase64("reBaGYgHQ8OoTqfamvttv") == null);
+        assertTrue(ConnectUtils.parseId(null) == null);
+
+        // the last character only carries 2 bits, so its other 4 bits must be zero
+        assertTrue(ConnectUtils.parseId("w1pnybeXRp-ok8-BtBBImA") != null);
+        assertTrue(ConnectUtils.parseId("w1pnybeXRp-ok8-BtBBImB") == null);
+        assertTrue(ConnectUtils.decodeUuidBase64("w1pnybeXRp-ok8-BtBBImB") == null);
+    }
+
+    @Test
+    public void testMessengerCompactUuids() throws MessageParseException {
+        UUID id = UUID.fromString("c35a67c9-b797-469f-a893-cf81b4104898");
+        StatusMessage statusMessage = new StatusMessage(id, StatusMessage.Status.ONLINE);
+
+        Messenger messenger = Messenger.builder().compactUuids(true).build();
+        String json = messenger.serialize(statusMessage);
+        assertTrue(json.equals("[{\"type\":\"status\",\"status\":\"online\",\"id\":\"w1pnybeXRp-ok8-BtBBImA\"}]"));
+
+        for (String form : Arrays.asList(id.toString(), id.toString().replace("-", ""), ConnectUtils.encodeUuidBase64(id))) {
+            Message[] deserialized = messenger.deserialize("{\"type\":\"status\",\"status\":\"online\",\"id\":\"" + form + "\"}");
+            assertTrue(((StatusMessage) deserialized[0]).getId().equals(id));
+        }
+    }
+
+    @Test
+    public void testMessengerSymbolLookupIgnoresCase() throws MessageParseException {
+        UUID id = UUID.randomUUID();
+        Messenger messenger = Messenger.builder().build();
+        Message[] deserialized = messenger.deserialize("{\"type\":\" StaTUS \",\"status\":\"oFFline\",\"id\":\"" + id + "\"}");
+        assertTrue(((StatusMessage) deserialized[0]).getStatus() == StatusMessage.Status.OFFLINE);
+
+        EnumCodec<StatusMessage.Status> codec = EnumCodec.of(StatusMessage.Status.class);
+        char[] chars = "[Online]".toCharArray();
+        assertTrue(codec.valueOf(chars, 1, 7) == StatusMessage.Status.ONLINE && codec.valueOf(chars, 1, 6) == null);
+        assertTrue(codec.nameOf(StatusMessage.Status.ONLINE) == codec.nameOf(StatusMessage.Status.ONLINE));
+    }
+
+    @Test
+    public void testMessengerBuildIsDeferred() throws MessageParseException {
+        UUID id = UUID.randomUUID();
+        Messenger.Builder builder = Messenger.builder().registerMessageType(ArrayMessageType.class).warmUp(true);
+        Messenger first = builder.build();
+        Messenger second = builder.registerMessageType(ArrayMessageType.class).build();
+
+        String json = first.serialize(new StatusMessage(id, StatusMessage.Status.ONLINE));
+        assertTrue(((StatusMessage) second.deserialize(json)[0]).getId().equals(id));
+        assertTrue(second.deserialize(first.serializeBinary(new StatusMessage(id, StatusMessage.Status.ONLINE))).length == 1);
+    }
+
+    @Test
+    public void testMessengerRegistrationOrder() {
+        Messenger first = Messenger.builder().registerMessageType(ArrayMessageType.class).registerMessageType(PrivateMessageType.class).build();
+        Messenger second = Messenger.builder().registerMessageType(PrivateMessageType.class).registerMessageType(ArrayMessageType.class).build();
+
+        List<Class<? extends Message>> firstTypes = new ArrayList<>(first.getMessageTypes());
+        List<Class<? extends Message>> secondTypes = new ArrayList<>(second.getMessageTypes());
+        assertTrue(firstTypes.indexOf(ArrayMessageType.class) < firstTypes.indexOf(PrivateMessageType.class));
+        assertTrue(secondTypes.indexOf(PrivateMessageType.class) < secondTypes.indexOf(ArrayMessageType.class));
+    }
+
+    @Test
+    public void testMessengerWarmUpFailure() {
+        // Gson refuses to write NaN, so the default value of the type cannot be serialized
+        Messenger.builder().registerMessageType(NanMessageType.class).build();
+        try {
+            Messenger.builder().registerMessageType(NanMessageType.class).warmUp(true).build();
+            assertTrue(false);
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testJsonSerializerMatchesGson() throws MessageParseException {
+        MessageSerializer json = new JsonMessageSerializer();
+        MessageSerializer gson = new CraftbukkitGsonMessageSerializer();
+        for (MessageSerializer serializer : Arrays.asList(json, gson)) {
+            serializer.registerMessageType("generated", GeneratedMessageType.class, new Supplier<GeneratedMessageType>() {
+                @Override
+                public GeneratedMessageType get() {
+                    return new GeneratedMessageType(0, false, null, null);
+                }
+            });
+        }
+
+        GeneratedMessageType message = new GeneratedMessageType(-42, true, "tab\t \"quote\" \\ \u00e9\u2028 \ud83d\ude00", StatusMessage.Status.OFFLINE);
+        String serialized = json.toJson(new Message[] {message, null});
+        assertTrue(serialized.equals(gson.toJson(new Message[] {message, null})));
+
+        String reordered = " { \"unknown\" : { \"a\" : [ 1 , 2.5e3 , \"\\u0041\" ] } , \"count\" : \"7\" ,"
+                + " \"name\" : \"a\\/b\\n\" , \"type\" : \"GENERATED\" , \"flag\" : true , \"status\" : \"Online\" } ";
+        for (MessageSerializer serializer : Arrays.asList(json, gson)) {
+            GeneratedMessageType read = (GeneratedMessageType) serializer.fromJson(serialized, Message[].class)[0];
+            assertTrue(read.count == -42 && read.flag && read.getName().equals(message.getName()));
+
+            read = serializer.fromJson(reordered, GeneratedMessageType.class);
+            assertTrue(read.count == 7 && read.flag && read.getName().equals("a/b\n"));
+        }
+
+        for (String malformed : Arrays.asList("[{\"type\":\"generated\",}]", "[{\"type\":\"generated\"}", "{\"type\":\"generated\",\"count\":1.5}", "[{\"type\":\"generated\"}] x")) {
+            try {
+                json.fromJson(malformed, Message[].class);
+                assertTrue(false);
+            } catch (MessageParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testMessengerValidationPolicies() throws MessageParseException {
+        CountingMessageType message = new CountingMessageType("counted");
+        Messenger messenger = Messenger.builder().registerMessageType(CountingMessageType.class)
+                .validationPolicy(ValidationPolicy.ONCE_PER_INSTANCE).build();
+        int validations = CountingMessageType.validations.get();
+        for (int i = 0; i < 3; i++) {
+            messenger.serialize(message);
+        }
+        assertTrue(CountingMessageType.validations.get() == validations + 1);
+
+        Message[] batch = new Message[2048];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = new StatusMessage(UUID.randomUUID(), StatusMessage.Status.ONLINE);
+        }
+        batch[batch.length - 7] = new StatusMessage(null, StatusMessage.Status.ONLINE);
+        try {
+            Messenger.builder().build().serialize(batch);
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertTrue(Messenger.builder().validationPolicy(ValidationPolicy.TRUSTED).build().serialize(batch) != null);
+
+        String invalid = "{\"type\":\"status\",\"status\":\"online\"}";
+        assertTrue(Messenger.builder().build().deserialize(invalid).length == 1);
+        try {
+            Messenger.builder().validationPolicy(ValidationPolicy.ON_RECEIVE).build().deserialize(invalid);
+            assertTrue(false);
+        } catch (MessageParseException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMessengerParallelDecoding() throws MessageParseException {
+        Message[] messages = new Message[5000];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new StatusMessage(UUID.randomUUID(), StatusMessage.Status.values()[i % 2]);
+        }
+        Messenger messenger = Messenger.builder().parallelDecodeThreshold(1).build();
+        String json = messenger.serialize(messages);
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+        for (Message[] deserialized : Arrays.asList(messenger.deserialize(json), messenger.deserialize(bytes))) {
+            assertTrue(deserialized.length == messages.length);
+            for (int i = 0; i < messages.length; i++) {
+                assertTrue(((StatusMessage) deserialized[i]).getId().equals(((StatusMessage) messages[i]).getId()));
+            }
+        }
+
+        try {
+            messenger.deserialize(json.substring(0, json.length() - 1) + ",{\"type\":\"unknown\"}]");
+            assertTrue(false);
+        } catch (MessageParseException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testAsyncMessenger() throws Exception {
+        final List<Runnable> mainThreadTasks = new ArrayList<>();
+        final CountDownLatch scheduled = new CountDownLatch(1);
+        Executor mainThread = new Executor() {
+            @Override
+            public synchronized void execute(Runnable command) {
+                mainThreadTasks.add(command);
+                scheduled.countDown();
+            }
+        };
+        StatusMessage statusMessage = new StatusMessage(UUID.randomUUID(), StatusMessage.Status.ONLINE);
+        try (AsyncMessenger messenger = AsyncMessenger.builder(Messenger.builder().build()).threads(1).callbackExecutor(mainThread).build()) {
+            String json = messenger.serialize(statusMessage).get(5, TimeUnit.SECONDS);
+            assertTrue(json.equals(messenger.getMessenger().serialize(statusMessage)));
+
+            final AtomicReference<Message[]> received = new AtomicReference<>();
+            ListenableFuture<Message[]> future = messenger.deserialize(json);
+            messenger.addCallback(future, new FutureCallback<Message[]>() {
+                @Override
+                public void onSuccess(Message[] result) {
+                    received.set(result);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    assertTrue(false);
+                }
+            });
+            assertTrue(scheduled.await(5, TimeUnit.SECONDS));
+            synchronized (mainThread) {
+                assertTrue(received.get() == null && mainThreadTasks.size() == 1);
+                mainThreadTasks.get(0).run();
+            }
+            assertTrue(((StatusMessage) received.get()[0]).getId().equals(statusMessage.getId()));
+
+            try {
+                messenger.deserialize("{\"type\":\"unknown\"}").get(5, TimeUnit.SECONDS);
+                assertTrue(false);
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof MessageParseException);
+            }
+        }
+    }
+
+    @Test
+    public void testMessengerMetrics() throws MessageParseException {
+        StripedMessengerMetrics metrics = new StripedMessengerMetrics();
+        Messenger messenger = Messenger.builder().metrics(metrics).build();
+        String statusType = Message.getType(StatusMessage.class);
+        String heartbeatType = Message.getType(HeartbeatMessage.class);
+
+        Message[] messages = new Message[4];
+        for (int i = 0; i < 3; i++) {
+            messages[i] = new StatusMessage(UUID.randomUUID(), StatusMessage.Status.ONLINE);
+        }
+        messages[3] = new HeartbeatMessage("data");
+        byte[] json = messenger.serializeToBytes(messages);
+        messenger.deserialize(json);
+
+        StripedMessengerMetrics.TypeMetrics status = metrics.snapshot(statusType);
+        StripedMessengerMetrics.TypeMetrics heartbeat = metrics.snapshot(heartbeatType);
+        assertTrue(status.getEncodedMessages() == 3 && status.getDecodedMessages() == 3);
+        assertTrue(heartbeat.getEncodedMessages() == 1 && heartbeat.getDecodedMessages() == 1);
+        assertTrue(status.getEncodedBytes() + heartbeat.getEncodedBytes() <= json.length);
+        assertTrue(status.getEncodedBytes() > heartbeat.getEncodedBytes());
+        assertTrue(status.getEncodeLatency().getCount() == 3 && status.getDecodeLatency().getCount() == 3);
+        assertTrue(status.getDecodeLatency().getPercentile(50) > 0);
+
+        try {
+            messenger.serialize(new StatusMessage(null, StatusMessage.Status.ONLINE));
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            messenger.deserialize("{\"type\":\"unknown\"}");
+            assertTrue(false);
+        } catch (MessageParseException e) {
+            // expected
+        }
+        assertTrue(metrics.snapshot(statusType).getInvalidEncodes() == 1);
+        assertTrue(metrics.snapshot(StripedMessengerMetrics.UNKNOWN_TYPE).getParseFailures() == 1);
+
+        // invalid received messages are recorded under their own type
+        Messenger validating = Messenger.builder().metrics(metrics).validationPolicy(ValidationPolicy.ON_RECEIVE).build();
+        try {
+            validating.deserialize("{\"type\":\"status\",\"id\":\"" + UUID.randomUUID() + "\"}");
+            assertTrue(false);
+        } catch (MessageParseException e) {
+            // expected
+        }
+        assertTrue(metrics.snapshot(statusType).getInvalidDecodes() == 1);
+        assertTrue(metrics.snapshot(StripedMessengerMetrics.UNKNOWN_TYPE).getInvalidDecodes() == 0);
+    }
+
+    @Test
+    public void testMessengerPooledDecoding() throws MessageParseException {
+        Messenger messenger = Messenger.builder().registerMessageType(PooledMessageType.class).pooledDecoding(4)
+                .validationPolicy(ValidationPolicy.ON_RECEIVE).build();
+
+        PooledMessageType first = (PooledMessageType) messenger.deserialize(messenger.serialize(new PooledMessageType("first", 1)))[0];
+        assertTrue(first.value.equals("first") && first.count == 1);
+        messenger.release(first);
+        assertTrue(first.value == null && first.count == 0);
+
+        PooledMessageType second = (PooledMessageType) messenger.deserialize(messenger.serialize(new PooledMessageType("second", 2)))[0];
+        assertTrue(second == first);
+        assertTrue(second.value.equals("second") && second.count == 2);
+
+        // a reused instance is validated again with its new properties, by every Messenger sharing the pool
+        Messenger other = Messenger.builder().registerMessageType(PooledMessageType.class).pooledDecoding(4)
+                .validationPolicy(ValidationPolicy.ON_RECEIVE).build();
+        other.release(second);
+        try {
+            messenger.deserialize("{\"type\":\"pooled\",\"count\":3}");
+            assertTrue(false);
+        } catch (MessageParseException e) {
+            // expected
+        }
+
+        // immutable Message types are never pooled
+        StatusMessage statusMessage = new StatusMessage(UUID.randomUUID(), StatusMessage.Status.ONLINE);
+        Message status = messenger.deserialize(messenger.serialize(statusMessage))[0];
+        messenger.release(status);
+        assertTrue(((StatusMessage) status).getId().equals(statusMessage.getId()));
+        assertTrue(messenger.deserialize(messenger.serialize(statusMessage))[0] != status);
+    }
+
+    @Test
+    public void testMessengerEnvelopes() throws MessageParseException {
+        Messenger messenger = Messenger.builder().build();
+        UUID id = UUID.randomUUID();
+        UUID forwardedId = UUID.randomUUID();
+        String status = messenger.serialize(new StatusMessage(id, StatusMessage.Status.ONLINE));
+        status = status.substring(1, status.length() - 1);
+        String unknown = "{\"nested\":{\"type\":\"inner\",\"list\":[1,\"]}\"]},\"t\\u0079pe\":\"Forwarded\",\"id\":\"" + forwardedId + "\"}";
+        String json = "[ " + status + ",\n" + unknown + ",{\"type\":\"heartbeat\",\"data\":\"\u00e9\"} ]";
+
+        for (MessageEnvelope[] envelopes : Arrays.asList(messenger.scanEnvelopes(json),
+                messenger.scanEnvelopes(json.getBytes(StandardCharsets.UTF_8)))) {
+            assertTrue(envelopes.length == 3);
+            assertTrue(envelopes[0].getType().equals("status") && envelopes[0].getMessageClass() == StatusMessage.class);
+            assertTrue(envelopes[0].getId().equals(id) && envelopes[0].getRawJson().equals(status));
+            assertTrue(envelopes[1].getType().equals("forwarded") && envelopes[1].getMessageClass() == null);
+            assertTrue(envelopes[1].getId().equals(forwardedId) && envelopes[1].getRawJson().equals(unknown));
+            assertTrue(envelopes[2].getType().equals("heartbeat") && envelopes[2].getId() == null);
+
+            assertTrue(((StatusMessage) envelopes[0].decode()).getId().equals(id));
+            assertTrue(envelopes[0].decode() == envelopes[0].decode());
+            assertTrue(((HeartbeatMessage) envelopes[2].decode()).getData().equals("\u00e9"));
+            try {
+                envelopes[1].decode();
+                assertTrue(false);
+            } catch (MessageParseException e) {
+                // expected
+            }
+        }
+
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        MessageEnvelope heartbeat = messenger.scanEnvelopes(bytes)[2];
+        assertTrue(new String(bytes, heartbeat.getStart(), heartbeat.getEnd() - heartbeat.getStart(), StandardCharsets.UTF_8)
+                .equals(heartbeat.getRawJson()));
+        assertTrue(heartbeat.getRawBytes().remaining() == heartbeat.getEnd() - heartbeat.getStart());
+
+        // like the decoders, the first 'type' property determines the type of the message
+        MessageEnvelope duplicate = messenger.scanEnvelopes("{\"type\":\"heartbeat\",\"type\":\"status\"}")[0];
+        assertTrue(duplicate.getType().equals("heartbeat") && duplicate.getMessageClass() == HeartbeatMessage.class);
+
+        for (String invalid : Arrays.asList("[{\"data\":\"x\"}]", "[{\"type\":\"status\"}", "{\"type\":\"status\",\"id\":\"x\"}",
+                "{\"type\":5}", "{\"type\":null}", "{\"type\":\"heart\\u+062eat\"}", "{\"type\":\"heart\\u0\u0661ab\"}")) {
+            try {
+                messenger.scanEnvelopes(invalid);
+                assertTrue(false);
+            } catch (MessageParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testMessageRouter() throws InterruptedException {
+        int ids = 16;
+        int messagesPerId = 500;
+        final CountDownLatch handled = new CountDownLatch(ids * messagesPerId + 1);
+        final Map<UUID, List<Message>> received = new HashMap<>();
+        final AtomicReference<Message> unhandled = new AtomicReference<>();
+
+        MessageRouter.Handler<StatusMessage> statusHandler = new MessageRouter.Handler<StatusMessage>() {
+            @Override
+            public void handle(StatusMessage message) {
+                List<Message> messages;
+                synchronized (received) {
+                    messages = received.get(message.getId());
+                }
+                // messages of the same id are never handled concurrently, so the list needs no lock
+                messages.add(message);
+                handled.countDown();
+            }
+        };
+        MessageRouter.Handler<Message> defaultHandler = new MessageRouter.Handler<Message>() {
+            @Override
+            public void handle(Message message) {
+                unhandled.set(message);
+                handled.countDown();
+            }
+        };
+
+        List<Message> sent = new ArrayList<>();
+        UUID[] idArray = new UUID[ids];
+        for (int i = 0; i < ids; i++) {
+            idArray[i] = UUID.randomUUID();
+            received.put(idArray[i], new ArrayList<Message>());
+        }
+        for (int i = 0; i < messagesPerId; i++) {
+            for (UUID id : idArray) {
+                sent.add(new StatusMessage(id, StatusMessage.Status.values()[i % 2]));
+            }
+        }
+        HeartbeatMessage heartbeat = new HeartbeatMessage("data");
+
+        try (MessageRouter router = MessageRouter.builder().threads(4).handler(StatusMessage.class, statusHandler)
+                .defaultHandler(defaultHandler).build()) {
+            router.route(sent.toArray(new Message[sent.size()]));
+            router.route(heartbeat);
+            assertTrue(handled.await(10, TimeUnit.SECONDS));
+        }
+
+        assertTrue(unhandled.get() == heartbeat);
+        for (UUID id : idArray) {
+            List<Message> expected = new ArrayList<>();
+            for (Message message : sent) {
+                if (((StatusMessage) message).getId().equals(id)) {
+                    expected.add(message);
+                }
+            }
+            List<Message> actual = received.get(id);
+            assertTrue(actual.size() == expected.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertTrue(actual.get(i) == expected.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testMessageRouterSurvivesFailingHandler() throws InterruptedException {
+        final CountDownLatch handled = new CountDownLatch(2);
+        MessageRouter.Handler<StatusMessage> failingHandler = new MessageRouter.Handler<StatusMessage>() {
+            @Override
+            public void handle(StatusMessage message) {
+                handled.countDown();
+                if (message.getStatus() == StatusMessage.Status.OFFLINE) {
+                    throw new AssertionError("handler failure");
+                }
+            }
+        };
+
+        UUID id = UUID.randomUUID();
+        try (MessageRouter router = MessageRouter.builder().threads(1).stripes(1).handler(StatusMessage.class, failingHandler).build()) {
+            // the stripe of the id keeps handling messages after a handler throws an error
+            router.route(new StatusMessage(id, StatusMessage.Status.OFFLINE));
+            router.route(new StatusMessage(id, StatusMessage.Status.ONLINE));
+            assertTrue(handled.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testFrameCompression() throws IOException, MessageParseException {
+        Messenger messenger = Messenger.builder().build();
+        FrameCompressor compressor = new FrameCompressor(messenger);
+        Message[] messages = new Message[20];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new StatusMessage(UUID.randomUUID(), StatusMessage.Status.values()[i % 2]);
+        }
+        Message small = new HeartbeatMessage("ping");
+
+        FrameEncoder encoder = new FrameEncoder(messenger, FrameEncoder.DEFAULT_MAX_FRAME_LENGTH, false, compressor);
+        encoder.offer(messages);
+        int compressedLength = encoder.pendingBytes();
+        encoder.offer(small);
+        int smallLength = encoder.pendingBytes() - compressedLength;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(encoder.flush(Channels.newChannel(out)));
+
+        assertTrue(compressedLength < messenger.serializeToBytes(messages).length / 2);
+        assertTrue(smallLength == FrameEncoder.HEADER_LENGTH + messenger.serializeToBytes(small).length);
+
+        FrameDecoder decoder = new FrameDecoder(messenger, FrameEncoder.DEFAULT_MAX_FRAME_LENGTH, compressor);
+        decoder.feed(ByteBuffer.wrap(out.toByteArray()));
+        Message[] decoded = decoder.poll();
+        assertTrue(decoded.length == messages.length);
+        for (int i = 0; i < messages.length; i++) {
+            assertTrue(((StatusMessage) decoded[i]).getId().equals(((StatusMessage) messages[i]).getId()));
+        }
+        assertTrue(((HeartbeatMessage) decoder.poll()[0]).getData().equals("ping"));
+
+        byte[] otherDictionary = "{\"type\":\"other\"}".getBytes(StandardCharsets.UTF_8);
+        FrameDecoder mismatched = new FrameDecoder(messenger, FrameEncoder.DEFAULT_MAX_FRAME_LENGTH,
+                new FrameCompressor(otherDictionary, FrameCompressor.DEFAULT_THRESHOLD, Deflater.DEFAULT_COMPRESSION));
+        FrameDecoder tooSmall = new FrameDecoder(messenger, compressedLength, compressor);
+        for (FrameDecoder failing : Arrays.asList(mismatched, tooSmall)) {
+            failing.feed(ByteBuffer.wrap(out.toByteArray(), 0, compressedLength));
+            try {
+                failing.poll();
+                assertTrue(false);
+            } catch (MessageParseException e) {
+                // expected
+            }
+        }
+
+        // the dictionary does not depend on the registration order
+        List<Class<? extends Message>> types = new ArrayList<>(messenger.getMessageTypes());
+        byte[] dictionary = FrameCompressor.buildDictionary(types);
+        Collections.reverse(types);
+        assertTrue(Arrays.equals(dictionary, FrameCompressor.buildDictionary(types)));
+
+        compressor.close();
+        try {
+            compressor.compress(new byte[256], 0, 256);
+            assertTrue(false);
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
     // TODO add more tests
 
     @MessageType("$$ INVALID $$")
@@ -88,6 +1156,94 @@ public class MessengerTest {
         }
     }
 
+    @MessageType("counting")
+    private static class CountingMessageType extends Message {
+
+        private static final AtomicInteger validations = new AtomicInteger();
+
+        private final String value;
+
+        private CountingMessageType(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public void validate() throws InvalidMessageException {
+            validations.incrementAndGet();
+        }
+    }
+
+    @MessageType("constructed")
+    private static class ConstructedMessageType extends Message {
+
+        private static final AtomicInteger constructed = new AtomicInteger();
+
+        private ConstructedMessageType() {
+            constructed.incrementAndGet();
+        }
+
+        @Override
+        public void validate() throws InvalidMessageException {
+            // valid
+        }
+    }
+
+    @MessageType("pooled")
+    private static class PooledMessageType extends Message {
+
+        private String value;
+        private int count;
+
+        private PooledMessageType(String value, int count) {
+            this.value = value;
+            this.count = count;
+        }
+
+        @Override
+        public void validate() throws InvalidMessageException {
+            if (value == null) {
+                throw new InvalidMessageException("value cannot be null");
+            }
+        }
+    }
+
+    @MessageType("nan")
+    private static class NanMessageType extends Message {
+
+        private double value = Double.NaN;
+
+        @Override
+        public void validate() throws InvalidMessageException {
+            // valid
+        }
+    }
+
+    @MessageType("ranged")
+    private static class LongValueType extends Message {
+
+        private final long value;
+
+        private LongValueType(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public void validate() throws InvalidMessageException {
+            // valid
+        }
+    }
+
+    @MessageType("ranged")
+    private static class IntValueType extends Message {
+
+        private int value;
+
+        @Override
+        public void validate() throws InvalidMessageException {
+            // valid
+        }
+    }
+
     @MessageType("private")
     private static class PrivateMessageType extends Message {
 
@@ -103,6 +1259,53 @@ public class MessengerTest {
         }
     }
 
+    @MessageType("generated")
+    public static class GeneratedMessageType extends Message {
+
+        final int count;
+        final boolean flag;
+        private final String name;
+        private final StatusMessage.Status status;
+
+        public GeneratedMessageType(int count, boolean flag, String name, StatusMessage.Status status) {
+            this.count = count;
+            this.flag = flag;
+            this.name = name;
+            this.status = status;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public StatusMessage.Status getStatus() {
+            return status;
+        }
+
+        @Override
+        public void validate() throws InvalidMessageException {
+            // valid
+        }
+    }
+
+    @MessageType("strict")
+    private static class StrictMessageType extends Message {
+
+        private final String value;
+
+        private StrictMessageType(String value) {
+            if (value == null) {
+                throw new NullPointerException("value cannot be null");
+            }
+            this.value = value;
+        }
+
+        @Override
+        public void validate() throws InvalidMessageException {
+            // valid
+        }
+    }
+
     @MessageType("array")
     private static class ArrayMessageType extends Message {
 